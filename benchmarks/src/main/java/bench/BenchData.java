@@ -0,0 +1,100 @@
+package bench;
+
+import db.DBConnection;
+import model.Student;
+import repo.EmbeddedStudentDAO;
+import repo.StudentDAO;
+import repo.StudentDAOImpl;
+import util.CSVWriter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/** Deterministic synthetic dataset loaded into an in-process H2 database running in MySQL mode. */
+final class BenchData {
+    private BenchData() {}
+
+    // passed to every forked benchmark JVM so DBConfig points at the in-process database
+    static final String DB_URL = "-Dsrms.db.url=jdbc:h2:mem:srms_bench;MODE=MySQL;DB_CLOSE_DELAY=-1;DATABASE_TO_LOWER=TRUE";
+    static final String DB_USER = "-Dsrms.db.user=sa";
+    static final String FETCH_SIZE = "-Dsrms.db.streamFetchSize=1000"; // H2 rejects MySQL's Integer.MIN_VALUE
+    static final String HEAP = "-Xmx8g";
+
+    static final String[] DEPARTMENTS = {"CSE", "EEE", "BBA", "ME", "CE", "ARCH", "LAW", "ENG"};
+    private static final String[] FIRST = {"Masum", "Nabil", "Refat", "Ayesha", "Tanvir", "Nusrat", "Rahim", "Karim",
+            "Sadia", "Farhan", "Mim", "Sakib", "Tania", "Imran", "Rafi", "Jannat"};
+    private static final String[] LAST = {"Jia", "Kowser", "Hossain", "Rahman", "Ahmed", "Islam", "Khan", "Chowdhury",
+            "Sarkar", "Das", "Alam", "Haque"};
+
+    static Student student(int i) {
+        SplittableRandom r = new SplittableRandom(i);
+        String name = FIRST[r.nextInt(FIRST.length)] + " " + LAST[r.nextInt(LAST.length)] + " " + i;
+        return new Student(name, "student" + i + "@example.edu", DEPARTMENTS[r.nextInt(DEPARTMENTS.length)],
+                r.nextInt(401) / 100.0);
+    }
+
+    static List<Student> students(int size) {
+        List<Student> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) list.add(student(i));
+        return list;
+    }
+
+    /** Creates the students table and loads {@code size} rows; returns a DAO over it. */
+    static StudentDAO load(int size) throws SQLException {
+        try (Connection c = DBConnection.getConnection(); Statement st = c.createStatement()) {
+            st.execute("DROP TABLE IF EXISTS students");
+            st.execute("""
+                    CREATE TABLE students (
+                    id INT PRIMARY KEY AUTO_INCREMENT,
+                    name VARCHAR(100) NOT NULL,
+                    email VARCHAR(150) NOT NULL,
+                    department VARCHAR(100) NOT NULL,
+                    gpa DECIMAL(3,2) NOT NULL,
+                    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+                    version INT NOT NULL DEFAULT 0,
+                    UNIQUE KEY uq_students_email (email))""");
+            st.execute("CREATE INDEX idx_students_name ON students(name, id)");
+            st.execute("CREATE INDEX idx_students_gpa ON students(gpa, id)");
+            st.execute("CREATE INDEX idx_students_department ON students(department, id)");
+        }
+        StudentDAO dao = new StudentDAOImpl();
+        List<Student> chunk = new ArrayList<>(10_000);
+        for (int i = 0; i < size; i++) {
+            chunk.add(student(i));
+            if (chunk.size() == 10_000) { dao.saveAll(chunk); chunk.clear(); }
+        }
+        dao.saveAll(chunk);
+        return dao;
+    }
+
+    /** The same rows in a fresh embedded store under a temp directory (no fsync, like the in-memory database). */
+    static EmbeddedStudentDAO loadEmbedded(int size) throws IOException {
+        EmbeddedStudentDAO dao = new EmbeddedStudentDAO(Files.createTempDirectory("srms-bench-"), false);
+        for (int i = 0; i < size; i += 10_000) {
+            List<Student> chunk = new ArrayList<>(10_000);
+            for (int j = i; j < Math.min(size, i + 10_000); j++) chunk.add(student(j));
+            dao.saveAll(chunk);
+        }
+        return dao;
+    }
+
+    static File csv(int size) throws IOException {
+        File f = File.createTempFile("srms-bench-" + size + "-", ".csv");
+        f.deleteOnExit();
+        try (CSVWriter w = CSVWriter.open(f, false)) {
+            for (int i = 0; i < size; i++) {
+                Student s = student(i);
+                s.setId(i + 1);
+                w.write(s);
+            }
+        }
+        return f;
+    }
+}
@@ -0,0 +1,77 @@
+package bench;
+
+import model.Student;
+import org.openjdk.jmh.annotations.*;
+import util.CSVUtil;
+import util.CSVWriter;
+import util.SnapshotReader;
+import util.SnapshotWriter;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** CSV parsing and formatting, and the binary snapshot format for comparison, without any database involved. */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {BenchData.HEAP})
+public class CsvBenchmark {
+    @Param({"1000", "10000", "100000", "1000000", "5000000"})
+    int size;
+
+    File input;
+    File output;
+    File snapshot;
+    List<Student> rows;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        input = BenchData.csv(size);
+        output = File.createTempFile("srms-bench-out-", ".csv");
+        output.deleteOnExit();
+        rows = BenchData.students(size);
+        for (int i = 0; i < size; i++) rows.get(i).setId(i + 1);
+        snapshot = File.createTempFile("srms-bench-", ".srms");
+        snapshot.deleteOnExit();
+        try (SnapshotWriter w = SnapshotWriter.open(snapshot)) {
+            for (Student s : rows) w.write(s);
+        }
+    }
+
+    @Benchmark
+    public List<Student> importCSV() throws IOException {
+        return CSVUtil.importCSV(input);
+    }
+
+    @Benchmark
+    public long importCSVChunked() throws IOException {
+        long[] n = {0};
+        CSVUtil.importCSV(input, 1000, chunk -> n[0] += chunk.size());
+        return n[0];
+    }
+
+    @Benchmark
+    public long exportCSV() throws IOException {
+        try (CSVWriter w = CSVWriter.open(output, false)) {
+            for (Student s : rows) w.write(s);
+            return w.rows();
+        }
+    }
+
+    @Benchmark
+    public List<Student> importSnapshot() throws IOException {
+        return SnapshotReader.read(snapshot);
+    }
+
+    @Benchmark
+    public long exportSnapshot() throws IOException {
+        try (SnapshotWriter w = SnapshotWriter.open(output)) {
+            for (Student s : rows) w.write(s);
+            return w.rows();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package bench;
+
+import model.Student;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import repo.StudentDAO;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/** DAO calls over JDBC (StudentDAOImpl and the connection pool) and, for comparison, on the embedded file store. */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {BenchData.DB_URL, BenchData.DB_USER, BenchData.FETCH_SIZE, BenchData.HEAP})
+public class DaoBenchmark {
+    @Param({"1000", "10000", "100000", "1000000", "5000000"})
+    int size;
+
+    @Param({"jdbc", "embedded"})
+    String store;
+
+    StudentDAO dao;
+
+    @Setup(Level.Trial)
+    public void setup() throws SQLException, IOException {
+        dao = store.equals("embedded") ? BenchData.loadEmbedded(size) : BenchData.load(size);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (dao instanceof Closeable c) c.close();
+    }
+
+    @State(Scope.Thread)
+    public static class Rnd {
+        final SplittableRandom r = new SplittableRandom(42);
+    }
+
+    @Benchmark
+    public Object findById(Rnd rnd) {
+        return dao.findById(1 + rnd.r.nextInt(size));
+    }
+
+    // a class roster: 300 random ids in one call
+    @Benchmark
+    public Object findAllById(Rnd rnd) {
+        List<Integer> ids = new ArrayList<>(300);
+        for (int i = 0; i < 300; i++) ids.add(1 + rnd.r.nextInt(size));
+        return dao.findAllById(ids);
+    }
+
+    @Benchmark
+    public boolean emailExists(Rnd rnd) {
+        return dao.emailExists("student" + rnd.r.nextInt(size * 2) + "@example.edu");
+    }
+
+    @Benchmark
+    public Object firstPageByGpa() {
+        return dao.page("gpa", false, 20, null);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Measurement(iterations = 5)
+    public void streamAll(Blackhole bh) {
+        try (Stream<Student> s = dao.stream("id", true)) {
+            s.forEach(bh::consume);
+        }
+    }
+}
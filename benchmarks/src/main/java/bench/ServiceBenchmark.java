@@ -0,0 +1,54 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+import repo.StudentDAO;
+import service.StudentService;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** StudentService hot paths: cached lookups and the in-memory search/sort over all(). */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {BenchData.DB_URL, BenchData.DB_USER, BenchData.FETCH_SIZE, BenchData.HEAP})
+public class ServiceBenchmark {
+    @Param({"1000", "10000", "100000", "1000000", "5000000"})
+    int size;
+
+    StudentService service;
+    int hotId;
+
+    @Setup(Level.Trial)
+    public void setup() throws SQLException {
+        StudentDAO dao = BenchData.load(size);
+        service = new StudentService(dao);
+        hotId = size / 2;
+        service.getById(hotId); // warm the cache entry used by getByIdCacheHit
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Object getByIdCacheHit() {
+        return service.getById(hotId);
+    }
+
+    @Benchmark
+    public List<?> searchByName() {
+        return service.searchByName("rahman 1");
+    }
+
+    @State(Scope.Benchmark)
+    public static class Sort {
+        @Param({"name", "gpa", "department"})
+        String field;
+    }
+
+    @Benchmark
+    public List<?> sortBy(Sort sort) {
+        return service.sortBy(sort.field, false);
+    }
+}
@@ -1,22 +1,126 @@
 
+import api.StudentHttpServer;
+import db.DBConnection;
 import exception.DuplicateEmailException;
 import exception.NotFoundException;
+import exception.VersionConflictException;
+import metrics.Metrics;
 import model.Student;
+import repo.ColumnarStudentDAO;
+import repo.EmbeddedStudentDAO;
+import repo.MeteredStudentDAO;
+import repo.Page;
+import repo.ShardedStudentDAO;
+import repo.StudentDAO;
 import repo.StudentDAOImpl;
+import repo.StudentQuery;
+import repo.WriteBehindStudentDAO;
+import service.BulkImporter;
+import service.ChangeFeed;
+import service.DepartmentStats;
+import service.EmailIndex;
+import service.LoadGenerator;
+import service.RequestExecutor;
+import service.StudentAnalytics;
+import service.StudentCache;
+import service.StudentIndex;
 import service.StudentService;
-import util.CSVUtil;
+import util.CSVWriter;
+import util.SnapshotWriter;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Scanner;
 
 public class App {
+    private static final int PAGE_SIZE = 20;
+    private static final boolean EXPLAIN = Boolean.getBoolean("srms.query.explain");
     private static final Scanner in = new Scanner(System.in);
-    private static final StudentService service = new StudentService(new StudentDAOImpl());
+    // mysql: read through to the database; columnar: serve reads from a compact in-memory copy;
+    // embedded: no database server, rows live in a local memory-mapped file; sharded: rows spread over several stores
+    private static final String STORE = System.getProperty("srms.store", "mysql");
+    private static final List<Closeable> closeOnExit = new ArrayList<>();
+    private static ColumnarStudentDAO columnar; // set by store() in columnar mode
+    private static final StudentDAO dao = new MeteredStudentDAO(store());
+    private static final StudentService service = service();
+    // with srms.changeFeed.enabled, writes by other nodes are pulled from the change log into cache/index/columns
+    private static final ChangeFeed changeFeed = ChangeFeed.ENABLED ? followChanges() : null;
+
+    private static StudentDAO store() {
+        return switch (STORE) {
+            case "mysql" -> jdbc();
+            case "columnar" -> columnar = new ColumnarStudentDAO(jdbc()).load();
+            case "embedded" -> closing(EmbeddedStudentDAO::new, EmbeddedStudentDAO.DIR.toString());
+            case "sharded" -> closing(ShardedStudentDAO::open, ShardedStudentDAO.describeConfig());
+            default -> throw new IllegalArgumentException("Unknown srms.store: " + STORE);
+        };
+    }
+
+    // with srms.writeBehind.enabled updates/deletes are acknowledged from a local log and committed to MySQL later
+    private static StudentDAO jdbc() {
+        if (!Boolean.getBoolean("srms.writeBehind.enabled")) return new StudentDAOImpl();
+        return closing(() -> new WriteBehindStudentDAO(new StudentDAOImpl()), WriteBehindStudentDAO.DIR.toString());
+    }
+
+    private static StudentService service() {
+        // the columnar store is the search index; columnar, embedded and sharded stores check emails in memory already
+        StudentIndex index = StudentService.INDEX_ENABLED && !STORE.equals("columnar") ? new StudentIndex() : null;
+        StudentAnalytics analytics = StudentService.ANALYTICS_ENABLED ? new StudentAnalytics() : null;
+        EmailIndex emails = StudentService.EMAIL_INDEX_ENABLED && STORE.equals("mysql") ? new EmailIndex() : null;
+        return new StudentService(dao, new StudentCache(), StudentService.OPTIMISTIC, index, analytics, emails);
+    }
+
+    // duplicate checks go to the database until the scan is done, so the menu does not wait for it
+    private static void loadEmailIndex() {
+        Thread t = new Thread(() -> {
+            try {
+                service.loadEmailIndex();
+            } catch (RuntimeException e) {
+                System.out.println("Email index not loaded: " + e.getMessage());
+            }
+        }, "srms-email-index");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    private interface Opener<T extends StudentDAO & Closeable> { T open() throws IOException; }
+
+    private static <T extends StudentDAO & Closeable> T closing(Opener<T> opener, String what) {
+        try {
+            T store = opener.open();
+            closeOnExit.add(store);
+            return store;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open " + what, e);
+        }
+    }
+
+    private static ChangeFeed followChanges() {
+        if (!dao.hasChangeLog()) {
+            System.out.println("Change feed not available: the " + STORE + " store has no change log");
+            return null;
+        }
+        ChangeFeed feed = new ChangeFeed(dao);
+        if (columnar != null) feed.subscribe(columnar::apply);
+        feed.subscribe(service::applyChange);
+        feed.start(ChangeFeed.POLL_INTERVAL_MS);
+        closeOnExit.add(0, feed); // stop polling before the stores close
+        return feed;
+    }
 
     public static void main(String[] args) {
         System.out.println("=== Student Records Management System (SRMS) ===");
+        Metrics.startReporter();
+        loadEmailIndex();
+        if (args.length > 0 && args[0].equals("serve")) {
+            serve();
+            return;
+        }
         boolean run = true;
         while (run) {
             menu();
@@ -30,14 +134,44 @@ public class App {
                 case "6" -> sort();
                 case "7" -> exportCSV();
                 case "8" -> importCSV();
-                case "9" -> simulate();
+                case "9" -> loadTest();
+                case "10" -> metrics();
+                case "11" -> analytics();
                 case "0" -> run = false;
                 default -> System.out.println("Invalid option.");
             }
         }
+        shutdown();
         System.out.println("Bye!");
     }
 
+    // `App serve`: the HTTP API instead of the menu, until the process is stopped (Ctrl+C / SIGTERM)
+    private static void serve() {
+        StudentHttpServer http;
+        try {
+            http = new StudentHttpServer(service).start();
+        } catch (IOException e) {
+            System.out.println("Cannot listen on port " + StudentHttpServer.PORT + ": " + e.getMessage());
+            shutdown();
+            return;
+        }
+        System.out.println("Serving http://localhost:" + http.address().getPort() + "/students");
+        closeOnExit.add(0, http); // stop taking requests before the feed and stores close
+        Runtime.getRuntime().addShutdownHook(new Thread(App::shutdown, "srms-shutdown"));
+    }
+
+    private static void shutdown() {
+        for (Closeable c : closeOnExit) {
+            try {
+                c.close();
+            } catch (IOException e) {
+                System.out.println("Not closed cleanly: " + e.getMessage());
+            }
+        }
+        Metrics.stopReporter();
+        DBConnection.shutdown();
+    }
+
     private static void menu() {
         System.out.println("""
                 
@@ -47,9 +181,11 @@ public class App {
                 4) View All
                 5) Search by Name
                 6) Sort (name/gpa/department)
-                7) Export CSV
-                8) Import CSV
-                9) Simulate Concurrent Access
+                7) Export CSV (or .srms snapshot)
+                8) Import CSV (or .srms snapshot)
+                9) Load Test (concurrent clients)
+                10) Metrics
+                11) Department Analytics
                 0) Exit
                 Choose: """);
     }
@@ -81,7 +217,7 @@ public class App {
 
             s.setName(name); s.setEmail(email); s.setDepartment(dept); s.setGpa(gpa);
             System.out.println("Updated: " + service.updateStudent(s));
-        } catch (NotFoundException e) {
+        } catch (NotFoundException | VersionConflictException | DuplicateEmailException e) {
             System.out.println(e.getMessage());
         } catch (Exception e) {
             System.out.println("Invalid input.");
@@ -97,14 +233,14 @@ public class App {
     }
 
     private static void list() {
-        List<Student> list = service.all();
-        if (list.isEmpty()) System.out.println("No data.");
-        else list.forEach(System.out::println);
+        printPages("id", true);
     }
 
     private static void search() {
         System.out.print("Search name: ");
-        service.searchByName(in.nextLine().trim()).forEach(System.out::println);
+        String q = in.nextLine().trim();
+        if (EXPLAIN) System.out.println(service.explain(StudentQuery.all().name(q)));
+        service.searchByName(q).forEach(System.out::println);
     }
 
     private static void sort() {
@@ -112,39 +248,110 @@ public class App {
         String[] a = in.nextLine().trim().split("\\s+");
         String field = a.length > 0 ? a[0] : "id";
         boolean asc = a.length < 2 || a[1].equalsIgnoreCase("asc");
-        service.sortBy(field, asc).forEach(System.out::println);
+        printPages(field, asc);
+    }
+
+    // Pages through the table PAGE_SIZE rows at a time instead of loading it all
+    private static void printPages(String field, boolean asc) {
+        String token = null;
+        int shown = 0;
+        do {
+            Page<Student> page = service.page(field, asc, PAGE_SIZE, token);
+            page.items().forEach(System.out::println);
+            shown += page.items().size();
+            token = page.nextToken();
+            if (token != null) {
+                System.out.print("-- " + shown + " shown; Enter for more, q to stop: ");
+                if (in.nextLine().trim().equalsIgnoreCase("q")) break;
+            }
+        } while (token != null);
+        if (shown == 0) System.out.println("No data.");
     }
 
     private static void exportCSV() {
-        System.out.print("File path to export (e.g., students.csv): ");
+        System.out.print("File path to export (e.g., students.csv, students.csv.gz for gzip, students.srms for binary): ");
         File f = new File(in.nextLine().trim());
         try {
-            CSVUtil.exportCSV(service.all(), f);
-            System.out.println("Exported to: " + f.getAbsolutePath());
-        } catch (IOException e) {
+            long rows;
+            if (f.getName().endsWith(".srms")) {
+                try (SnapshotWriter w = SnapshotWriter.open(f)) { service.forEach(w); rows = w.rows(); }
+            } else {
+                try (CSVWriter w = CSVWriter.open(f, f.getName().endsWith(".gz"))) { service.forEach(w); rows = w.rows(); }
+            }
+            System.out.println("Exported " + rows + " rows to: " + f.getAbsolutePath());
+        } catch (IOException | UncheckedIOException e) {
             System.out.println("Export failed: " + e.getMessage());
         }
     }
 
     private static void importCSV() {
-        System.out.print("CSV path to import: ");
+        System.out.print("CSV (or .srms snapshot) path to import: ");
         File f = new File(in.nextLine().trim());
         try {
-            var list = CSVUtil.importCSV(f);
-            list.forEach(s -> {
-                try { service.addStudent(s); }
-                catch (DuplicateEmailException ex) { /* skip duplicates */ }
-            });
-            System.out.println("Imported " + list.size() + " rows (existing emails skipped).");
+            BulkImporter importer = service.importer();
+            System.out.println("Imported: " + (f.getName().endsWith(".srms") ? importer.importSnapshot(f) : importer.importCSV(f)));
         } catch (IOException e) {
             System.out.println("Import failed: " + e.getMessage());
         }
     }
 
-    private static void simulate() {
-        System.out.println("Running concurrent tasks...");
-        service.simulateConcurrentAccess();
-        System.out.println("Done.");
+    private static void analytics() {
+        try {
+            System.out.print("Top/bottom k per department (default 3): "); int k = intOr(in.nextLine(), 3);
+            List<DepartmentStats> stats = service.departmentStats();
+            if (stats.isEmpty()) { System.out.println("No students."); return; }
+            stats.forEach(System.out::println);
+            long[] buckets = service.gpaHistogram(null).buckets(0.5);
+            long most = Arrays.stream(buckets).max().orElse(1);
+            for (int i = 0; i < buckets.length; i++) {
+                System.out.printf("%.1f-%.1f %7d %s%n", i * 0.5, i * 0.5 + 0.5, buckets[i],
+                        "#".repeat((int) (40 * buckets[i] / Math.max(1, most))));
+            }
+            for (DepartmentStats d : stats) {
+                System.out.println("-- " + d.department());
+                System.out.println("   top:    " + service.topByGpa(d.department(), k));
+                System.out.println("   bottom: " + service.bottomByGpa(d.department(), k));
+            }
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid input.");
+        }
+    }
+
+    private static void metrics() {
+        System.out.print("Metrics are " + (Metrics.enabled() ? "on" : "off")
+                + ". t = toggle, p = Prometheus text, Enter = summary: ");
+        String c = in.nextLine().trim();
+        if (c.equalsIgnoreCase("t")) {
+            Metrics.setEnabled(!Metrics.enabled());
+            System.out.println("Metrics " + (Metrics.enabled() ? "on." : "off."));
+        } else if (c.equalsIgnoreCase("p")) {
+            System.out.print(Metrics.prometheus());
+        } else {
+            System.out.println(Metrics.summary());
+        }
+    }
+
+    private static void loadTest() {
+        try {
+            System.out.print("Clients (default 50): ");          int clients = intOr(in.nextLine(), 50);
+            System.out.print("Duration seconds (default 10): "); int secs = intOr(in.nextLine(), 10);
+            System.out.print("Read % (default 90): ");           int readPct = intOr(in.nextLine(), 90);
+            System.out.println("Running load...");
+            try (RequestExecutor executor = new RequestExecutor()) {
+                System.out.println(new LoadGenerator(service, executor)
+                        .run(new LoadGenerator.Profile(clients, secs * 1000L, readPct)));
+            }
+            if (STORE.equals("mysql") || STORE.equals("columnar")) System.out.println(DBConnection.describe());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            System.out.println("Load test failed: " + e.getMessage());
+        }
+    }
+
+    private static int intOr(String input, int def) {
+        input = input.trim();
+        return input.isEmpty() ? def : Integer.parseInt(input);
     }
 
     private static String emptyDefault(String input, String def) {
@@ -0,0 +1,107 @@
+package api;
+
+import service.LoadGenerator;
+import util.LatencyHistogram;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Closed-loop load test against a running {@link StudentHttpServer}: every client sends a request over its
+ * kept-alive connection, waits for the answer and sends the next. Reads are mostly lookups by id plus
+ * some name searches and gzipped first pages; writes change a random student's GPA. 503s are counted as
+ * rejected, every other non-2xx answer as an error.
+ * <p>
+ * Usage: {@code java -cp <classpath> api.HttpLoadTest [baseUrl] [clients] [seconds] [readPercent]}
+ */
+public final class HttpLoadTest {
+    private static final String[] SEARCH_TERMS = {"a", "an", "ma", "ra", "jia", "son"};
+    private static final Pattern ID = Pattern.compile("\"id\":(\\d+)");
+
+    private HttpLoadTest() {}
+
+    public static void main(String[] args) throws Exception {
+        URI base = URI.create(args.length > 0 ? args[0] : "http://localhost:" + StudentHttpServer.PORT);
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        long seconds = args.length > 2 ? Long.parseLong(args[2]) : 30;
+        int readPercent = args.length > 3 ? Integer.parseInt(args[3]) : 90;
+        System.out.println(run(base, new LoadGenerator.Profile(clients, seconds * 1000, readPercent)));
+    }
+
+    public static LoadGenerator.Report run(URI base, LoadGenerator.Profile profile) throws IOException, InterruptedException {
+        HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5)).build();
+        List<Integer> ids = new ArrayList<>();
+        String first = http.send(get(base, "/students?sort=id&pageSize=1000"), HttpResponse.BodyHandlers.ofString()).body();
+        for (Matcher m = ID.matcher(first); m.find(); ) ids.add(Integer.parseInt(m.group(1)));
+        if (ids.isEmpty()) throw new IllegalStateException("No students to run against at " + base);
+
+        LatencyHistogram latency = new LatencyHistogram();
+        LongAdder reads = new LongAdder(), writes = new LongAdder(), errors = new LongAdder(), rejected = new LongAdder();
+        CountDownLatch done = new CountDownLatch(profile.clients());
+        long start = System.currentTimeMillis(), deadline = start + profile.durationMillis();
+        for (int c = 0; c < profile.clients(); c++) {
+            long seed = c;
+            Thread t = new Thread(() -> {
+                SplittableRandom rnd = new SplittableRandom(seed);
+                try {
+                    while (System.currentTimeMillis() < deadline) {
+                        boolean read = rnd.nextInt(100) < profile.readPercent();
+                        int id = ids.get(rnd.nextInt(ids.size()));
+                        HttpRequest req = read ? read(base, rnd, id) : write(base, rnd, id);
+                        long t0 = System.nanoTime();
+                        try {
+                            int status = http.send(req, HttpResponse.BodyHandlers.discarding()).statusCode();
+                            if (status == 503) rejected.increment();
+                            else if (status / 100 != 2) errors.increment();
+                            else (read ? reads : writes).increment();
+                        } catch (IOException e) {
+                            errors.increment();
+                        }
+                        latency.record(System.nanoTime() - t0);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            }, "srms-http-client-" + c);
+            t.setDaemon(true);
+            t.start();
+        }
+        done.await();
+        long elapsed = System.currentTimeMillis() - start;
+        return new LoadGenerator.Report("http", profile.clients(), latency.count(), reads.sum(), writes.sum(),
+                errors.sum(), rejected.sum(), elapsed, latency.percentileNanos(50) / 1000,
+                latency.percentileNanos(99) / 1000, latency.percentileNanos(99.9) / 1000, latency.maxNanos() / 1000);
+    }
+
+    private static HttpRequest read(URI base, SplittableRandom rnd, int id) {
+        int kind = rnd.nextInt(100);
+        if (kind < 80) return get(base, "/students/" + id);
+        if (kind < 90) return get(base, "/students?limit=20&name=" + SEARCH_TERMS[rnd.nextInt(SEARCH_TERMS.length)]);
+        return HttpRequest.newBuilder(base.resolve("/students?sort=gpa&order=desc&pageSize=20"))
+                .header("Accept-Encoding", "gzip").build();
+    }
+
+    private static HttpRequest write(URI base, SplittableRandom rnd, int id) {
+        String body = "{\"gpa\":" + rnd.nextInt(401) / 100.0 + "}";
+        return HttpRequest.newBuilder(base.resolve("/students/" + id)).header("Content-Type", "application/json")
+                .PUT(HttpRequest.BodyPublishers.ofString(body)).build();
+    }
+
+    private static HttpRequest get(URI base, String path) {
+        return HttpRequest.newBuilder(base.resolve(path)).build();
+    }
+}
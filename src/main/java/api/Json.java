@@ -0,0 +1,176 @@
+package api;
+
+import model.Student;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Just enough JSON for the HTTP API: students are written straight to an {@link Appendable}, and request
+ * bodies are flat objects whose values are strings, numbers, booleans or null.
+ */
+final class Json {
+    private Json() {}
+
+    static String student(Student s) {
+        StringBuilder sb = new StringBuilder(128);
+        write(sb, s);
+        return sb.toString();
+    }
+
+    static void write(Appendable out, Student s) {
+        try {
+            out.append("{\"id\":").append(String.valueOf(s.getId()));
+            out.append(",\"name\":");
+            string(out, s.getName());
+            out.append(",\"email\":");
+            string(out, s.getEmail());
+            out.append(",\"department\":");
+            string(out, s.getDepartment());
+            out.append(",\"gpa\":").append(String.valueOf(s.getGpa()));
+            out.append(",\"version\":").append(String.valueOf(s.getVersion()));
+            if (s.getCreatedAt() != null) out.append(",\"createdAt\":\"").append(s.getCreatedAt().toString()).append('"');
+            out.append('}');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static void string(Appendable out, String s) throws IOException {
+        out.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"' -> out.append("\\\"");
+                case '\\' -> out.append("\\\\");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                case '\t' -> out.append("\\t");
+                default -> {
+                    if (c < 0x20) out.append(String.format("\\u%04x", (int) c));
+                    else out.append(c);
+                }
+            }
+        }
+        out.append('"');
+    }
+
+    static String error(String message) {
+        StringBuilder sb = new StringBuilder("{\"error\":");
+        try {
+            string(sb, message == null ? "" : message);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return sb.append('}').toString();
+    }
+
+    /** Parses one flat JSON object; throws {@link IllegalArgumentException} on anything else. */
+    static Map<String, Object> parseObject(String text) {
+        Parser p = new Parser(text);
+        Map<String, Object> out = p.object();
+        p.skipSpace();
+        if (p.pos != text.length()) throw p.fail("trailing characters");
+        return out;
+    }
+
+    private static final class Parser {
+        final String s;
+        int pos;
+
+        Parser(String s) { this.s = s; }
+
+        Map<String, Object> object() {
+            Map<String, Object> out = new LinkedHashMap<>();
+            expect('{');
+            skipSpace();
+            if (peek() == '}') { pos++; return out; }
+            while (true) {
+                skipSpace();
+                String key = string();
+                skipSpace();
+                expect(':');
+                skipSpace();
+                out.put(key, value());
+                skipSpace();
+                char c = next();
+                if (c == '}') return out;
+                if (c != ',') throw fail("expected , or }");
+            }
+        }
+
+        Object value() {
+            char c = peek();
+            if (c == '"') return string();
+            if (s.startsWith("true", pos)) { pos += 4; return Boolean.TRUE; }
+            if (s.startsWith("false", pos)) { pos += 5; return Boolean.FALSE; }
+            if (s.startsWith("null", pos)) { pos += 4; return null; }
+            if (c == '-' || c >= '0' && c <= '9') return number();
+            throw fail("unsupported value");
+        }
+
+        Double number() {
+            int start = pos;
+            while (pos < s.length() && "+-0123456789.eE".indexOf(s.charAt(pos)) >= 0) pos++;
+            try {
+                return Double.parseDouble(s.substring(start, pos));
+            } catch (NumberFormatException e) {
+                throw fail("bad number");
+            }
+        }
+
+        String string() {
+            expect('"');
+            StringBuilder sb = new StringBuilder();
+            while (true) {
+                char c = next();
+                if (c == '"') return sb.toString();
+                if (c != '\\') { sb.append(c); continue; }
+                char e = next();
+                switch (e) {
+                    case '"', '\\', '/' -> sb.append(e);
+                    case 'b' -> sb.append('\b');
+                    case 'f' -> sb.append('\f');
+                    case 'n' -> sb.append('\n');
+                    case 'r' -> sb.append('\r');
+                    case 't' -> sb.append('\t');
+                    case 'u' -> {
+                        if (pos + 4 > s.length()) throw fail("bad escape");
+                        try {
+                            sb.append((char) Integer.parseInt(s.substring(pos, pos + 4), 16));
+                        } catch (NumberFormatException ex) {
+                            throw fail("bad escape");
+                        }
+                        pos += 4;
+                    }
+                    default -> throw fail("bad escape");
+                }
+            }
+        }
+
+        void skipSpace() {
+            while (pos < s.length() && Character.isWhitespace(s.charAt(pos))) pos++;
+        }
+
+        char peek() {
+            if (pos >= s.length()) throw fail("unexpected end");
+            return s.charAt(pos);
+        }
+
+        char next() {
+            char c = peek();
+            pos++;
+            return c;
+        }
+
+        void expect(char c) {
+            if (next() != c) throw fail("expected " + c);
+        }
+
+        IllegalArgumentException fail(String why) {
+            return new IllegalArgumentException("Invalid JSON at " + pos + ": " + why);
+        }
+    }
+}
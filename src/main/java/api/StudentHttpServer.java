@@ -0,0 +1,438 @@
+package api;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import db.DBConfig;
+import db.DBConnection;
+import exception.DuplicateEmailException;
+import exception.NotFoundException;
+import exception.VersionConflictException;
+import metrics.Metrics;
+import metrics.Timer;
+import model.Student;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import repo.Page;
+import repo.StudentQuery;
+import service.RequestExecutor;
+import service.StudentService;
+import util.CSVWriter;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * JSON over HTTP for {@link StudentService}, on the JDK's built-in server:
+ * <pre>
+ *   GET    /students/{id}                       one student
+ *   GET    /students?ids=1,2,3                  several, one query for the cache misses
+ *   GET    /students?name=&department=&minGpa=&maxGpa=&sort=&order=&limit=   filtered/sorted
+ *   GET    /students?sort=&order=&pageSize=&cursor=                          keyset page
+ *   GET    /students                            every student, streamed
+ *   GET    /students/export                     CSV, streamed
+ *   POST   /students                            add; PUT /students/{id} update; DELETE /students/{id}
+ *   GET    /metrics, /health
+ * </pre>
+ * Connections are kept alive between requests. Exchanges run on a {@link RequestExecutor} (virtual
+ * threads, or a bounded platform pool) and each one needs an admission permit, so at most
+ * {@link #MAX_IN_FLIGHT} requests touch the service at once. A request that waits longer than
+ * {@link #QUEUE_TIMEOUT_MS} for a worker or a permit is answered 503 instead of adding to the backlog.
+ * Listings and exports go out chunked as they are read; bodies are gzipped for clients that accept it.
+ * With read replicas, a write's response sets the {@value #PIN_COOKIE} cookie to the write time; requests
+ * that send it back read from the primary for the read-your-writes window, whichever worker they land on.
+ */
+public final class StudentHttpServer implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(StudentHttpServer.class);
+    public static final int PORT = Integer.getInteger("srms.http.port", 8080);
+    public static final int BACKLOG = Integer.getInteger("srms.http.backlog", 1024);
+    public static final int THREADS = Integer.getInteger("srms.http.threads", 64);
+    public static final int MAX_IN_FLIGHT = Integer.getInteger("srms.http.maxInFlight", RequestExecutor.DEFAULT_MAX_IN_FLIGHT);
+    public static final long QUEUE_TIMEOUT_MS = Long.getLong("srms.http.queueTimeoutMs", 1_000L);
+    public static final int MAX_BODY_BYTES = Integer.getInteger("srms.http.maxBodyBytes", 64 * 1024);
+    public static final int GZIP_MIN_BYTES = Integer.getInteger("srms.http.gzipMinBytes", 1024);
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final String JSON = "application/json; charset=utf-8";
+    private static final ThreadLocal<Long> QUEUED_AT = new ThreadLocal<>();
+    static final String PIN_COOKIE = "srms-last-write";
+    private static final Timer LIST = timer("list"), ADD = timer("add"), GET = timer("get"), UPDATE = timer("update"),
+            DELETE = timer("delete"), EXPORT = timer("export"), METRICS = timer("metrics"), HEALTH = timer("health"),
+            OTHER = timer("other");
+
+    private interface Handler { void handle(HttpExchange ex) throws IOException; }
+
+    private final StudentService service;
+    private final RequestExecutor executor;
+    private final HttpServer server;
+    private final long queueTimeoutNanos;
+
+    public StudentHttpServer(StudentService service) throws IOException {
+        this(service, new InetSocketAddress(PORT), new RequestExecutor(RequestExecutor.DEFAULT_MODE, THREADS,
+                MAX_IN_FLIGHT, QUEUE_TIMEOUT_MS), QUEUE_TIMEOUT_MS);
+    }
+
+    public StudentHttpServer(StudentService service, InetSocketAddress address, RequestExecutor executor,
+                             long queueTimeoutMs) throws IOException {
+        this.service = service;
+        this.executor = executor;
+        this.queueTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(queueTimeoutMs);
+        this.server = HttpServer.create(address, BACKLOG);
+        server.createContext("/students", this::students);
+        server.createContext("/metrics", ex -> serve(ex, METRICS, this::metrics));
+        server.createContext("/health", ex -> serve(ex, HEALTH, e -> send(e, 200, "{\"status\":\"ok\"}")));
+        server.setExecutor(task -> {
+            long queuedAt = System.nanoTime();
+            executor.launch(() -> {
+                QUEUED_AT.set(queuedAt);
+                task.run();
+            });
+        });
+    }
+
+    public StudentHttpServer start() {
+        server.start();
+        log.info("Listening on {} ({} threads)", server.getAddress(), executor.mode().name().toLowerCase(Locale.ROOT));
+        return this;
+    }
+
+    public InetSocketAddress address() { return server.getAddress(); }
+
+    /** Stops accepting, gives running exchanges a second to finish, then stops the workers. */
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.close();
+    }
+
+    private void students(HttpExchange ex) throws IOException {
+        String path = ex.getRequestURI().getPath(), method = ex.getRequestMethod();
+        if (path.equals("/students") || path.equals("/students/")) {
+            switch (method) {
+                case "GET" -> serve(ex, LIST, this::list);
+                case "POST" -> serve(ex, ADD, this::add);
+                default -> serve(ex, OTHER, e -> notAllowed(e, "GET, POST"));
+            }
+            return;
+        }
+        String rest = path.startsWith("/students/") ? path.substring("/students/".length()) : "";
+        if (rest.equals("export")) {
+            serve(ex, EXPORT, method.equals("GET") ? this::export : e -> notAllowed(e, "GET"));
+            return;
+        }
+        int id;
+        try {
+            id = Integer.parseInt(rest);
+        } catch (NumberFormatException e) {
+            serve(ex, OTHER, e2 -> send(e2, 404, Json.error("No such resource: " + path)));
+            return;
+        }
+        switch (method) {
+            case "GET" -> serve(ex, GET, e -> send(e, 200, Json.student(service.getById(id))));
+            case "PUT" -> serve(ex, UPDATE, e -> update(e, id));
+            case "DELETE" -> serve(ex, DELETE, e -> delete(e, id));
+            default -> serve(ex, OTHER, e -> notAllowed(e, "GET, PUT, DELETE"));
+        }
+    }
+
+    private static Timer timer(String route) {
+        return Metrics.timer("srms_http_seconds", "HTTP request latency", "route", route);
+    }
+
+    // Admission, error mapping and accounting around every handler
+    private void serve(HttpExchange ex, Timer timer, Handler handler) throws IOException {
+        long t = timer.start();
+        try {
+            Long queuedAt = QUEUED_AT.get();
+            if (queuedAt != null && System.nanoTime() - queuedAt > queueTimeoutNanos)
+                throw new RejectedExecutionException("Overloaded: waited over " + queueTimeoutNanos / 1_000_000 + " ms for a worker");
+            // each request is its own read-your-writes session, seeded from the client's cookie
+            DBConnection.Session worker = DBConnection.use(new DBConnection.Session(lastWriteCookie(ex)));
+            try {
+                executor.admit(() -> {
+                    handler.handle(ex);
+                    return null;
+                });
+            } finally {
+                DBConnection.use(worker);
+            }
+        } catch (Exception e) {
+            // a streamed response is already under way: drop the connection so the client sees it cut short
+            if (ex.getResponseCode() != -1) throw e instanceof IOException io ? io : new IOException(e);
+            fail(ex, e);
+        } finally {
+            timer.stop(t);
+            if (Metrics.enabled() && ex.getResponseCode() != -1) { // the status label needs a registry lookup
+                Metrics.counter("srms_http_responses_total", "HTTP responses by status", "status",
+                        String.valueOf(ex.getResponseCode())).increment();
+            }
+        }
+        ex.close();
+    }
+
+    private void fail(HttpExchange ex, Exception e) throws IOException {
+        int status;
+        if (e instanceof RejectedExecutionException) {
+            ex.getResponseHeaders().set("Retry-After", "1");
+            status = 503;
+        } else if (e instanceof NotFoundException) status = 404;
+        else if (e instanceof DuplicateEmailException || e instanceof VersionConflictException) status = 409;
+        else if (e instanceof IllegalArgumentException) status = 400;
+        else if (e instanceof BodyTooLargeException) status = 413;
+        else {
+            log.warn("{} {} failed", ex.getRequestMethod(), ex.getRequestURI(), e);
+            status = 500;
+        }
+        send(ex, status, Json.error(status == 500 ? "Internal error" : e.getMessage()));
+    }
+
+    private static final class BodyTooLargeException extends IOException {
+        BodyTooLargeException() { super("Request body over " + MAX_BODY_BYTES + " bytes"); }
+    }
+
+    private void list(HttpExchange ex) throws IOException {
+        Map<String, String> q = params(ex);
+        if (q.containsKey("ids")) {
+            List<Integer> ids = new ArrayList<>();
+            for (String s : q.get("ids").split(",")) if (!s.isBlank()) ids.add(Integer.parseInt(s.trim()));
+            sendArray(ex, service.getByIds(ids).values());
+            return;
+        }
+        String sort = q.getOrDefault("sort", "id");
+        boolean asc = !"desc".equalsIgnoreCase(q.get("order"));
+        if (q.containsKey("pageSize") || q.containsKey("cursor")) {
+            int size = Math.min(MAX_PAGE_SIZE, intParam(q, "pageSize", 20));
+            Page<Student> page = service.page(sort, asc, size, q.get("cursor"));
+            StringBuilder sb = new StringBuilder("{\"items\":");
+            array(sb, page.items());
+            sb.append(",\"next\":");
+            if (page.nextToken() == null) sb.append("null");
+            else Json.string(sb, page.nextToken());
+            send(ex, 200, sb.append('}').toString());
+            return;
+        }
+        if (q.keySet().stream().anyMatch(k -> Set.of("name", "department", "minGpa", "maxGpa", "sort", "order", "limit").contains(k))) {
+            StudentQuery query = StudentQuery.all().name(q.get("name")).department(q.get("department"))
+                    .gpa(doubleParam(q, "minGpa"), doubleParam(q, "maxGpa")).orderBy(sort, asc)
+                    .limit(intParam(q, "limit", Integer.MAX_VALUE));
+            sendArray(ex, service.query(query));
+            return;
+        }
+        stream(ex, JSON, out -> {
+            Writer w = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+            boolean[] first = {true};
+            w.write('[');
+            service.forEach(s -> {
+                try {
+                    if (!first[0]) w.write(',');
+                    first[0] = false;
+                    Json.write(w, s);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            w.write(']');
+            w.flush();
+        });
+    }
+
+    private void export(HttpExchange ex) throws IOException {
+        ex.getResponseHeaders().set("Content-Disposition", "attachment; filename=\"students.csv\"");
+        stream(ex, "text/csv; charset=utf-8", out -> {
+            CSVWriter w = CSVWriter.to(out);
+            service.forEach(w);
+            w.close();
+        });
+    }
+
+    private void add(HttpExchange ex) throws IOException {
+        Map<String, Object> body = body(ex);
+        Student s = new Student(text(body, "name", null), text(body, "email", null), text(body, "department", null),
+                number(body, "gpa", Double.NaN));
+        validate(s);
+        Student saved = service.addStudent(s);
+        ex.getResponseHeaders().set("Location", "/students/" + saved.getId());
+        send(ex, 201, Json.student(saved));
+    }
+
+    // Fields left out keep their current value; a "version" makes the update conditional in optimistic mode
+    private void update(HttpExchange ex, int id) throws IOException {
+        Map<String, Object> body = body(ex);
+        Student s = service.getById(id);
+        s.setName(text(body, "name", s.getName()));
+        s.setEmail(text(body, "email", s.getEmail()));
+        s.setDepartment(text(body, "department", s.getDepartment()));
+        s.setGpa(number(body, "gpa", s.getGpa()));
+        if (body.containsKey("version")) s.setVersion((int) number(body, "version", s.getVersion()));
+        validate(s);
+        send(ex, 200, Json.student(service.updateStudent(s)));
+    }
+
+    private void delete(HttpExchange ex, int id) throws IOException {
+        service.getById(id); // 404 for unknown ids
+        service.delete(id);
+        ex.getRequestBody().close(); // otherwise the JDK server drops the connection after a bodiless reply
+        pinCookie(ex);
+        ex.sendResponseHeaders(204, -1);
+    }
+
+    private void metrics(HttpExchange ex) throws IOException {
+        byte[] body = Metrics.prometheus().getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4");
+        ex.sendResponseHeaders(200, body.length);
+        try (OutputStream out = ex.getResponseBody()) { out.write(body); }
+    }
+
+    private static void notAllowed(HttpExchange ex, String allow) throws IOException {
+        ex.getResponseHeaders().set("Allow", allow);
+        send(ex, 405, Json.error("Method not allowed"));
+    }
+
+    private static void validate(Student s) {
+        if (s.getName() == null || s.getName().isBlank()) throw new IllegalArgumentException("name is required");
+        if (s.getEmail() == null || s.getEmail().isBlank()) throw new IllegalArgumentException("email is required");
+        if (s.getDepartment() == null || s.getDepartment().isBlank()) throw new IllegalArgumentException("department is required");
+        if (!(s.getGpa() >= 0 && s.getGpa() <= 4)) throw new IllegalArgumentException("gpa must be between 0 and 4");
+    }
+
+    // ---- request/response helpers ----
+
+    private static Map<String, Object> body(HttpExchange ex) throws IOException {
+        InputStream in = ex.getRequestBody();
+        byte[] raw = in.readNBytes(MAX_BODY_BYTES + 1);
+        if (raw.length > MAX_BODY_BYTES) {
+            // read on a little so a client still uploading sees the 413 rather than a reset connection
+            // (read, not skip: the JDK's request stream inherits a skip() that ignores Content-Length)
+            byte[] sink = new byte[8192];
+            for (long left = 16L * MAX_BODY_BYTES, n; left > 0 && (n = in.read(sink)) > 0; ) left -= n;
+            throw new BodyTooLargeException();
+        }
+        return Json.parseObject(new String(raw, StandardCharsets.UTF_8));
+    }
+
+    private static String text(Map<String, Object> body, String key, String def) {
+        if (!body.containsKey(key)) return def;
+        if (body.get(key) instanceof String s) return s.trim();
+        throw new IllegalArgumentException(key + " must be a string");
+    }
+
+    private static double number(Map<String, Object> body, String key, double def) {
+        if (!body.containsKey(key)) return def;
+        if (body.get(key) instanceof Double d) return d;
+        throw new IllegalArgumentException(key + " must be a number");
+    }
+
+    private static Map<String, String> params(HttpExchange ex) {
+        Map<String, String> out = new HashMap<>();
+        String raw = ex.getRequestURI().getRawQuery();
+        if (raw == null || raw.isEmpty()) return out;
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            String k = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            String v = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            out.put(k, v);
+        }
+        return out;
+    }
+
+    private static int intParam(Map<String, String> q, String key, int def) {
+        String v = q.get(key);
+        if (v == null || v.isEmpty()) return def;
+        int n = Integer.parseInt(v);
+        if (n < 1) throw new IllegalArgumentException(key + " must be positive");
+        return n;
+    }
+
+    private static Double doubleParam(Map<String, String> q, String key) {
+        String v = q.get(key);
+        return v == null || v.isEmpty() ? null : Double.valueOf(v);
+    }
+
+    private static void array(StringBuilder sb, Collection<Student> students) {
+        sb.append('[');
+        boolean first = true;
+        for (Student s : students) {
+            if (!first) sb.append(',');
+            first = false;
+            Json.write(sb, s);
+        }
+        sb.append(']');
+    }
+
+    private static void sendArray(HttpExchange ex, Collection<Student> students) throws IOException {
+        StringBuilder sb = new StringBuilder(students.size() * 128 + 2);
+        array(sb, students);
+        send(ex, 200, sb.toString());
+    }
+
+    private static boolean acceptsGzip(HttpExchange ex) {
+        for (String v : ex.getRequestHeaders().getOrDefault("Accept-Encoding", List.of())) {
+            if (v.toLowerCase(Locale.ROOT).contains("gzip")) return true;
+        }
+        return false;
+    }
+
+    private static void send(HttpExchange ex, int status, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        Headers h = ex.getResponseHeaders();
+        h.set("Content-Type", JSON);
+        if (body.length >= GZIP_MIN_BYTES && acceptsGzip(ex)) {
+            ByteArrayOutputStream zipped = new ByteArrayOutputStream(body.length / 4);
+            try (GZIPOutputStream gz = new GZIPOutputStream(zipped)) { gz.write(body); }
+            body = zipped.toByteArray();
+            h.set("Content-Encoding", "gzip");
+        }
+        h.set("Vary", "Accept-Encoding");
+        pinCookie(ex);
+        ex.sendResponseHeaders(status, body.length);
+        try (OutputStream out = ex.getResponseBody()) { out.write(body); }
+    }
+
+    private static long lastWriteCookie(HttpExchange ex) {
+        for (String header : ex.getRequestHeaders().getOrDefault("Cookie", List.of())) {
+            for (String c : header.split(";")) {
+                String kv = c.trim();
+                if (!kv.startsWith(PIN_COOKIE + "=")) continue;
+                try {
+                    return Long.parseLong(kv.substring(PIN_COOKIE.length() + 1));
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 0;
+    }
+
+    // Only once this request has written: the cookie keeps the client's next reads on the primary for a while
+    private static void pinCookie(HttpExchange ex) {
+        long w = DBConnection.session().lastWrite();
+        if (!DBConnection.replicated() || w == 0 || w == lastWriteCookie(ex)) return;
+        long maxAge = Math.max(1, (DBConfig.READ_YOUR_WRITES_MS + 999) / 1000);
+        ex.getResponseHeaders().add("Set-Cookie", PIN_COOKIE + "=" + w + "; Path=/; Max-Age=" + maxAge + "; HttpOnly");
+    }
+
+    private interface Body { void write(OutputStream out) throws IOException; }
+
+    // Chunked transfer: rows are written as they are read, so memory does not grow with the result
+    private static void stream(HttpExchange ex, String contentType, Body body) throws IOException {
+        Headers h = ex.getResponseHeaders();
+        h.set("Content-Type", contentType);
+        h.set("Vary", "Accept-Encoding");
+        boolean gzip = acceptsGzip(ex);
+        if (gzip) h.set("Content-Encoding", "gzip");
+        ex.sendResponseHeaders(200, 0);
+        OutputStream out = gzip ? new GZIPOutputStream(ex.getResponseBody(), 1 << 16)
+                : new BufferedOutputStream(ex.getResponseBody(), 1 << 16);
+        try {
+            body.write(out);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        out.close(); // only on success: the final chunk tells the client the listing is complete
+    }
+}
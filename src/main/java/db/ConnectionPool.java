@@ -0,0 +1,259 @@
+package db;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Small bounded JDBC connection pool. Borrowed connections are proxies whose close() hands the
+ * physical connection back to the pool instead of closing it.
+ */
+public final class ConnectionPool implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(ConnectionPool.class);
+
+    // connections used this recently are handed out without an isValid() round trip
+    private static final long VALIDATION_BYPASS_MS = 500;
+    // a borrow only stamps the time and thread; the stack capture is opt-in as it costs more than the rest of it
+    private static final boolean LEAK_TRACE = DBConfig.POOL_LEAK_TRACE;
+    // upper bounds (ms) of the borrow wait-time histogram buckets; the last bucket is unbounded
+    static final long[] WAIT_BUCKETS_MS = {1, 5, 10, 50, 100, 500, 1_000, 5_000};
+
+    private final String url, user, pass;
+    private final int minSize, maxSize, validationTimeoutSec;
+    private final long borrowTimeoutMs, idleTimeoutMs, leakThresholdMs;
+
+    private final Semaphore permits;
+    private final BlockingDeque<Entry> idle = new LinkedBlockingDeque<>();
+    private final Set<Entry> borrowed = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger waiters = new AtomicInteger();
+    private final LongAdder borrows = new LongAdder(), timeouts = new LongAdder(),
+            created = new LongAdder(), destroyed = new LongAdder(), leaks = new LongAdder();
+    private final LongAdder[] waitHistogram = new LongAdder[WAIT_BUCKETS_MS.length + 1];
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final ScheduledExecutorService maintenance;
+    private volatile boolean closed;
+
+    public ConnectionPool(String url, String user, String pass) {
+        this(url, user, pass, DBConfig.POOL_MIN_SIZE, DBConfig.POOL_MAX_SIZE, DBConfig.POOL_BORROW_TIMEOUT_MS,
+                DBConfig.POOL_IDLE_TIMEOUT_MS, DBConfig.POOL_LEAK_THRESHOLD_MS, DBConfig.POOL_VALIDATION_TIMEOUT_S,
+                DBConfig.POOL_MAINTENANCE_INTERVAL_MS);
+    }
+
+    public ConnectionPool(String url, String user, String pass, int minSize, int maxSize, long borrowTimeoutMs,
+                          long idleTimeoutMs, long leakThresholdMs, int validationTimeoutSec, long maintenanceIntervalMs) {
+        if (maxSize < 1 || minSize < 0 || minSize > maxSize)
+            throw new IllegalArgumentException("Invalid pool size: min=" + minSize + ", max=" + maxSize);
+        this.url = url; this.user = user; this.pass = pass;
+        this.minSize = minSize; this.maxSize = maxSize;
+        this.borrowTimeoutMs = borrowTimeoutMs; this.idleTimeoutMs = idleTimeoutMs;
+        this.leakThresholdMs = leakThresholdMs; this.validationTimeoutSec = validationTimeoutSec;
+        this.permits = new Semaphore(maxSize, true);
+        for (int i = 0; i < waitHistogram.length; i++) waitHistogram[i] = new LongAdder();
+        this.maintenance = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "srms-pool-maintenance");
+            t.setDaemon(true);
+            return t;
+        });
+        maintenance.scheduleWithFixedDelay(this::maintain, maintenanceIntervalMs, maintenanceIntervalMs,
+                TimeUnit.MILLISECONDS);
+    }
+
+    public Connection borrow() throws SQLException {
+        if (closed) throw new SQLException("Connection pool is closed");
+        long t0 = System.nanoTime();
+        waiters.incrementAndGet();
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(borrowTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection", e);
+        } finally {
+            waiters.decrementAndGet();
+            recordWait(System.nanoTime() - t0);
+        }
+        if (!acquired) {
+            timeouts.increment();
+            throw new SQLTransientConnectionException("Timed out after " + borrowTimeoutMs
+                    + " ms waiting for a connection (" + stats() + ")");
+        }
+        try {
+            Entry e = takeValidIdle();
+            if (e == null) e = open();
+            e.borrowedAt = System.currentTimeMillis();
+            e.borrowThread = Thread.currentThread().getName();
+            e.borrowSite = LEAK_TRACE && leakThresholdMs > 0 ? new Throwable("Connection borrowed here") : null;
+            e.leakReported = false;
+            borrowed.add(e);
+            borrows.increment();
+            return e.proxy();
+        } catch (SQLException | RuntimeException ex) {
+            permits.release();
+            throw ex;
+        }
+    }
+
+    private Entry takeValidIdle() {
+        Entry e;
+        while ((e = idle.pollFirst()) != null) {
+            if (System.currentTimeMillis() - e.lastUsed < VALIDATION_BYPASS_MS || isValid(e)) return e;
+            destroy(e);
+        }
+        return null;
+    }
+
+    private boolean isValid(Entry e) {
+        try { return e.raw.isValid(validationTimeoutSec); }
+        catch (SQLException ex) { return false; }
+    }
+
+    private Entry open() throws SQLException {
+        Entry e = new Entry(DriverManager.getConnection(url, user, pass));
+        created.increment();
+        return e;
+    }
+
+    private void release(Entry e, boolean broken) {
+        if (!borrowed.remove(e)) return;
+        try {
+            if (!broken) {
+                try {
+                    if (!e.raw.getAutoCommit()) {
+                        e.raw.rollback();
+                        e.raw.setAutoCommit(true);
+                    }
+                    if (e.raw.isReadOnly()) e.raw.setReadOnly(false);
+                } catch (SQLException ex) {
+                    broken = true;
+                }
+            }
+            if (broken || closed) destroy(e);
+            else {
+                e.lastUsed = System.currentTimeMillis();
+                idle.offerFirst(e); // LIFO keeps the hottest connections busy and lets the rest age out
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void destroy(Entry e) {
+        destroyed.increment();
+        try { e.raw.close(); } catch (SQLException ignored) { }
+    }
+
+    private void recordWait(long nanos) {
+        long ms = TimeUnit.NANOSECONDS.toMillis(nanos);
+        int i = 0;
+        while (i < WAIT_BUCKETS_MS.length && ms >= WAIT_BUCKETS_MS[i]) i++;
+        waitHistogram[i].increment();
+        maxWaitNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    // Evicts idle connections past idleTimeout (down to minSize), tops up to minSize and reports leaks.
+    private void maintain() {
+        try {
+            long now = System.currentTimeMillis();
+            for (Entry e : idle) {
+                if (borrowed.size() + idle.size() <= minSize) break;
+                if (now - e.lastUsed > idleTimeoutMs && idle.remove(e)) destroy(e);
+            }
+            while (!closed && borrowed.size() + idle.size() < minSize && permits.tryAcquire()) {
+                try { idle.offerLast(open()); }
+                finally { permits.release(); }
+            }
+            if (leakThresholdMs > 0) {
+                for (Entry e : borrowed) {
+                    if (!e.leakReported && now - e.borrowedAt > leakThresholdMs) {
+                        e.leakReported = true;
+                        leaks.increment();
+                        if (e.borrowSite != null) {
+                            log.warn("Possible connection leak: held for {} ms by {}", now - e.borrowedAt, e.borrowThread, e.borrowSite);
+                        } else {
+                            log.warn("Possible connection leak: held for {} ms by {} (-Dsrms.db.pool.leakTrace=true shows where it was borrowed)",
+                                    now - e.borrowedAt, e.borrowThread);
+                        }
+                    }
+                }
+            }
+        } catch (SQLException | RuntimeException e) {
+            log.warn("Pool maintenance failed: {}", e.getMessage());
+        }
+    }
+
+    public PoolStats stats() {
+        long[] hist = new long[waitHistogram.length];
+        for (int i = 0; i < hist.length; i++) hist[i] = waitHistogram[i].sum();
+        return new PoolStats(borrowed.size(), idle.size(), waiters.get(), maxSize, borrows.sum(), timeouts.sum(),
+                created.sum(), destroyed.sum(), leaks.sum(), TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get()), hist);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        maintenance.shutdownNow();
+        Entry e;
+        while ((e = idle.pollFirst()) != null) destroy(e);
+        // borrowed connections are closed when they are returned
+    }
+
+    private final class Entry {
+        final Connection raw;
+        volatile long lastUsed = System.currentTimeMillis();
+        volatile long borrowedAt;
+        volatile Throwable borrowSite;
+        volatile String borrowThread;
+        volatile boolean leakReported;
+
+        Entry(Connection raw) { this.raw = raw; }
+
+        Connection proxy() {
+            final boolean[] returned = {false};
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, (p, m, args) -> {
+                        switch (m.getName()) {
+                            case "close" -> {
+                                synchronized (returned) {
+                                    if (!returned[0]) { returned[0] = true; release(this, false); }
+                                }
+                                return null;
+                            }
+                            case "isClosed" -> { if (returned[0]) return true; }
+                            case "equals" -> { return p == args[0]; }
+                            case "hashCode" -> { return System.identityHashCode(p); }
+                            case "toString" -> { return "Pooled[" + raw + "]"; }
+                            default -> { }
+                        }
+                        if (returned[0]) throw new SQLException("Connection already returned to the pool");
+                        try {
+                            return m.invoke(raw, args);
+                        } catch (InvocationTargetException ex) {
+                            Throwable cause = ex.getCause();
+                            if (cause instanceof SQLException sql && isFatal(sql)) {
+                                synchronized (returned) {
+                                    if (!returned[0]) { returned[0] = true; release(this, true); }
+                                }
+                            }
+                            throw cause;
+                        }
+                    });
+        }
+    }
+
+    // SQLState class 08 = connection exception; such connections must never go back to the pool
+    private static boolean isFatal(SQLException e) {
+        String state = e.getSQLState();
+        return state != null && state.startsWith("08");
+    }
+}
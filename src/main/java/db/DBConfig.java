@@ -2,7 +2,46 @@ package db;
 
 public final class DBConfig {
     private DBConfig() {}
-    public static final String URL  = "jdbc:mysql://localhost:3306/srms_db?useSSL=false&serverTimezone=UTC";
-    public static final String USER = "root";     // XAMPP default
-    public static final String PASS = "";         // empty by default
+    // Every value can be overridden with -Dsrms.db.<key>=... (e.g. -Dsrms.db.url=jdbc:mysql://db:3306/srms_db)
+    public static final String URL  = prop("url", "jdbc:mysql://localhost:3306/srms_db?useSSL=false&serverTimezone=UTC&rewriteBatchedStatements=true");
+    public static final String USER = prop("user", "root");     // XAMPP default
+    public static final String PASS = prop("pass", "");         // empty by default
+
+    // Connection pool
+    public static final int  POOL_MIN_SIZE         = intProp("pool.minSize", 2);
+    public static final int  POOL_MAX_SIZE         = intProp("pool.maxSize", 10);
+    public static final long POOL_BORROW_TIMEOUT_MS = longProp("pool.borrowTimeoutMs", 5_000);
+    public static final long POOL_IDLE_TIMEOUT_MS  = longProp("pool.idleTimeoutMs", 300_000);
+    public static final long POOL_LEAK_THRESHOLD_MS = longProp("pool.leakThresholdMs", 60_000); // 0 disables
+    // Debugging aid: capture a stack trace on every borrow so a leak report shows where it happened
+    public static final boolean POOL_LEAK_TRACE = Boolean.parseBoolean(prop("pool.leakTrace", "false"));
+    public static final int  POOL_VALIDATION_TIMEOUT_S = intProp("pool.validationTimeoutSec", 2);
+    public static final long POOL_MAINTENANCE_INTERVAL_MS = longProp("pool.maintenanceIntervalMs", 30_000);
+
+    // Read replicas: comma-separated JDBC URLs; empty sends all reads to the primary (url)
+    public static final String REPLICA_URLS = prop("replicas", "");
+    public static final String REPLICA_USER = prop("replica.user", USER);
+    public static final String REPLICA_PASS = prop("replica.pass", PASS);
+    // A replica further behind than this takes no reads until it catches up
+    public static final long REPLICA_MAX_LAG_MS = longProp("replica.maxLagMs", 1_000);
+    public static final long REPLICA_CHECK_INTERVAL_MS = longProp("replica.checkIntervalMs", 1_000);
+    // One row with the lag in seconds: Seconds_Behind_Source (or _Master) when present, else the first column
+    public static final String REPLICA_LAG_QUERY = prop("replica.lagQuery", "SHOW REPLICA STATUS");
+    // After a write, the writing thread reads from the primary for this long (read-your-writes)
+    public static final long READ_YOUR_WRITES_MS = longProp("replica.pinMs", 2_000);
+
+    // Fetch size for streaming reads; Integer.MIN_VALUE makes MySQL Connector/J stream row by row
+    public static final int STREAM_FETCH_SIZE = intProp("streamFetchSize", Integer.MIN_VALUE);
+    // Largest IN (...) list per statement for multi-id lookups; longer id lists are split into chunks
+    public static final int IN_LIST_MAX = intProp("inListMax", 1000);
+
+    static String prop(String key, String def) {
+        return System.getProperty("srms.db." + key, def);
+    }
+    static int intProp(String key, int def) {
+        return Integer.parseInt(prop(key, Integer.toString(def)).trim());
+    }
+    static long longProp(String key, long def) {
+        return Long.parseLong(prop(key, Long.toString(def)).trim());
+    }
 }
@@ -1,13 +1,171 @@
 package db;
 
+import metrics.Counter;
+import metrics.Metrics;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.Collection;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
 
 public final class DBConnection {
     private DBConnection() {}
 
+    private static volatile ConnectionPool pool;
+    private static volatile ReplicaSet replicas;
+    private static final boolean REPLICATED = !DBConfig.REPLICA_URLS.isBlank();
+    private static final ThreadLocal<Session> session = ThreadLocal.withInitial(Session::new);
+    private static final Counter REPLICA_READS = Metrics.counter("srms_db_reads_total", "Read connections by server", "server", "replica"),
+            PRIMARY_READS = Metrics.counter("srms_db_reads_total", "Read connections by server", "server", "primary");
+
+    /**
+     * Read-your-writes state of one caller: when its last write committed. A session's reads stay on the primary
+     * for srms.db.replica.pinMs after that. Every thread starts with its own; code that does one caller's work on
+     * another thread (a pool, a batch, a background flush) carries the caller's session over with {@link #use}.
+     */
+    public static final class Session {
+        private final AtomicLong lastWrite;
+
+        public Session() { this(0); }
+
+        /** A session whose last write was at {@code lastWriteMillis}, e.g. as remembered by a client; never later than now. */
+        public Session(long lastWriteMillis) { lastWrite = new AtomicLong(Math.min(lastWriteMillis, System.currentTimeMillis())); }
+
+        public long lastWrite() { return lastWrite.get(); }
+
+        /** Records a write by this session that is committed as of now. */
+        public void wrote() {
+            long now = System.currentTimeMillis();
+            lastWrite.accumulateAndGet(now, Math::max);
+        }
+
+        public boolean pinned() { return System.currentTimeMillis() - lastWrite.get() < DBConfig.READ_YOUR_WRITES_MS; }
+
+        /** For one read done on behalf of several sessions: pinned while any of them is. */
+        public static Session latest(Collection<Session> sessions) {
+            long w = 0;
+            for (Session s : sessions) w = Math.max(w, s.lastWrite());
+            return new Session(w);
+        }
+    }
+
+    public static boolean replicated() { return REPLICATED; }
+
+    public static Session session() { return session.get(); }
+
+    /** Makes s this thread's session and returns the one it replaces, to be restored in a finally block. */
+    public static Session use(Session s) {
+        Session prev = session.get();
+        session.set(s);
+        return prev;
+    }
+
+    /** Wraps task to run as the calling thread's session on whichever thread picks it up. */
+    public static Runnable carrySession(Runnable task) {
+        Session s = session.get();
+        return () -> {
+            Session prev = use(s);
+            try {
+                task.run();
+            } finally {
+                use(prev);
+            }
+        };
+    }
+
+    public static <T> Callable<T> carrySession(Callable<T> task) {
+        Session s = session.get();
+        return () -> {
+            Session prev = use(s);
+            try {
+                return task.call();
+            } finally {
+                use(prev);
+            }
+        };
+    }
+
+    // Returns a pooled connection to the primary; close() gives it back to the pool.
     public static Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(DBConfig.URL, DBConfig.USER, DBConfig.PASS);
+        return pool().borrow();
+    }
+
+    // A primary connection for writing. Its close() stamps the session's write, i.e. after the commit, so neither
+    // a long pool wait nor a long batch uses up the read-your-writes window before the data is even there
+    public static Connection getWriteConnection() throws SQLException {
+        Connection c = getConnection();
+        if (!REPLICATED) return c;
+        Session s = session.get();
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, m, args) -> {
+                    try {
+                        return m.invoke(c, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    } finally {
+                        if (m.getName().equals("close")) s.wrote();
+                    }
+                });
+    }
+
+    // A connection for reading: a replica within the lag bound (srms.db.replicas), else the primary
+    public static Connection getReadConnection() throws SQLException {
+        if (REPLICATED && !session.get().pinned()) {
+            Connection c = replicas().borrow();
+            if (c != null) {
+                REPLICA_READS.increment();
+                return c;
+            }
+        }
+        PRIMARY_READS.increment();
+        return getConnection();
+    }
+
+    private static ReplicaSet replicas() {
+        ReplicaSet r = replicas;
+        if (r == null) {
+            synchronized (DBConnection.class) {
+                r = replicas;
+                if (r == null) replicas = r = ReplicaSet.fromConfig();
+            }
+        }
+        return r;
+    }
+
+    public static ConnectionPool pool() {
+        ConnectionPool p = pool;
+        if (p == null) {
+            synchronized (DBConnection.class) {
+                p = pool;
+                if (p == null) {
+                    pool = p = new ConnectionPool(DBConfig.URL, DBConfig.USER, DBConfig.PASS);
+                    registerGauges(p);
+                }
+            }
+        }
+        return p;
+    }
+
+    private static void registerGauges(ConnectionPool p) {
+        String help = "Connection pool state";
+        Metrics.gauge("srms_db_pool_connections", help, () -> p.stats().active(), "state", "active");
+        Metrics.gauge("srms_db_pool_connections", help, () -> p.stats().idle(), "state", "idle");
+        Metrics.gauge("srms_db_pool_waiters", "Threads waiting for a connection", () -> p.stats().waiters());
+        Metrics.gauge("srms_db_pool_timeouts_total", "Borrows that timed out", () -> p.stats().timeouts());
+    }
+
+    public static PoolStats stats() { return pool().stats(); }
+
+    /** Primary pool stats, followed by each replica's lag and pool stats when replicas are configured. */
+    public static String describe() {
+        return REPLICATED ? "primary: " + stats() + "\n" + replicas().describe() : stats().toString();
+    }
+
+    public static synchronized void shutdown() {
+        if (pool != null) { pool.close(); pool = null; }
+        if (replicas != null) { replicas.close(); replicas = null; }
     }
 }
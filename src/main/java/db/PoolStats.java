@@ -0,0 +1,25 @@
+package db;
+
+/** Point-in-time snapshot of {@link ConnectionPool} counters. */
+public record PoolStats(int active, int idle, int waiters, int maxSize,
+                        long borrows, long timeouts, long created, long destroyed, long leaks,
+                        long maxWaitMs, long[] waitHistogram) {
+
+    /** Renders the borrow wait-time histogram as "&lt;1ms=120 &lt;5ms=3 ... &gt;=5000ms=0". */
+    public String waitHistogramText() {
+        StringBuilder sb = new StringBuilder();
+        long[] bounds = ConnectionPool.WAIT_BUCKETS_MS;
+        for (int i = 0; i < waitHistogram.length; i++) {
+            if (i > 0) sb.append(' ');
+            if (i < bounds.length) sb.append('<').append(bounds[i]).append("ms=");
+            else sb.append(">=").append(bounds[bounds.length - 1]).append("ms=");
+            sb.append(waitHistogram[i]);
+        }
+        return sb.toString();
+    }
+
+    @Override public String toString() {
+        return "PoolStats{active=%d, idle=%d, waiters=%d, max=%d, borrows=%d, timeouts=%d, created=%d, destroyed=%d, leaks=%d, maxWaitMs=%d}"
+                .formatted(active, idle, waiters, maxSize, borrows, timeouts, created, destroyed, leaks, maxWaitMs);
+    }
+}
@@ -0,0 +1,127 @@
+package db;
+
+import metrics.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Read replicas of the primary, each with its own pool. A checker thread runs the lag query on every replica
+ * each check interval; replicas that answered and lag at most maxLagMs take reads in turn. When none does
+ * (all down, all behind, or none checked yet) {@link #borrow()} returns null and the caller reads from the primary.
+ */
+final class ReplicaSet implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(ReplicaSet.class);
+    private static final long DOWN = -1; // lag of a replica that failed its last check or is not replicating
+
+    private final List<Replica> replicas = new ArrayList<>();
+    private final String lagQuery;
+    private final long maxLagMs;
+    private final AtomicInteger next = new AtomicInteger();
+    private final ScheduledExecutorService checker;
+
+    private static final class Replica {
+        final String url;
+        final ConnectionPool pool;
+        volatile long lagMs = DOWN;
+
+        Replica(String url, ConnectionPool pool) { this.url = url; this.pool = pool; }
+    }
+
+    ReplicaSet(List<String> urls, String user, String pass, String lagQuery, long maxLagMs, long checkIntervalMs) {
+        this.lagQuery = lagQuery;
+        this.maxLagMs = maxLagMs;
+        for (String url : urls) {
+            Replica r = new Replica(url, new ConnectionPool(url, user, pass));
+            Metrics.gauge("srms_db_replica_lag_ms", "Replication lag at the last check (-1: down or not replicating)",
+                    () -> r.lagMs, "replica", String.valueOf(replicas.size()));
+            replicas.add(r);
+        }
+        this.checker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "srms-replica-check");
+            t.setDaemon(true);
+            return t;
+        });
+        checker.scheduleWithFixedDelay(this::checkAll, 0, checkIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    static ReplicaSet fromConfig() {
+        List<String> urls = new ArrayList<>();
+        for (String url : DBConfig.REPLICA_URLS.split(",")) if (!url.isBlank()) urls.add(url.trim());
+        return new ReplicaSet(urls, DBConfig.REPLICA_USER, DBConfig.REPLICA_PASS, DBConfig.REPLICA_LAG_QUERY,
+                DBConfig.REPLICA_MAX_LAG_MS, DBConfig.REPLICA_CHECK_INTERVAL_MS);
+    }
+
+    /** A connection to the next replica within the lag bound, or null if there is none. */
+    Connection borrow() {
+        int n = replicas.size();
+        if (n == 0) return null;
+        int start = Math.floorMod(next.getAndIncrement(), n);
+        for (int i = 0; i < n; i++) {
+            Replica r = replicas.get((start + i) % n);
+            if (r.lagMs == DOWN || r.lagMs > maxLagMs) continue;
+            try {
+                return r.pool.borrow();
+            } catch (SQLTransientConnectionException e) {
+                // pool exhausted: busy, not broken
+            } catch (SQLException e) {
+                log.warn("Replica {} is down, reading elsewhere until it passes a check: {}", r.url, e.getMessage());
+                r.lagMs = DOWN;
+            }
+        }
+        return null;
+    }
+
+    private void checkAll() {
+        for (Replica r : replicas) {
+            long lag = lag(r), was = r.lagMs;
+            r.lagMs = lag;
+            boolean usable = lag != DOWN && lag <= maxLagMs, wasUsable = was != DOWN && was <= maxLagMs;
+            if (usable && !wasUsable) log.info("Replica {} takes reads (lag {} ms)", r.url, lag);
+            else if (!usable && wasUsable) log.warn("Replica {} takes no reads: {}", r.url, lag == DOWN ? "down or not replicating" : "lag " + lag + " ms");
+        }
+    }
+
+    private long lag(Replica r) {
+        try (Connection c = r.pool.borrow(); Statement st = c.createStatement()) {
+            st.setQueryTimeout(DBConfig.POOL_VALIDATION_TIMEOUT_S);
+            try (ResultSet rs = st.executeQuery(lagQuery)) {
+                if (!rs.next()) return DOWN; // no replication configured on this server
+                ResultSetMetaData md = rs.getMetaData();
+                int col = 1;
+                for (int i = 1; i <= md.getColumnCount(); i++) {
+                    String label = md.getColumnLabel(i);
+                    if (label.equalsIgnoreCase("Seconds_Behind_Source") || label.equalsIgnoreCase("Seconds_Behind_Master")) col = i;
+                }
+                BigDecimal seconds = rs.getBigDecimal(col); // NULL: replication threads stopped
+                return seconds == null ? DOWN : Math.max(0, seconds.movePointRight(3).longValue());
+            }
+        } catch (SQLException | RuntimeException e) {
+            return DOWN;
+        }
+    }
+
+    /** Per replica: url, lag at the last check and pool state. */
+    String describe() {
+        StringBuilder out = new StringBuilder();
+        for (Replica r : replicas) {
+            out.append(out.isEmpty() ? "" : "\n").append("replica ").append(r.url).append(": ")
+                    .append(r.lagMs == DOWN ? "down" : "lag " + r.lagMs + " ms").append(", ").append(r.pool.stats());
+        }
+        return out.toString();
+    }
+
+    @Override
+    public void close() {
+        checker.shutdownNow();
+        for (Replica r : replicas) r.pool.close();
+    }
+}
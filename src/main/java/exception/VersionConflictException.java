@@ -0,0 +1,8 @@
+package exception;
+
+public class VersionConflictException extends RuntimeException {
+    public VersionConflictException(int id, int expectedVersion) {
+        super("Student " + id + " was modified concurrently (expected version " + expectedVersion + ")");
+    }
+    public VersionConflictException(String msg) { super(msg); }
+}
@@ -0,0 +1,18 @@
+package metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/** Monotonic counter; a no-op while metrics are disabled. */
+public final class Counter extends Metric {
+    private final LongAdder value = new LongAdder();
+
+    Counter(String name, String labels, String help) { super(name, labels, help); }
+
+    public void increment() { if (Metrics.enabled) value.increment(); }
+
+    public void add(long n) { if (Metrics.enabled) value.add(n); }
+
+    public long get() { return value.sum(); }
+
+    @Override void reset() { value.reset(); }
+}
@@ -0,0 +1,19 @@
+package metrics;
+
+import java.util.function.LongSupplier;
+
+/** Value sampled only when metrics are exported, so it costs nothing on the hot path. */
+public final class Gauge extends Metric {
+    private volatile LongSupplier source;
+
+    Gauge(String name, String labels, String help, LongSupplier source) {
+        super(name, labels, help);
+        this.source = source;
+    }
+
+    void source(LongSupplier source) { this.source = source; }
+
+    public long get() { return source.getAsLong(); }
+
+    @Override void reset() { }
+}
@@ -0,0 +1,18 @@
+package metrics;
+
+/** A named series; {@code labels} is the rendered Prometheus label set without braces, or "". */
+public abstract sealed class Metric permits Counter, Timer, Gauge {
+    final String name, labels, help;
+
+    Metric(String name, String labels, String help) {
+        this.name = name;
+        this.labels = labels;
+        this.help = help;
+    }
+
+    public String name() { return name; }
+
+    public String labels() { return labels; }
+
+    abstract void reset();
+}
@@ -0,0 +1,193 @@
+package metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import util.LatencyHistogram;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Process-wide metrics registry. Instrumented code keeps its {@link Counter}/{@link Timer} in a
+ * static final field, so recording is one volatile read when disabled and a few striped
+ * {@code LongAdder} increments when enabled; nothing on the hot path takes a lock or allocates.
+ * Everything registered here can be dumped in Prometheus text format or summarized as one log line.
+ */
+public final class Metrics {
+    private Metrics() {}
+
+    private static final Logger log = LoggerFactory.getLogger(Metrics.class);
+    public static final long REPORT_INTERVAL_MS = Long.getLong("srms.metrics.reportIntervalMs", 60_000L); // 0 = off
+    public static final String PROMETHEUS_FILE = System.getProperty("srms.metrics.prometheusFile");
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    static volatile boolean enabled = Boolean.getBoolean("srms.metrics.enabled");
+    private static final Map<String, Metric> registry = new ConcurrentHashMap<>();
+    private static final Map<String, Long> lastCounts = new HashMap<>(); // guarded by Metrics.class
+    private static long lastReportNanos = System.nanoTime();
+    private static ScheduledExecutorService reporter;
+
+    public static boolean enabled() { return enabled; }
+
+    /** Turns recording on or off at runtime; values recorded so far are kept. */
+    public static void setEnabled(boolean on) { enabled = on; }
+
+    /** {@code labels} are name/value pairs, e.g. {@code counter("x_total", "help", "method", "save")}. */
+    public static Counter counter(String name, String help, String... labels) {
+        String l = labels(labels);
+        return (Counter) registry.computeIfAbsent(key(name, l), k -> new Counter(name, l, help));
+    }
+
+    public static Timer timer(String name, String help, String... labels) {
+        String l = labels(labels);
+        return (Timer) registry.computeIfAbsent(key(name, l), k -> new Timer(name, l, help));
+    }
+
+    /** Registers (or re-points) a gauge; the supplier is only called on export. */
+    public static Gauge gauge(String name, String help, LongSupplier source, String... labels) {
+        String l = labels(labels);
+        Gauge g = (Gauge) registry.computeIfAbsent(key(name, l), k -> new Gauge(name, l, help, source));
+        g.source(source);
+        return g;
+    }
+
+    public static void reset() {
+        for (Metric m : registry.values()) m.reset();
+        synchronized (Metrics.class) { lastCounts.clear(); }
+    }
+
+    /** All series in Prometheus text exposition format (timers as summaries in seconds). */
+    public static String prometheus() {
+        StringBuilder sb = new StringBuilder();
+        String family = null;
+        for (Metric m : sorted()) {
+            if (!m.name.equals(family)) {
+                family = m.name;
+                String type = m instanceof Counter ? "counter" : m instanceof Gauge ? "gauge" : "summary";
+                sb.append("# HELP ").append(m.name).append(' ').append(m.help).append('\n');
+                sb.append("# TYPE ").append(m.name).append(' ').append(type).append('\n');
+            }
+            if (m instanceof Counter c) sample(sb, m.name, m.labels, c.get());
+            else if (m instanceof Gauge g) sample(sb, m.name, m.labels, g.get());
+            else if (m instanceof Timer t) {
+                LatencyHistogram h = t.histogram();
+                for (double q : QUANTILES) {
+                    String l = (m.labels.isEmpty() ? "" : m.labels + ",") + "quantile=\"" + q + "\"";
+                    sample(sb, m.name, l, h.percentileNanos(q * 100) / 1e9);
+                }
+                sample(sb, m.name + "_sum", m.labels, h.sumNanos() / 1e9);
+                sample(sb, m.name + "_count", m.labels, h.count());
+            }
+        }
+        return sb.toString();
+    }
+
+    /** Writes {@link #prometheus()} to the file atomically (temp file + rename), for a textfile collector. */
+    public static void writePrometheus(Path file) throws IOException {
+        Path dir = file.toAbsolutePath().getParent();
+        Path tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+        try {
+            Files.writeString(tmp, prometheus(), StandardCharsets.UTF_8);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * One-line summary of every non-empty series: counters with their rate since the previous
+     * summary, timers with count, rate, p50/p99/max.
+     */
+    public static synchronized String summary() {
+        long now = System.nanoTime();
+        double secs = Math.max(1e-9, (now - lastReportNanos) / 1e9);
+        lastReportNanos = now;
+        StringJoiner out = new StringJoiner("; ", "metrics: ", "");
+        for (Metric m : sorted()) {
+            String id = m.labels.isEmpty() ? m.name : m.name + "{" + m.labels + "}";
+            if (m instanceof Gauge g) { out.add(id + "=" + g.get()); continue; }
+            long n = m instanceof Counter c ? c.get() : ((Timer) m).histogram().count();
+            if (n == 0) continue;
+            Long prev = lastCounts.put(key(m.name, m.labels), n);
+            String rate = String.format(Locale.ROOT, "%.1f/s", (n - (prev == null ? 0 : prev)) / secs);
+            if (m instanceof Counter) { out.add(id + "=" + n + " (" + rate + ")"); continue; }
+            LatencyHistogram h = ((Timer) m).histogram();
+            out.add(String.format(Locale.ROOT, "%s n=%d (%s) p50=%s p99=%s max=%s", id, n, rate,
+                    human(h.percentileNanos(50)), human(h.percentileNanos(99)), human(h.maxNanos())));
+        }
+        return out.toString();
+    }
+
+    /**
+     * Starts a daemon that every {@link #REPORT_INTERVAL_MS} logs {@link #summary()} and, if
+     * {@code srms.metrics.prometheusFile} is set, rewrites that file. Does nothing if already started.
+     */
+    public static synchronized void startReporter() {
+        if (reporter != null || REPORT_INTERVAL_MS <= 0) return;
+        reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "srms-metrics");
+            t.setDaemon(true);
+            return t;
+        });
+        reporter.scheduleAtFixedRate(Metrics::report, REPORT_INTERVAL_MS, REPORT_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /** Stops the reporter after one final report. */
+    public static synchronized void stopReporter() {
+        if (reporter == null) return;
+        reporter.shutdownNow();
+        reporter = null;
+        report();
+    }
+
+    private static void report() {
+        if (!enabled) return;
+        try {
+            log.info(summary());
+            if (PROMETHEUS_FILE != null) writePrometheus(Path.of(PROMETHEUS_FILE));
+        } catch (IOException | RuntimeException e) {
+            log.warn("Metrics report failed: {}", e.toString());
+        }
+    }
+
+    private static List<Metric> sorted() {
+        List<Metric> all = new ArrayList<>(registry.values());
+        all.sort(Comparator.comparing((Metric m) -> m.name).thenComparing(m -> m.labels));
+        return all;
+    }
+
+    private static void sample(StringBuilder sb, String name, String labels, double v) {
+        sb.append(name);
+        if (!labels.isEmpty()) sb.append('{').append(labels).append('}');
+        sb.append(' ');
+        if (v == Math.rint(v) && Math.abs(v) < 1e15) sb.append((long) v);
+        else sb.append(v);
+        sb.append('\n');
+    }
+
+    private static String labels(String[] pairs) {
+        if (pairs.length % 2 != 0) throw new IllegalArgumentException("labels must be name/value pairs");
+        StringJoiner j = new StringJoiner(",");
+        for (int i = 0; i < pairs.length; i += 2) {
+            j.add(pairs[i] + "=\"" + pairs[i + 1].replace("\\", "\\\\").replace("\"", "\\\"") + "\"");
+        }
+        return j.toString();
+    }
+
+    private static String key(String name, String labels) { return name + "{" + labels + "}"; }
+
+    private static String human(long nanos) {
+        if (nanos < 10_000) return nanos + "ns";
+        if (nanos < 10_000_000) return nanos / 1000 + "us";
+        return nanos / 1_000_000 + "ms";
+    }
+}
@@ -0,0 +1,26 @@
+package metrics;
+
+import util.LatencyHistogram;
+
+/**
+ * Latency timer backed by a log-linear histogram. Typical use:
+ * <pre>{@code long t = timer.start(); try { ... } finally { timer.stop(t); }}</pre>
+ * While metrics are disabled {@link #start} returns 0 without reading the clock and {@link #stop} ignores it.
+ */
+public final class Timer extends Metric {
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    Timer(String name, String labels, String help) { super(name, labels, help); }
+
+    public long start() { return Metrics.enabled ? System.nanoTime() : 0L; }
+
+    public void stop(long start) {
+        if (start != 0L) histogram.record(System.nanoTime() - start);
+    }
+
+    public void record(long nanos) { if (Metrics.enabled) histogram.record(nanos); }
+
+    public LatencyHistogram histogram() { return histogram; }
+
+    @Override void reset() { histogram.reset(); }
+}
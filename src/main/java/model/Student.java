@@ -10,6 +10,7 @@ public class Student {
     private String  department;
     private double  gpa;
     private Instant createdAt;    // read-only from DB
+    private int     version;      // optimistic-locking counter, bumped by every update
 
     public Student(Integer id, String name, String email, String department, double gpa, Instant createdAt) {
         this.id = id;
@@ -24,6 +25,16 @@ public class Student {
         this(null, name, email, department, gpa, null);
     }
 
+    public Student(Integer id, String name, String email, String department, double gpa, Instant createdAt,
+                   int version) {
+        this(id, name, email, department, gpa, createdAt);
+        this.version = version;
+    }
+
+    public Student(Student other) { // copy
+        this(other.id, other.name, other.email, other.department, other.gpa, other.createdAt, other.version);
+    }
+
     // Getters/setters (encapsulation)
     public Integer getId() { return id; }
     public void setId(Integer id) { this.id = id; }
@@ -36,6 +47,8 @@ public class Student {
     public double getGpa() { return gpa; }
     public void setGpa(double gpa) { this.gpa = gpa; }
     public Instant getCreatedAt() { return createdAt; }
+    public int getVersion() { return version; }
+    public void setVersion(int version) { this.version = version; }
 
     @Override public String toString() {
         return "Student{id=%d, name='%s', email='%s', dept='%s', gpa=%.2f}"
@@ -0,0 +1,842 @@
+package repo;
+
+import exception.DataAccessException;
+import model.Student;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Write-through in-memory copy of the students table stored as primitive columns instead of
+ * {@link Student} objects: int ids and versions, GPA in hundredths as a short, created_at as epoch
+ * millis, departments dictionary-encoded, names interned in one UTF-8 arena and emails in another.
+ * A row costs ~30 bytes plus its string bytes, against ~200 for a Student with its Integer, Instant
+ * and three Strings. Reads (lookups, scans, sorts, pages, queries) are served from the columns;
+ * writes go to the delegate first and are applied here only once it succeeds. Rows changed by
+ * other processes are only picked up by {@link #load} or {@link #apply}.
+ */
+public class ColumnarStudentDAO implements StudentDAO {
+    private static final long NO_TIMESTAMP = Long.MIN_VALUE;
+    private static final int CHUNK = 1024;
+
+    private final StudentDAO delegate;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // rows are kept in ascending id order; deleted rows stay as tombstones until the next compaction
+    private int size, live;
+    private int[] ids, versions, nameRef, emailRef;
+    private short[] gpas;    // hundredths (gpa is DECIMAL(3,2))
+    private char[] depts;    // codes into deptDict
+    private long[] created;  // epoch millis or NO_TIMESTAMP
+    private boolean[] dead;
+    private Arena names, emails;
+    private int[] emailTable; // open addressing, row + 1 (0 = empty); stale slots are skipped on lookup
+    private int emailEntries;
+    private final List<String> deptDict = new ArrayList<>();
+    private final Map<String, Character> deptCodes = new HashMap<>();
+    private volatile int[] deptRank;
+    private long modCount;
+    private final Map<String, Sorted> sortedCache = new ConcurrentHashMap<>();
+
+    private record Sorted(long modCount, int[] rows) { }
+
+    public ColumnarStudentDAO(StudentDAO delegate) {
+        this.delegate = delegate;
+        reset(16);
+    }
+
+    /** Replaces the contents with a full scan of the delegate. */
+    public ColumnarStudentDAO load() {
+        lock.writeLock().lock();
+        try {
+            reset(16);
+            boolean[] ordered = {true};
+            delegate.forEach(s -> {
+                if (size > 0 && s.getId() <= ids[size - 1]) ordered[0] = false;
+                append(s);
+            });
+            if (!ordered[0]) {
+                Integer[] order = new Integer[size];
+                for (int i = 0; i < size; i++) order[i] = i;
+                Arrays.sort(order, Comparator.comparingInt(r -> ids[r]));
+                int[] rows = new int[size];
+                int n = 0;
+                for (int i = 0; i < size; i++) if (i == 0 || ids[order[i]] != ids[order[i - 1]]) rows[n++] = order[i];
+                rebuild(rows, n);
+            } else {
+                trim();
+                rebuildEmailTable();
+            }
+            modCount++;
+            return this;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Approximate heap bytes held by the columns, arenas and email index. */
+    public long footprintBytes() {
+        lock.readLock().lock();
+        try {
+            long perRow = 4L * 4 + 2 + 2 + 8 + 1;
+            return perRow * ids.length + names.bytes.length + 4L * names.table.length + emails.bytes.length
+                    + 4L * emailTable.length;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ---- writes: delegate first, then the columns ----
+
+    @Override
+    public Student save(Student s) {
+        checkGpa(s);
+        Student saved = delegate.save(s);
+        if (saved.getId() != null) write(() -> upsert(saved));
+        return saved;
+    }
+
+    @Override
+    public int saveAll(List<Student> students) {
+        students.forEach(ColumnarStudentDAO::checkGpa);
+        int n = delegate.saveAll(students);
+        write(() -> { for (Student s : students) if (s.getId() != null) upsert(s); });
+        return n;
+    }
+
+    @Override
+    public Student update(Student s) {
+        checkGpa(s);
+        int before = s.getVersion();
+        Student updated = delegate.update(s);
+        if (updated.getVersion() != before) write(() -> upsert(updated)); // version only moves if a row changed
+        return updated;
+    }
+
+    @Override
+    public boolean updateIfVersion(Student s) {
+        checkGpa(s);
+        if (!delegate.updateIfVersion(s)) return false;
+        write(() -> upsert(s));
+        return true;
+    }
+
+    @Override
+    public void deleteById(Integer id) {
+        delegate.deleteById(id);
+        write(() -> {
+            int row = row(id);
+            if (row < 0) return;
+            markDead(row);
+            maybeCompact();
+        });
+    }
+
+    @Override
+    public void writeBatch(List<PendingWrite> writes) {
+        for (PendingWrite w : writes) if (!w.isDelete()) checkGpa(w.state());
+        delegate.writeBatch(writes);
+        write(() -> {
+            for (PendingWrite w : writes) {
+                int row = row(w.id());
+                if (row < 0) continue;
+                if (w.isDelete()) {
+                    markDead(row);
+                } else {
+                    Student s = new Student(w.state());
+                    s.setVersion(versions[row] + w.versionBumps());
+                    upsert(s);
+                }
+            }
+            maybeCompact();
+        });
+    }
+
+    /** Applies a change made through another process or node, as delivered by a change feed. */
+    public void apply(StudentChange c) {
+        write(() -> {
+            if (!c.removed()) {
+                checkGpa(c.state());
+                upsert(new Student(c.state()));
+                return;
+            }
+            int row = row(c.id());
+            if (row < 0) return;
+            markDead(row);
+            maybeCompact();
+        });
+    }
+
+    @Override
+    public boolean hasChangeLog() { return delegate.hasChangeLog(); }
+
+    @Override
+    public List<StudentChange> changesSince(long afterSeq, int limit) { return delegate.changesSince(afterSeq, limit); }
+
+    @Override
+    public long lastChangeSeq() { return delegate.lastChangeSeq(); }
+
+    // The CHECK constraint of the MySQL schema, enforced before the delegate sees the row: the gpa column is a short
+    private static void checkGpa(Student s) {
+        long hundredths = Math.round(s.getGpa() * 100);
+        if (Double.isNaN(s.getGpa()) || hundredths < 0 || hundredths > 400) {
+            throw new DataAccessException("GPA out of range 0.00-4.00: " + s.getGpa(), null);
+        }
+    }
+
+    private void markDead(int row) {
+        dead[row] = true;
+        live--;
+        emails.garbage += emails.encodedLength(emailRef[row]);
+    }
+
+    private void write(Runnable r) {
+        lock.writeLock().lock();
+        try {
+            r.run();
+            modCount++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void upsert(Student s) {
+        int idx = Arrays.binarySearch(ids, 0, size, s.getId());
+        if (idx >= 0) {
+            boolean wasDead = dead[idx];
+            if (wasDead) { dead[idx] = false; live++; }
+            if (!emails.equalsString(emailRef[idx], s.getEmail())) {
+                if (!wasDead) emails.garbage += emails.encodedLength(emailRef[idx]); // markDead counted it already
+                emailRef[idx] = emails.add(s.getEmail());
+                indexEmail(idx);
+            } else if (wasDead) {
+                emails.garbage -= emails.encodedLength(emailRef[idx]);
+                indexEmail(idx); // a table rebuild while the row was dead dropped its slot
+            }
+            long createdAt = created[idx];
+            setColumns(idx, s);
+            if (s.getCreatedAt() == null) created[idx] = createdAt; // callers rarely carry created_at
+            maybeCompact();
+            return;
+        }
+        int pos = -idx - 1;
+        if (pos == size) {
+            append(s);
+            indexEmail(size - 1);
+            return;
+        }
+        // an id lower than the current maximum (concurrent inserts finishing out of order): shift rows up
+        grow(size + 1);
+        for (Object col : new Object[]{ids, versions, nameRef, emailRef, gpas, depts, created, dead}) {
+            System.arraycopy(col, pos, col, pos + 1, size - pos);
+        }
+        size++;
+        live++;
+        ids[pos] = s.getId();
+        dead[pos] = false;
+        emailRef[pos] = emails.add(s.getEmail());
+        setColumns(pos, s);
+        for (int i = 0; i < emailTable.length; i++) if (emailTable[i] > pos) emailTable[i]++; // rows from pos moved up one
+        indexEmail(pos);
+    }
+
+    private void append(Student s) {
+        grow(size + 1);
+        int r = size++;
+        live++;
+        ids[r] = s.getId();
+        dead[r] = false;
+        emailRef[r] = emails.add(s.getEmail());
+        setColumns(r, s);
+    }
+
+    private void setColumns(int r, Student s) {
+        versions[r] = s.getVersion();
+        nameRef[r] = names.add(s.getName());
+        gpas[r] = (short) Math.round(s.getGpa() * 100);
+        depts[r] = deptCode(s.getDepartment());
+        created[r] = s.getCreatedAt() == null ? NO_TIMESTAMP : s.getCreatedAt().toEpochMilli();
+    }
+
+    private char deptCode(String d) {
+        Character c = deptCodes.get(d);
+        if (c != null) return c;
+        if (deptDict.size() > Character.MAX_VALUE) throw new IllegalStateException("Too many distinct departments");
+        char code = (char) deptDict.size();
+        deptDict.add(d);
+        deptCodes.put(d, code);
+        deptRank = null;
+        return code;
+    }
+
+    private void maybeCompact() {
+        if (size - live > Math.max(CHUNK, size / 4) || emails.garbage > Math.max(1 << 16, emails.used / 2)) {
+            int[] rows = new int[live];
+            int n = 0;
+            for (int r = 0; r < size; r++) if (!dead[r]) rows[n++] = r;
+            rebuild(rows, n);
+        }
+    }
+
+    // Copies the given rows, in order, into fresh columns and arenas (drops tombstones and stale strings)
+    private void rebuild(int[] rows, int n) {
+        int[] oIds = ids, oVersions = versions, oNames = nameRef, oEmails = emailRef;
+        short[] oGpas = gpas;
+        char[] oDepts = depts;
+        long[] oCreated = created;
+        Arena oldNames = names, oldEmails = emails;
+        reset(Math.max(16, n));
+        for (int i = 0; i < n; i++) {
+            int r = rows[i];
+            ids[i] = oIds[r];
+            versions[i] = oVersions[r];
+            nameRef[i] = names.copy(oldNames, oNames[r]);
+            emailRef[i] = emails.copy(oldEmails, oEmails[r]);
+            gpas[i] = oGpas[r];
+            depts[i] = oDepts[r];
+            created[i] = oCreated[r];
+        }
+        size = live = n;
+        trim();
+        rebuildEmailTable();
+    }
+
+    // Drops growth slack after a bulk build, leaving ~1/8 headroom for appends
+    private void trim() {
+        int cap = size + (size >> 3) + 16;
+        ids = Arrays.copyOf(ids, cap); versions = Arrays.copyOf(versions, cap);
+        nameRef = Arrays.copyOf(nameRef, cap); emailRef = Arrays.copyOf(emailRef, cap);
+        gpas = Arrays.copyOf(gpas, cap); depts = Arrays.copyOf(depts, cap);
+        created = Arrays.copyOf(created, cap); dead = Arrays.copyOf(dead, cap);
+        names.trim();
+        emails.trim();
+    }
+
+    private void reset(int capacity) {
+        size = live = 0;
+        ids = new int[capacity]; versions = new int[capacity]; nameRef = new int[capacity]; emailRef = new int[capacity];
+        gpas = new short[capacity]; depts = new char[capacity]; created = new long[capacity]; dead = new boolean[capacity];
+        names = new Arena(true);
+        emails = new Arena(false);
+        emailTable = new int[16];
+        emailEntries = 0;
+    }
+
+    private void grow(int needed) {
+        if (needed <= ids.length) return;
+        int cap = Math.max(needed, ids.length + (ids.length >> 1));
+        ids = Arrays.copyOf(ids, cap); versions = Arrays.copyOf(versions, cap);
+        nameRef = Arrays.copyOf(nameRef, cap); emailRef = Arrays.copyOf(emailRef, cap);
+        gpas = Arrays.copyOf(gpas, cap); depts = Arrays.copyOf(depts, cap);
+        created = Arrays.copyOf(created, cap); dead = Arrays.copyOf(dead, cap);
+    }
+
+    // ---- email index (ASCII case-insensitive, like the default MySQL collation for addresses) ----
+
+    private void indexEmail(int row) {
+        if ((emailEntries + 1) * 2 > emailTable.length) { rebuildEmailTable(); return; }
+        int mask = emailTable.length - 1;
+        int i = emails.hashIgnoreCase(emailRef[row]) & mask;
+        while (emailTable[i] != 0) i = (i + 1) & mask;
+        emailTable[i] = row + 1;
+        emailEntries++;
+    }
+
+    private void rebuildEmailTable() {
+        // load <= 1/4 after a rebuild, so the next one is at least live more inserts away (at 1/2)
+        emailTable = new int[Math.max(16, Integer.highestOneBit(Math.max(1, live) * 4 - 1) << 1)];
+        emailEntries = 0;
+        int mask = emailTable.length - 1;
+        for (int r = 0; r < size; r++) {
+            if (dead[r]) continue;
+            int i = emails.hashIgnoreCase(emailRef[r]) & mask;
+            while (emailTable[i] != 0) i = (i + 1) & mask;
+            emailTable[i] = r + 1;
+            emailEntries++;
+        }
+    }
+
+    private int emailRow(String email) {
+        byte[] key = email.getBytes(StandardCharsets.UTF_8);
+        int mask = emailTable.length - 1;
+        for (int i = Arena.hashIgnoreCase(key, 0, key.length) & mask; emailTable[i] != 0; i = (i + 1) & mask) {
+            int r = emailTable[i] - 1;
+            if (!dead[r] && emails.equalsIgnoreCase(emailRef[r], key)) return r;
+        }
+        return -1;
+    }
+
+    // ---- reads ----
+
+    private int row(int id) {
+        int r = Arrays.binarySearch(ids, 0, size, id);
+        return r >= 0 && !dead[r] ? r : -1;
+    }
+
+    private Student student(int r) {
+        return new Student(ids[r], names.get(nameRef[r]), emails.get(emailRef[r]), deptDict.get(depts[r]),
+                gpas[r] / 100.0, created[r] == NO_TIMESTAMP ? null : Instant.ofEpochMilli(created[r]), versions[r]);
+    }
+
+    @Override
+    public Optional<Student> findById(Integer id) {
+        lock.readLock().lock();
+        try {
+            int r = row(id);
+            return r < 0 ? Optional.empty() : Optional.of(student(r));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Student> findAllById(Collection<Integer> ids) {
+        List<Student> out = new ArrayList<>(ids.size());
+        lock.readLock().lock();
+        try {
+            for (Integer id : ids) {
+                int r = row(id);
+                if (r >= 0) out.add(student(r));
+            }
+            return out;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Student> findAll() {
+        lock.readLock().lock();
+        try {
+            List<Student> out = new ArrayList<>(live);
+            for (int r = 0; r < size; r++) if (!dead[r]) out.add(student(r));
+            return out;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Materializes CHUNK rows at a time and runs the action outside the lock, so it may write back
+    @Override
+    public void forEach(Consumer<Student> action) {
+        int after = Integer.MIN_VALUE;
+        while (true) {
+            List<Student> chunk = new ArrayList<>(CHUNK);
+            lock.readLock().lock();
+            try {
+                int r = Arrays.binarySearch(ids, 0, size, after);
+                for (r = r >= 0 ? r + 1 : -r - 1; r < size && chunk.size() < CHUNK; r++) {
+                    if (!dead[r]) chunk.add(student(r));
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            if (chunk.isEmpty()) return;
+            chunk.forEach(action);
+            after = chunk.get(chunk.size() - 1).getId();
+        }
+    }
+
+    @Override
+    public boolean emailExists(String email) {
+        lock.readLock().lock();
+        try {
+            return emailRow(email) >= 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Set<String> findAllEmails() {
+        lock.readLock().lock();
+        try {
+            Set<String> out = new HashSet<>(live * 2);
+            for (int r = 0; r < size; r++) if (!dead[r]) out.add(emails.get(emailRef[r]));
+            return out;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Student> searchByName(String nameLike) { return query(StudentQuery.all().name(nameLike)); }
+
+    @Override
+    public List<Student> sortBy(String field, boolean asc) { return query(StudentQuery.all().orderBy(field, asc)); }
+
+    @Override
+    public Page<Student> page(String field, boolean asc, int limit, String token) {
+        if (limit < 1) throw new IllegalArgumentException("limit must be positive");
+        String col = column(field);
+        PageToken after = token == null ? null : PageToken.decode(token, col, asc);
+        lock.readLock().lock();
+        try {
+            int[] order = sortedRows(col);
+            // order is ascending; a descending page walks it backwards
+            int i = after == null ? (asc ? 0 : order.length - 1)
+                    : asc ? bound(order, col, after, true) : bound(order, col, after, false) - 1;
+            List<Student> items = new ArrayList<>(limit);
+            int last = -1;
+            for (; i >= 0 && i < order.length && items.size() < limit; i += asc ? 1 : -1) {
+                last = order[i];
+                items.add(student(last));
+            }
+            boolean more = i >= 0 && i < order.length;
+            String next = more ? new PageToken(col, asc, sortValue(col, last), ids[last]).encode() : null;
+            return new Page<>(items, next);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Stream<Student> stream(String field, boolean asc) {
+        int[] snapshot;
+        lock.readLock().lock();
+        try {
+            int[] order = sortedRows(column(field));
+            snapshot = new int[order.length];
+            for (int i = 0; i < order.length; i++) snapshot[i] = ids[order[asc ? i : order.length - 1 - i]];
+        } finally {
+            lock.readLock().unlock();
+        }
+        return IntStream.of(snapshot).mapToObj(this::findById).flatMap(Optional::stream);
+    }
+
+    @Override
+    public List<Student> query(StudentQuery q) {
+        String col = column(q.sortField());
+        lock.readLock().lock();
+        try {
+            int[] rows;
+            int n;
+            if (!q.hasFilter()) {
+                rows = sortedRows(col);
+                n = rows.length;
+            } else {
+                rows = new int[Math.min(live, 1024)];
+                n = 0;
+                Matcher m = new Matcher(q);
+                for (int r = 0; r < size; r++) {
+                    if (dead[r] || !m.matches(r)) continue;
+                    if (n == rows.length) rows = Arrays.copyOf(rows, Math.max(16, n * 2));
+                    rows[n++] = r;
+                }
+                sortRows(rows, n, col);
+            }
+            int k = Math.min(n, q.limit());
+            List<Student> out = new ArrayList<>(k);
+            for (int i = 0; i < k; i++) out.add(student(rows[q.asc() ? i : n - 1 - i]));
+            return out;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public String describe(StudentQuery q) {
+        String order = column(q.sortField()) + (q.asc() ? " asc" : " desc");
+        String limit = q.limit() == Integer.MAX_VALUE ? "" : " -> limit " + q.limit();
+        if (!q.hasFilter()) return "columnar ordered scan of " + order + limit;
+        return "columnar scan of " + count() + " rows -> filter -> sort " + order + limit;
+    }
+
+    @Override
+    public long count() {
+        lock.readLock().lock();
+        try {
+            return live;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // One pass over two primitive columns; departments are counted by code and named at the end
+    @Override
+    public Map<String, GpaHistogram> gpaHistograms() {
+        lock.readLock().lock();
+        try {
+            GpaHistogram[] byCode = new GpaHistogram[deptDict.size()];
+            for (int r = 0; r < size; r++) {
+                if (dead[r]) continue;
+                GpaHistogram h = byCode[depts[r]];
+                if (h == null) h = byCode[depts[r]] = new GpaHistogram();
+                h.add(gpas[r], 1);
+            }
+            Map<String, GpaHistogram> out = new HashMap<>();
+            for (int c = 0; c < byCode.length; c++) if (byCode[c] != null) out.put(deptDict.get(c), byCode[c]);
+            return out;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ---- ordering ----
+
+    // Live rows in ascending (field, id) order; cached until the next write. Caller holds the read lock.
+    private int[] sortedRows(String col) {
+        Sorted s = sortedCache.get(col);
+        if (s != null && s.modCount == modCount) return s.rows;
+        int[] rows = new int[live];
+        int n = 0;
+        for (int r = 0; r < size; r++) if (!dead[r]) rows[n++] = r;
+        sortRows(rows, n, col);
+        sortedCache.put(col, new Sorted(modCount, rows));
+        return rows;
+    }
+
+    // rows[0..n) arrive in row (= id) order, so packing the row into the low bits breaks ties on id
+    private void sortRows(int[] rows, int n, String col) {
+        if (col.equals("id")) return; // already in id order
+        int[] rank = col.equals("department") ? deptRank() : null;
+        Arena.Ranks nameRank = col.equals("name") ? names.ranks() : null;
+        long[] keys = new long[n];
+        for (int i = 0; i < n; i++) {
+            int r = rows[i];
+            long k = rank != null ? rank[depts[r]] : nameRank != null ? nameRank.of(nameRef[r]) : gpas[r];
+            keys[i] = k << 32 | r;
+        }
+        Arrays.sort(keys);
+        for (int i = 0; i < n; i++) rows[i] = (int) keys[i];
+    }
+
+    private int[] deptRank() {
+        int[] rank = deptRank;
+        if (rank != null && rank.length == deptDict.size()) return rank;
+        Integer[] codes = new Integer[deptDict.size()];
+        for (int i = 0; i < codes.length; i++) codes[i] = i;
+        Arrays.sort(codes, Comparator.comparing(deptDict::get));
+        rank = new int[codes.length];
+        for (int i = 0; i < codes.length; i++) rank[codes[i]] = i;
+        return deptRank = rank;
+    }
+
+    // Index of the first row in order that sorts after (strict = true) or at/after the token's key
+    private int bound(int[] order, String col, PageToken t, boolean strict) {
+        byte[] name = col.equals("name") ? t.lastValue().getBytes(StandardCharsets.UTF_8) : null;
+        int gpa = col.equals("gpa") ? (int) Math.round(Double.parseDouble(t.lastValue()) * 100) : 0;
+        int lo = 0, hi = order.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1, r = order[mid];
+            int c = switch (col) {
+                case "name" -> names.compare(nameRef[r], name);
+                case "gpa" -> Integer.compare(gpas[r], gpa);
+                case "department" -> deptDict.get(depts[r]).compareTo(t.lastValue());
+                default -> 0;
+            };
+            if (c == 0) c = Integer.compare(ids[r], t.lastId());
+            if (c < 0 || (strict && c == 0)) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    private String sortValue(String col, int r) {
+        return switch (col) {
+            case "name" -> names.get(nameRef[r]);
+            case "gpa" -> BigDecimal.valueOf(gpas[r], 2).toPlainString();
+            case "department" -> deptDict.get(depts[r]);
+            default -> null;
+        };
+    }
+
+    private static String column(String field) {
+        return switch (field.toLowerCase(Locale.ROOT)) {
+            case "name" -> "name";
+            case "gpa" -> "gpa";
+            case "department" -> "department";
+            default -> "id";
+        };
+    }
+
+    /** Per-query filter over the columns; GPA bounds are converted to hundredths once. */
+    private final class Matcher {
+        final int dept;          // -1 = any, -2 = unknown department (matches nothing)
+        final int minGpa, maxGpa;
+        final String needle;     // lower-cased
+        final byte[] asciiNeedle; // null if the needle has non-ASCII characters
+
+        Matcher(StudentQuery q) {
+            Character code = q.department() == null ? null : deptCodes.get(q.department());
+            dept = q.department() == null ? -1 : code == null ? -2 : code;
+            minGpa = q.minGpa() == null ? Integer.MIN_VALUE : (int) Math.ceil(q.minGpa() * 100 - 1e-9);
+            maxGpa = q.maxGpa() == null ? Integer.MAX_VALUE : (int) Math.floor(q.maxGpa() * 100 + 1e-9);
+            needle = q.nameContains() == null ? null : q.nameContains().toLowerCase(Locale.ROOT);
+            byte[] b = needle == null ? null : needle.getBytes(StandardCharsets.UTF_8);
+            asciiNeedle = b != null && b.length == needle.length() ? b : null;
+        }
+
+        boolean matches(int r) {
+            if (dept != -1 && depts[r] != dept) return false;
+            if (gpas[r] < minGpa || gpas[r] > maxGpa) return false;
+            if (needle == null) return true;
+            if (asciiNeedle != null) {
+                int m = names.containsAsciiIgnoreCase(nameRef[r], asciiNeedle);
+                if (m >= 0) return m == 1;
+            }
+            return names.get(nameRef[r]).toLowerCase(Locale.ROOT).contains(needle);
+        }
+    }
+
+    /** Append-only UTF-8 string storage; each entry is a varint length followed by the bytes. */
+    private static final class Arena {
+        byte[] bytes = new byte[1024];
+        int used;
+        long garbage;             // bytes of entries no row refers to any more
+        int[] table;              // dedup index: offset + 1 by content hash, or empty when not interning
+        int entries;
+        private volatile Ranks ranks;
+
+        /** Byte-order rank of every interned entry, as an offset -> rank hash map; valid until the next add. */
+        record Ranks(int used, int[] slots, int[] rank) {
+            int of(int off) {
+                int mask = slots.length - 1;
+                int i = mix(off) & mask;
+                while (slots[i] != off + 1) i = (i + 1) & mask;
+                return rank[i];
+            }
+        }
+
+        Arena(boolean intern) { table = new int[intern ? 1024 : 0]; }
+
+        int add(String s) { return add(s.getBytes(StandardCharsets.UTF_8)); }
+
+        int add(byte[] b) {
+            if (table.length == 0) return append(b);
+            int h = hash(b, 0, b.length), mask = table.length - 1;
+            int i = h & mask;
+            for (; table[i] != 0; i = (i + 1) & mask) if (equals(table[i] - 1, b)) return table[i] - 1;
+            int off = append(b);
+            table[i] = off + 1;
+            if (++entries * 2 > table.length) rehash();
+            return off;
+        }
+
+        int copy(Arena from, int off) {
+            int start = from.start(off);
+            return add(Arrays.copyOfRange(from.bytes, start, start + from.length(off)));
+        }
+
+        private int append(byte[] b) {
+            int need = used + 5 + b.length;
+            if (need > bytes.length) bytes = Arrays.copyOf(bytes, Math.max(need, bytes.length + (bytes.length >> 1)));
+            int off = used, len = b.length;
+            while (len >= 0x80) { bytes[used++] = (byte) (len | 0x80); len >>>= 7; }
+            bytes[used++] = (byte) len;
+            System.arraycopy(b, 0, bytes, used, b.length);
+            used += b.length;
+            return off;
+        }
+
+        // Only called with the owner's lock held, so the arena does not change meanwhile
+        Ranks ranks() {
+            Ranks r = ranks;
+            if (r != null && r.used == used) return r;
+            Integer[] offs = new Integer[entries];
+            int n = 0;
+            for (int e : table) if (e != 0) offs[n++] = e - 1;
+            Arrays.sort(offs, this::compare);
+            int[] slots = new int[table.length], rank = new int[table.length];
+            int mask = slots.length - 1;
+            for (int k = 0; k < n; k++) {
+                int i = mix(offs[k]) & mask;
+                while (slots[i] != 0) i = (i + 1) & mask;
+                slots[i] = offs[k] + 1;
+                rank[i] = k;
+            }
+            return ranks = new Ranks(used, slots, rank);
+        }
+
+        void trim() { bytes = Arrays.copyOf(bytes, used + (used >> 3) + 64); }
+
+        private void rehash() {
+            int[] t = new int[table.length * 2];
+            int mask = t.length - 1;
+            for (int e : table) {
+                if (e == 0) continue;
+                int i = hash(bytes, start(e - 1), length(e - 1)) & mask;
+                while (t[i] != 0) i = (i + 1) & mask;
+                t[i] = e;
+            }
+            table = t;
+        }
+
+        int length(int off) {
+            int len = 0, shift = 0;
+            byte b;
+            do { b = bytes[off++]; len |= (b & 0x7f) << shift; shift += 7; } while (b < 0);
+            return len;
+        }
+
+        int start(int off) {
+            while (bytes[off] < 0) off++;
+            return off + 1;
+        }
+
+        int encodedLength(int off) { return start(off) - off + length(off); }
+
+        String get(int off) { return new String(bytes, start(off), length(off), StandardCharsets.UTF_8); }
+
+        boolean equals(int off, byte[] b) {
+            return length(off) == b.length && Arrays.equals(bytes, start(off), start(off) + b.length, b, 0, b.length);
+        }
+
+        boolean equalsString(int off, String s) { return equals(off, s.getBytes(StandardCharsets.UTF_8)); }
+
+        boolean equalsIgnoreCase(int off, byte[] b) {
+            if (length(off) != b.length) return false;
+            for (int i = 0, s = start(off); i < b.length; i++) if (lower(bytes[s + i]) != lower(b[i])) return false;
+            return true;
+        }
+
+        // Unsigned byte order, which for UTF-8 is code point order
+        int compare(int a, int b) {
+            return Arrays.compareUnsigned(bytes, start(a), start(a) + length(a), bytes, start(b), start(b) + length(b));
+        }
+
+        int compare(int off, byte[] b) {
+            return Arrays.compareUnsigned(bytes, start(off), start(off) + length(off), b, 0, b.length);
+        }
+
+        /** 1/0 if the entry (ASCII-lowercased) contains the needle; -1 if it has non-ASCII bytes. */
+        int containsAsciiIgnoreCase(int off, byte[] needle) {
+            int s = start(off), n = length(off);
+            for (int i = 0; i < n; i++) if (bytes[s + i] < 0) return -1;
+            outer:
+            for (int i = 0; i + needle.length <= n; i++) {
+                for (int j = 0; j < needle.length; j++) if (lower(bytes[s + i + j]) != needle[j]) continue outer;
+                return 1;
+            }
+            return 0;
+        }
+
+        int hashIgnoreCase(int off) { return hashIgnoreCase(bytes, start(off), length(off)); }
+
+        static int hashIgnoreCase(byte[] b, int from, int len) {
+            int h = 1;
+            for (int i = from; i < from + len; i++) h = 31 * h + lower(b[i]);
+            return mix(h);
+        }
+
+        static int hash(byte[] b, int from, int len) {
+            int h = 1;
+            for (int i = from; i < from + len; i++) h = 31 * h + b[i];
+            return mix(h);
+        }
+
+        private static int mix(int h) {
+            h *= 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+
+        private static byte lower(byte b) { return b >= 'A' && b <= 'Z' ? (byte) (b + 32) : b; }
+    }
+}
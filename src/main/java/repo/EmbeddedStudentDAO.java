@@ -0,0 +1,817 @@
+package repo;
+
+import exception.DataAccessException;
+import exception.DuplicateEmailException;
+import model.Student;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * File-based store that needs no database server. Every insert, update and delete appends a
+ * checksummed record to one memory-mapped log file ({@code students.db}); memory holds only an
+ * id-ordered array of record offsets and an open-addressing email table pointing into the map, so
+ * a lookup is a binary search plus a few reads from the page cache. Emails are unique (ASCII
+ * case-insensitive, like the MySQL collation) and a clash throws {@link DuplicateEmailException}.
+ * Once superseded records outweigh live ones the log is rewritten with only the live records
+ * (compaction). On open the log is replayed; a torn or corrupt tail from a crash is discarded.
+ * <p>
+ * With {@code srms.embedded.fsync=true} (default) a write returns only after its record is forced
+ * to disk. One process at a time: the file is not locked against other writers.
+ */
+public class EmbeddedStudentDAO implements StudentDAO, Closeable {
+    public static final Path DIR = Path.of(System.getProperty("srms.embedded.dir", "srms-data"));
+    public static final boolean FSYNC = Boolean.parseBoolean(System.getProperty("srms.embedded.fsync", "true"));
+    public static final long COMPACT_MIN_BYTES = Long.getLong("srms.embedded.compactMinBytes", 4L << 20);
+    private static final String FILE = "students.db";
+    private static final int MAGIC = 0x53524D53, FORMAT = 1; // "SRMS"
+    private static final int HEADER = 16;                    // magic, format, next id, reserved
+    private static final int INITIAL_CAPACITY = 1 << 20, MAX_CAPACITY = Integer.MAX_VALUE;
+    private static final byte UPSERT = 1, DELETE = 2;
+    private static final int CHUNK = 1024;
+    private static final long NO_TIMESTAMP = Long.MIN_VALUE;
+    // record = [int body length][int crc32 of body][body]; body = op, id, then for upserts the fields below
+    private static final int OP = 8, ID = 9, VERSION = 13, CREATED = 17, GPA = 25, STRINGS = 27, DELETE_BODY = 5;
+
+    private final Path dir, file;
+    private final boolean fsync;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private FileChannel channel;
+    private MappedByteBuffer map;
+    private int end;                  // first free byte of the log
+    private long liveBytes, deadBytes;
+    private int nextId = 1;
+
+    // ids ascending with the offset of each id's newest record; -1 = deleted, dropped on the next index compaction
+    private int size, live;
+    private int[] ids = new int[16], offsets = new int[16];
+    private int[] emailTable = new int[16]; // record offset + 1; slots of superseded records are skipped on lookup
+    private int emailEntries;
+    private long modCount;
+    private final Map<String, Sorted> sortedCache = new ConcurrentHashMap<>();
+
+    private record Sorted(long modCount, int[] rows) { }
+
+    public EmbeddedStudentDAO() throws IOException {
+        this(DIR, FSYNC);
+    }
+
+    public EmbeddedStudentDAO(Path dir, boolean fsync) throws IOException {
+        this.dir = dir;
+        this.file = dir.resolve(FILE);
+        this.fsync = fsync;
+        Files.createDirectories(dir);
+        Files.deleteIfExists(dir.resolve(FILE + ".compact")); // left over from an interrupted compaction
+        open();
+    }
+
+    private void open() throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        boolean fresh = channel.size() == 0;
+        map = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(channel.size(), INITIAL_CAPACITY));
+        if (fresh) {
+            map.putInt(0, MAGIC).putInt(4, FORMAT).putInt(8, nextId);
+            map.force();
+        } else if (map.getInt(0) != MAGIC || map.getInt(4) != FORMAT) {
+            channel.close();
+            throw new IOException("Not an SRMS data file (or an unsupported format version): " + file);
+        }
+        nextId = Math.max(nextId, map.getInt(8));
+        int pos = HEADER;
+        while (pos + 8 <= map.capacity()) {
+            int len = map.getInt(pos);
+            if (len < DELETE_BODY || len > map.capacity() - pos - 8 || crc(pos + 8, len) != map.getInt(pos + 4)) break;
+            replay(pos);
+            pos += 8 + len;
+        }
+        end = pos;
+        // without fsync pages reach the disk in any order, so stale bytes may follow a torn record: clear them
+        int i = end, cap = map.capacity();
+        for (; i < cap && (i & 7) != 0; i++) map.put(i, (byte) 0);
+        for (; i + 8 <= cap; i += 8) if (map.getLong(i) != 0) map.putLong(i, 0);
+        for (; i < cap; i++) map.put(i, (byte) 0);
+        if (fsync) map.force();
+    }
+
+    private void replay(int off) {
+        int id = map.getInt(off + ID);
+        nextId = Math.max(nextId, id + 1);
+        int row = Arrays.binarySearch(ids, 0, size, id), old = row >= 0 ? offsets[row] : -1;
+        if (old >= 0) { deadBytes += recordLength(old); liveBytes -= recordLength(old); }
+        if (map.get(off + OP) == DELETE) {
+            deadBytes += recordLength(off);
+            if (old >= 0) { offsets[row] = -1; live--; }
+            return;
+        }
+        liveBytes += recordLength(off);
+        if (row >= 0) {
+            if (old < 0) live++;
+            offsets[row] = off;
+        } else {
+            insertRow(-row - 1, id, off);
+        }
+        indexEmail(off);
+    }
+
+    /** Bytes of the log file in use, and how many of them belong to superseded or deleted records. */
+    public long fileBytes() { lock.readLock().lock(); try { return end; } finally { lock.readLock().unlock(); } }
+
+    public long garbageBytes() { lock.readLock().lock(); try { return deadBytes; } finally { lock.readLock().unlock(); } }
+
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (!channel.isOpen()) return;
+            map.force();
+            channel.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ---- writes ----
+
+    @Override
+    public Student save(Student s) {
+        lock.writeLock().lock();
+        try {
+            checkGpa(s);
+            if (emailOffset(s.getEmail()) >= 0) throw new DuplicateEmailException(s.getEmail());
+            int from = end;
+            insert(s);
+            sync(from);
+            return s;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // All or nothing: every email is checked, including against the rest of the batch, before anything is written
+    @Override
+    public int saveAll(List<Student> students) {
+        lock.writeLock().lock();
+        try {
+            Set<String> batch = new HashSet<>();
+            for (Student s : students) {
+                checkGpa(s);
+                if (emailOffset(s.getEmail()) >= 0 || !batch.add(s.getEmail().toLowerCase(Locale.ROOT))) {
+                    throw new DuplicateEmailException(s.getEmail());
+                }
+            }
+            int from = end;
+            for (Student s : students) insert(s);
+            sync(from);
+            return students.size();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void insert(Student s) {
+        Student stored = new Student(nextId, s.getName(), s.getEmail(), s.getDepartment(), s.getGpa(),
+                Instant.now().truncatedTo(ChronoUnit.SECONDS), 0);
+        int off = append(UPSERT, stored.getId(), stored);
+        nextId++;
+        insertRow(size, stored.getId(), off);
+        indexEmail(off);
+        liveBytes += recordLength(off);
+        s.setId(stored.getId());
+        s.setVersion(0);
+        modCount++;
+    }
+
+    @Override
+    public Student update(Student s) {
+        lock.writeLock().lock();
+        try {
+            checkGpa(s);
+            int row = row(s.getId());
+            if (row < 0) return s;
+            int from = end;
+            s.setVersion(overwrite(row, s, 1));
+            sync(from);
+            maybeCompact();
+            return s;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean updateIfVersion(Student s) {
+        lock.writeLock().lock();
+        try {
+            checkGpa(s);
+            int row = row(s.getId());
+            if (row < 0 || map.getInt(offsets[row] + VERSION) != s.getVersion()) return false;
+            int from = end;
+            s.setVersion(overwrite(row, s, 1));
+            sync(from);
+            maybeCompact();
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void deleteById(Integer id) {
+        lock.writeLock().lock();
+        try {
+            int row = row(id);
+            if (row < 0) return;
+            int from = end;
+            remove(row);
+            sync(from);
+            maybeCompact();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Same guarantees as one SQL transaction: emails are checked up front and the whole batch is forced once
+    @Override
+    public void writeBatch(List<PendingWrite> writes) {
+        lock.writeLock().lock();
+        try {
+            Map<String, Integer> claimed = new HashMap<>();
+            for (PendingWrite w : writes) {
+                if (w.isDelete() || row(w.id()) < 0) continue;
+                checkGpa(w.state());
+                String email = w.state().getEmail();
+                int owner = emailOffset(email);
+                Integer other = claimed.put(email.toLowerCase(Locale.ROOT), w.id());
+                if ((owner >= 0 && map.getInt(owner + ID) != w.id()) || (other != null && other != w.id())) {
+                    throw new DuplicateEmailException(email);
+                }
+            }
+            int from = end;
+            for (PendingWrite w : writes) {
+                int row = row(w.id());
+                if (row < 0) continue;
+                if (w.isDelete()) remove(row);
+                else overwrite(row, w.state(), w.versionBumps());
+            }
+            sync(from);
+            maybeCompact();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // The CHECK constraint of the MySQL schema (gpa DECIMAL(3,2) between 0 and 4); records hold it in a short
+    private static void checkGpa(Student s) {
+        long hundredths = Math.round(s.getGpa() * 100);
+        if (Double.isNaN(s.getGpa()) || hundredths < 0 || hundredths > 400) {
+            throw new DataAccessException("GPA out of range 0.00-4.00: " + s.getGpa(), null);
+        }
+    }
+
+    // Appends the new state of an existing row and returns its version
+    private int overwrite(int row, Student s, int bumps) {
+        int old = offsets[row];
+        int owner = emailOffset(s.getEmail());
+        if (owner >= 0 && owner != old) throw new DuplicateEmailException(s.getEmail());
+        Student stored = new Student(ids[row], s.getName(), s.getEmail(), s.getDepartment(), s.getGpa(),
+                createdAt(old), map.getInt(old + VERSION) + bumps);
+        int off = append(UPSERT, ids[row], stored);
+        offsets[row] = off;
+        indexEmail(off);
+        liveBytes += recordLength(off) - recordLength(old);
+        deadBytes += recordLength(old);
+        modCount++;
+        return stored.getVersion();
+    }
+
+    private void remove(int row) {
+        int old = offsets[row];
+        int off = append(DELETE, ids[row], null);
+        offsets[row] = -1;
+        live--;
+        liveBytes -= recordLength(old);
+        deadBytes += recordLength(old) + recordLength(off);
+        modCount++;
+    }
+
+    private int append(byte op, int id, Student s) {
+        byte[] body = encode(op, id, s);
+        ensureCapacity(end + 8 + body.length);
+        int off = end;
+        map.put(off + 8, body);
+        map.putInt(off + 4, crc(off + 8, body.length));
+        map.putInt(off, body.length);
+        end += 8 + body.length;
+        return off;
+    }
+
+    private void sync(int from) {
+        if (fsync && end > from) map.force(from, end - from);
+    }
+
+    private void ensureCapacity(long needed) {
+        if (needed <= map.capacity()) return;
+        if (needed > MAX_CAPACITY) throw new DataAccessException("Embedded store is full (" + file + ")", null);
+        try {
+            long cap = Math.min(MAX_CAPACITY, Math.max(needed, 2L * map.capacity()));
+            map = channel.map(FileChannel.MapMode.READ_WRITE, 0, cap); // grows the file
+        } catch (IOException e) {
+            throw new DataAccessException("Cannot grow " + file, e);
+        }
+    }
+
+    private static byte[] encode(byte op, int id, Student s) {
+        byte[] dept = s == null ? null : s.getDepartment().getBytes(StandardCharsets.UTF_8);
+        byte[] name = s == null ? null : s.getName().getBytes(StandardCharsets.UTF_8);
+        byte[] email = s == null ? null : s.getEmail().getBytes(StandardCharsets.UTF_8);
+        int len = s == null ? DELETE_BODY : STRINGS - 8 + 6 + dept.length + name.length + email.length;
+        ByteBuffer b = ByteBuffer.allocate(len).put(op).putInt(id);
+        if (s == null) return b.array();
+        b.putInt(s.getVersion())
+                .putLong(s.getCreatedAt() == null ? NO_TIMESTAMP : s.getCreatedAt().toEpochMilli())
+                .putShort((short) Math.round(s.getGpa() * 100));
+        for (byte[] str : new byte[][]{dept, name, email}) {
+            if (str.length > 0xFFFF) throw new IllegalArgumentException("Field too long for the embedded store");
+            b.putShort((short) str.length).put(str);
+        }
+        return b.array();
+    }
+
+    private int crc(int from, int len) {
+        CRC32 c = new CRC32();
+        c.update(map.slice(from, len));
+        return (int) c.getValue();
+    }
+
+    // ---- compaction ----
+
+    private void maybeCompact() {
+        if (size - live > Math.max(CHUNK, size / 4)) compactIndex();
+        if (deadBytes > COMPACT_MIN_BYTES && deadBytes > liveBytes) {
+            try {
+                compact();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Compaction of " + file + " failed", e);
+            }
+        }
+    }
+
+    /** Rewrites the log with only the newest record of every live row, then swaps it in atomically. */
+    public void compact() throws IOException {
+        lock.writeLock().lock();
+        try {
+            compactIndex();
+            Path tmp = dir.resolve(FILE + ".compact");
+            long cap = Math.max(INITIAL_CAPACITY, HEADER + liveBytes + (liveBytes >> 2));
+            int pos = HEADER;
+            try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE)) {
+                MappedByteBuffer m = out.map(FileChannel.MapMode.READ_WRITE, 0, Math.min(MAX_CAPACITY, cap));
+                m.putInt(0, MAGIC).putInt(4, FORMAT).putInt(8, nextId); // keeps ids of deleted rows from coming back
+                for (int r = 0; r < size; r++) {
+                    int off = offsets[r], len = recordLength(off);
+                    m.put(pos, map, off, len);
+                    offsets[r] = pos;
+                    pos += len;
+                }
+                m.force();
+            }
+            channel.close();
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            map = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            end = pos;
+            deadBytes = 0;
+            rebuildEmailTable();
+            modCount++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void compactIndex() {
+        int n = 0;
+        for (int r = 0; r < size; r++) {
+            if (offsets[r] < 0) continue;
+            ids[n] = ids[r];
+            offsets[n++] = offsets[r];
+        }
+        size = n;
+        modCount++;
+    }
+
+    private void insertRow(int pos, int id, int off) {
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, size + (size >> 1) + 16);
+            offsets = Arrays.copyOf(offsets, ids.length);
+        }
+        System.arraycopy(ids, pos, ids, pos + 1, size - pos);
+        System.arraycopy(offsets, pos, offsets, pos + 1, size - pos);
+        ids[pos] = id;
+        offsets[pos] = off;
+        size++;
+        live++;
+    }
+
+    // ---- email index (ASCII case-insensitive) ----
+
+    private void indexEmail(int off) {
+        if ((emailEntries + 1) * 2 > emailTable.length) { rebuildEmailTable(); return; }
+        int mask = emailTable.length - 1;
+        int i = hashIgnoreCase(off) & mask;
+        while (emailTable[i] != 0) i = (i + 1) & mask;
+        emailTable[i] = off + 1;
+        emailEntries++;
+    }
+
+    private void rebuildEmailTable() {
+        // load <= 1/4 after a rebuild, so the next one is at least live more inserts away (at 1/2)
+        emailTable = new int[Math.max(16, Integer.highestOneBit(Math.max(1, live) * 4 - 1) << 1)];
+        emailEntries = 0;
+        int mask = emailTable.length - 1;
+        for (int r = 0; r < size; r++) {
+            if (offsets[r] < 0) continue;
+            int i = hashIgnoreCase(offsets[r]) & mask;
+            while (emailTable[i] != 0) i = (i + 1) & mask;
+            emailTable[i] = offsets[r] + 1;
+            emailEntries++;
+        }
+    }
+
+    // Offset of the live record holding this email, or -1
+    private int emailOffset(String email) {
+        byte[] key = email.getBytes(StandardCharsets.UTF_8);
+        int h = 1;
+        for (byte b : key) h = 31 * h + lower(b);
+        int mask = emailTable.length - 1;
+        for (int i = mix(h) & mask; emailTable[i] != 0; i = (i + 1) & mask) {
+            int off = emailTable[i] - 1, row = Arrays.binarySearch(ids, 0, size, map.getInt(off + ID));
+            if (row < 0 || offsets[row] != off) continue; // superseded or deleted
+            int e = emailStart(off), len = map.getShort(e - 2) & 0xFFFF;
+            if (len != key.length) continue;
+            boolean same = true;
+            for (int k = 0; k < len && same; k++) same = lower(map.get(e + k)) == lower(key[k]);
+            if (same) return off;
+        }
+        return -1;
+    }
+
+    private int hashIgnoreCase(int off) {
+        int e = emailStart(off), len = map.getShort(e - 2) & 0xFFFF, h = 1;
+        for (int k = 0; k < len; k++) h = 31 * h + lower(map.get(e + k));
+        return mix(h);
+    }
+
+    private static int mix(int h) {
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static byte lower(byte b) { return b >= 'A' && b <= 'Z' ? (byte) (b + 32) : b; }
+
+    // ---- record access; callers hold the lock ----
+
+    private int recordLength(int off) { return 8 + map.getInt(off); }
+
+    private int deptStart(int off) { return off + STRINGS + 2; }
+
+    private int nameStart(int off) { return deptStart(off) + (map.getShort(off + STRINGS) & 0xFFFF) + 2; }
+
+    private int emailStart(int off) { int n = nameStart(off); return n + (map.getShort(n - 2) & 0xFFFF) + 2; }
+
+    private String string(int start) {
+        byte[] b = new byte[map.getShort(start - 2) & 0xFFFF];
+        map.get(start, b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    private Instant createdAt(int off) {
+        long millis = map.getLong(off + CREATED);
+        return millis == NO_TIMESTAMP ? null : Instant.ofEpochMilli(millis);
+    }
+
+    private Student student(int off) {
+        return new Student(map.getInt(off + ID), string(nameStart(off)), string(emailStart(off)), string(deptStart(off)),
+                map.getShort(off + GPA) / 100.0, createdAt(off), map.getInt(off + VERSION));
+    }
+
+    private int row(int id) {
+        int r = Arrays.binarySearch(ids, 0, size, id);
+        return r >= 0 && offsets[r] >= 0 ? r : -1;
+    }
+
+    // ---- reads ----
+
+    @Override
+    public Optional<Student> findById(Integer id) {
+        lock.readLock().lock();
+        try {
+            int r = row(id);
+            return r < 0 ? Optional.empty() : Optional.of(student(offsets[r]));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Student> findAllById(Collection<Integer> ids) {
+        List<Student> out = new ArrayList<>(ids.size());
+        lock.readLock().lock();
+        try {
+            for (Integer id : ids) {
+                int r = row(id);
+                if (r >= 0) out.add(student(offsets[r]));
+            }
+            return out;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Student> findAll() {
+        lock.readLock().lock();
+        try {
+            List<Student> out = new ArrayList<>(live);
+            for (int r = 0; r < size; r++) if (offsets[r] >= 0) out.add(student(offsets[r]));
+            return out;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Decodes CHUNK rows at a time and runs the action outside the lock, so it may write back
+    @Override
+    public void forEach(Consumer<Student> action) {
+        int after = Integer.MIN_VALUE;
+        while (true) {
+            List<Student> chunk = new ArrayList<>(CHUNK);
+            lock.readLock().lock();
+            try {
+                int r = Arrays.binarySearch(ids, 0, size, after);
+                for (r = r >= 0 ? r + 1 : -r - 1; r < size && chunk.size() < CHUNK; r++) {
+                    if (offsets[r] >= 0) chunk.add(student(offsets[r]));
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            if (chunk.isEmpty()) return;
+            chunk.forEach(action);
+            after = chunk.get(chunk.size() - 1).getId();
+        }
+    }
+
+    @Override
+    public boolean emailExists(String email) {
+        lock.readLock().lock();
+        try {
+            return emailOffset(email) >= 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Set<String> findAllEmails() {
+        lock.readLock().lock();
+        try {
+            Set<String> out = new HashSet<>(live * 2);
+            for (int r = 0; r < size; r++) if (offsets[r] >= 0) out.add(string(emailStart(offsets[r])));
+            return out;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Student> searchByName(String nameLike) { return query(StudentQuery.all().name(nameLike)); }
+
+    @Override
+    public List<Student> sortBy(String field, boolean asc) { return query(StudentQuery.all().orderBy(field, asc)); }
+
+    @Override
+    public Page<Student> page(String field, boolean asc, int limit, String token) {
+        if (limit < 1) throw new IllegalArgumentException("limit must be positive");
+        String col = column(field);
+        PageToken after = token == null ? null : PageToken.decode(token, col, asc);
+        lock.readLock().lock();
+        try {
+            int[] order = sortedRows(col);
+            int i = after == null ? (asc ? 0 : order.length - 1)
+                    : asc ? bound(order, col, after, true) : bound(order, col, after, false) - 1;
+            List<Student> items = new ArrayList<>(limit);
+            int last = -1;
+            for (; i >= 0 && i < order.length && items.size() < limit; i += asc ? 1 : -1) {
+                last = order[i];
+                items.add(student(offsets[last]));
+            }
+            boolean more = i >= 0 && i < order.length;
+            String next = more ? new PageToken(col, asc, sortValue(col, offsets[last]), ids[last]).encode() : null;
+            return new Page<>(items, next);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Stream<Student> stream(String field, boolean asc) {
+        int[] snapshot;
+        lock.readLock().lock();
+        try {
+            int[] order = sortedRows(column(field));
+            snapshot = new int[order.length];
+            for (int i = 0; i < order.length; i++) snapshot[i] = ids[order[asc ? i : order.length - 1 - i]];
+        } finally {
+            lock.readLock().unlock();
+        }
+        return IntStream.of(snapshot).mapToObj(this::findById).flatMap(Optional::stream);
+    }
+
+    @Override
+    public List<Student> query(StudentQuery q) {
+        String col = column(q.sortField());
+        lock.readLock().lock();
+        try {
+            int[] rows;
+            int n;
+            if (!q.hasFilter()) {
+                rows = sortedRows(col);
+                n = rows.length;
+            } else {
+                rows = new int[Math.min(live, 1024)];
+                n = 0;
+                Matcher m = new Matcher(q);
+                for (int r = 0; r < size; r++) {
+                    if (offsets[r] < 0 || !m.matches(offsets[r])) continue;
+                    if (n == rows.length) rows = Arrays.copyOf(rows, Math.max(16, n * 2));
+                    rows[n++] = r;
+                }
+                sortRows(rows, n, col);
+            }
+            int k = Math.min(n, q.limit());
+            List<Student> out = new ArrayList<>(k);
+            for (int i = 0; i < k; i++) out.add(student(offsets[rows[q.asc() ? i : n - 1 - i]]));
+            return out;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public String describe(StudentQuery q) {
+        String order = column(q.sortField()) + (q.asc() ? " asc" : " desc");
+        String limit = q.limit() == Integer.MAX_VALUE ? "" : " -> limit " + q.limit();
+        if (!q.hasFilter()) return "embedded ordered scan of " + order + limit;
+        return "embedded scan of " + count() + " records -> filter -> sort " + order + limit;
+    }
+
+    @Override
+    public long count() {
+        lock.readLock().lock();
+        try {
+            return live;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Reads only the gpa and department of each record
+    @Override
+    public Map<String, GpaHistogram> gpaHistograms() {
+        lock.readLock().lock();
+        try {
+            Map<String, GpaHistogram> out = new HashMap<>();
+            for (int r = 0; r < size; r++) {
+                int off = offsets[r];
+                if (off < 0) continue;
+                out.computeIfAbsent(string(deptStart(off)), d -> new GpaHistogram()).add(map.getShort(off + GPA), 1);
+            }
+            return out;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ---- ordering ----
+
+    // Live rows in ascending (field, id) order; cached until the next write. Caller holds the read lock.
+    private int[] sortedRows(String col) {
+        Sorted s = sortedCache.get(col);
+        if (s != null && s.modCount == modCount) return s.rows;
+        int[] rows = new int[live];
+        int n = 0;
+        for (int r = 0; r < size; r++) if (offsets[r] >= 0) rows[n++] = r;
+        sortRows(rows, n, col);
+        sortedCache.put(col, new Sorted(modCount, rows));
+        return rows;
+    }
+
+    // rows[0..n) arrive in id order; a stable sort on the field keeps id as the tie-breaker
+    private void sortRows(int[] rows, int n, String col) {
+        switch (col) {
+            case "id" -> { }
+            case "gpa" -> {
+                long[] keys = new long[n];
+                for (int i = 0; i < n; i++) keys[i] = (long) map.getShort(offsets[rows[i]] + GPA) << 32 | i;
+                Arrays.sort(keys);
+                int[] sorted = new int[n];
+                for (int i = 0; i < n; i++) sorted[i] = rows[(int) keys[i]];
+                System.arraycopy(sorted, 0, rows, 0, n);
+            }
+            default -> {
+                String[] keys = new String[n];
+                Integer[] order = new Integer[n];
+                for (int i = 0; i < n; i++) {
+                    int off = offsets[rows[i]];
+                    keys[i] = string(col.equals("name") ? nameStart(off) : deptStart(off));
+                    order[i] = i;
+                }
+                Arrays.sort(order, (a, b) -> keys[a].compareTo(keys[b]));
+                int[] sorted = new int[n];
+                for (int i = 0; i < n; i++) sorted[i] = rows[order[i]];
+                System.arraycopy(sorted, 0, rows, 0, n);
+            }
+        }
+    }
+
+    // Index of the first row in order that sorts after (strict = true) or at/after the token's key
+    private int bound(int[] order, String col, PageToken t, boolean strict) {
+        int gpa = col.equals("gpa") ? (int) Math.round(Double.parseDouble(t.lastValue()) * 100) : 0;
+        int lo = 0, hi = order.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1, r = order[mid], off = offsets[r];
+            int c = switch (col) {
+                case "name" -> string(nameStart(off)).compareTo(t.lastValue());
+                case "gpa" -> Integer.compare(map.getShort(off + GPA), gpa);
+                case "department" -> string(deptStart(off)).compareTo(t.lastValue());
+                default -> 0;
+            };
+            if (c == 0) c = Integer.compare(ids[r], t.lastId());
+            if (c < 0 || (strict && c == 0)) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    private String sortValue(String col, int off) {
+        return switch (col) {
+            case "name" -> string(nameStart(off));
+            case "gpa" -> BigDecimal.valueOf(map.getShort(off + GPA), 2).toPlainString();
+            case "department" -> string(deptStart(off));
+            default -> null;
+        };
+    }
+
+    private static String column(String field) {
+        return switch (field.toLowerCase(Locale.ROOT)) {
+            case "name" -> "name";
+            case "gpa" -> "gpa";
+            case "department" -> "department";
+            default -> "id";
+        };
+    }
+
+    /** Per-query filter over raw records: gpa and department are compared without decoding the row. */
+    private final class Matcher {
+        final byte[] dept;
+        final int minGpa, maxGpa;
+        final String needle; // lower-cased
+
+        Matcher(StudentQuery q) {
+            dept = q.department() == null ? null : q.department().getBytes(StandardCharsets.UTF_8);
+            minGpa = q.minGpa() == null ? Integer.MIN_VALUE : (int) Math.ceil(q.minGpa() * 100 - 1e-9);
+            maxGpa = q.maxGpa() == null ? Integer.MAX_VALUE : (int) Math.floor(q.maxGpa() * 100 + 1e-9);
+            needle = q.nameContains() == null ? null : q.nameContains().toLowerCase(Locale.ROOT);
+        }
+
+        boolean matches(int off) {
+            int gpa = map.getShort(off + GPA);
+            if (gpa < minGpa || gpa > maxGpa) return false;
+            if (dept != null) {
+                int d = deptStart(off);
+                if ((map.getShort(d - 2) & 0xFFFF) != dept.length) return false;
+                for (int i = 0; i < dept.length; i++) if (map.get(d + i) != dept[i]) return false;
+            }
+            return needle == null || string(nameStart(off)).toLowerCase(Locale.ROOT).contains(needle);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package repo;
+
+import java.util.Arrays;
+
+/**
+ * Exact GPA distribution: one counter per hundredth from 0.00 to 4.00 (gpa is DECIMAL(3,2)), so count,
+ * mean, min, max and any percentile come out exact in constant time regardless of the number of rows.
+ */
+public final class GpaHistogram {
+    public static final int SLOTS = 401;
+
+    private final long[] counts = new long[SLOTS];
+    private long total, sumHundredths;
+
+    public void add(double gpa) { add(slot(gpa), 1); }
+
+    public void remove(double gpa) { add(slot(gpa), -1); }
+
+    /** Adds n rows whose GPA is {@code hundredths} / 100. */
+    public void add(int hundredths, long n) {
+        counts[hundredths] += n;
+        total += n;
+        sumHundredths += hundredths * n;
+    }
+
+    public void addAll(GpaHistogram other) {
+        for (int i = 0; i < SLOTS; i++) counts[i] += other.counts[i];
+        total += other.total;
+        sumHundredths += other.sumHundredths;
+    }
+
+    public GpaHistogram copy() {
+        GpaHistogram h = new GpaHistogram();
+        h.addAll(this);
+        return h;
+    }
+
+    public long count() { return total; }
+
+    public double mean() { return total == 0 ? 0 : sumHundredths / 100.0 / total; }
+
+    public double min() {
+        for (int i = 0; i < SLOTS; i++) if (counts[i] > 0) return i / 100.0;
+        return 0;
+    }
+
+    public double max() {
+        for (int i = SLOTS - 1; i >= 0; i--) if (counts[i] > 0) return i / 100.0;
+        return 0;
+    }
+
+    /** Nearest-rank percentile, 0 < p <= 100. */
+    public double percentile(double p) {
+        if (total == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(p / 100.0 * total)), seen = 0;
+        for (int i = 0; i < SLOTS; i++) {
+            seen += counts[i];
+            if (seen >= rank) return i / 100.0;
+        }
+        return max();
+    }
+
+    /** Row counts per bucket of {@code width} (e.g. 0.5 gives [0,0.5), [0.5,1) ... [3.5,4.0]); 4.00 joins the last bucket. */
+    public long[] buckets(double width) {
+        int w = (int) Math.round(width * 100);
+        if (w < 1) throw new IllegalArgumentException("width must be at least 0.01");
+        long[] out = new long[(SLOTS - 2) / w + 1];
+        for (int i = 0; i < SLOTS; i++) out[Math.min(i / w, out.length - 1)] += counts[i];
+        return out;
+    }
+
+    static int slot(double gpa) {
+        int s = (int) Math.round(gpa * 100);
+        if (s < 0 || s >= SLOTS) throw new IllegalArgumentException("GPA out of range: " + gpa);
+        return s;
+    }
+
+    @Override public String toString() {
+        return "GpaHistogram{n=%d, mean=%.2f, buckets(0.5)=%s}".formatted(total, mean(), Arrays.toString(buckets(0.5)));
+    }
+}
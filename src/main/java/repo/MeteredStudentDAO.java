@@ -0,0 +1,176 @@
+package repo;
+
+import metrics.Counter;
+import metrics.Metrics;
+import metrics.Timer;
+import model.Student;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/** Times every call of the wrapped DAO into {@code srms_dao_seconds{method=...}}. */
+public class MeteredStudentDAO implements StudentDAO {
+    private static final Timer SAVE = timer("save"), SAVE_ALL = timer("saveAll"), UPDATE = timer("update"),
+            UPDATE_IF_VERSION = timer("updateIfVersion"), DELETE = timer("deleteById"), FIND_BY_ID = timer("findById"),
+            FIND_ALL = timer("findAll"), FOR_EACH = timer("forEach"), EMAIL_EXISTS = timer("emailExists"),
+            FIND_ALL_EMAILS = timer("findAllEmails"), SEARCH = timer("searchByName"), SORT = timer("sortBy"),
+            PAGE = timer("page"), STREAM = timer("stream"), QUERY = timer("query"), COUNT = timer("count"),
+            GPA_HISTOGRAMS = timer("gpaHistograms"), WRITE_BATCH = timer("writeBatch"),
+            CHANGES_SINCE = timer("changesSince"), FIND_ALL_BY_ID = timer("findAllById");
+    private static final Counter ROWS_WRITTEN = Metrics.counter("srms_dao_rows_written_total", "Rows inserted by saveAll");
+
+    private final StudentDAO dao;
+
+    public MeteredStudentDAO(StudentDAO dao) { this.dao = dao; }
+
+    private static Timer timer(String method) {
+        return Metrics.timer("srms_dao_seconds", "StudentDAO call latency", "method", method);
+    }
+
+    @Override
+    public Student save(Student s) {
+        long t = SAVE.start();
+        try { return dao.save(s); } finally { SAVE.stop(t); }
+    }
+
+    @Override
+    public int saveAll(List<Student> students) {
+        long t = SAVE_ALL.start();
+        try {
+            int n = dao.saveAll(students);
+            ROWS_WRITTEN.add(n);
+            return n;
+        } finally { SAVE_ALL.stop(t); }
+    }
+
+    @Override
+    public Student update(Student s) {
+        long t = UPDATE.start();
+        try { return dao.update(s); } finally { UPDATE.stop(t); }
+    }
+
+    @Override
+    public boolean updateIfVersion(Student s) {
+        long t = UPDATE_IF_VERSION.start();
+        try { return dao.updateIfVersion(s); } finally { UPDATE_IF_VERSION.stop(t); }
+    }
+
+    @Override
+    public void deleteById(Integer id) {
+        long t = DELETE.start();
+        try { dao.deleteById(id); } finally { DELETE.stop(t); }
+    }
+
+    @Override
+    public Optional<Student> findById(Integer id) {
+        long t = FIND_BY_ID.start();
+        try { return dao.findById(id); } finally { FIND_BY_ID.stop(t); }
+    }
+
+    @Override
+    public boolean batchesLookups() { return dao.batchesLookups(); }
+
+    @Override
+    public List<Student> findAllById(Collection<Integer> ids) {
+        long t = FIND_ALL_BY_ID.start();
+        try { return dao.findAllById(ids); } finally { FIND_ALL_BY_ID.stop(t); }
+    }
+
+    @Override
+    public List<Student> findAll() {
+        long t = FIND_ALL.start();
+        try { return dao.findAll(); } finally { FIND_ALL.stop(t); }
+    }
+
+    @Override
+    public void forEach(Consumer<Student> action) {
+        long t = FOR_EACH.start();
+        try { dao.forEach(action); } finally { FOR_EACH.stop(t); }
+    }
+
+    @Override
+    public boolean emailExists(String email) {
+        long t = EMAIL_EXISTS.start();
+        try { return dao.emailExists(email); } finally { EMAIL_EXISTS.stop(t); }
+    }
+
+    @Override
+    public Set<String> findAllEmails() {
+        long t = FIND_ALL_EMAILS.start();
+        try { return dao.findAllEmails(); } finally { FIND_ALL_EMAILS.stop(t); }
+    }
+
+    @Override
+    public List<Student> searchByName(String nameLike) {
+        long t = SEARCH.start();
+        try { return dao.searchByName(nameLike); } finally { SEARCH.stop(t); }
+    }
+
+    @Override
+    public List<Student> sortBy(String field, boolean asc) {
+        long t = SORT.start();
+        try { return dao.sortBy(field, asc); } finally { SORT.stop(t); }
+    }
+
+    @Override
+    public Page<Student> page(String field, boolean asc, int limit, String token) {
+        long t = PAGE.start();
+        try { return dao.page(field, asc, limit, token); } finally { PAGE.stop(t); }
+    }
+
+    // Measured from open until the stream is closed
+    @Override
+    public Stream<Student> stream(String field, boolean asc) {
+        long t = STREAM.start();
+        try {
+            return dao.stream(field, asc).onClose(() -> STREAM.stop(t));
+        } catch (RuntimeException e) {
+            STREAM.stop(t);
+            throw e;
+        }
+    }
+
+    @Override
+    public List<Student> query(StudentQuery q) {
+        long t = QUERY.start();
+        try { return dao.query(q); } finally { QUERY.stop(t); }
+    }
+
+    @Override
+    public String describe(StudentQuery q) { return dao.describe(q); }
+
+    @Override
+    public long count() {
+        long t = COUNT.start();
+        try { return dao.count(); } finally { COUNT.stop(t); }
+    }
+
+    @Override
+    public Map<String, GpaHistogram> gpaHistograms() {
+        long t = GPA_HISTOGRAMS.start();
+        try { return dao.gpaHistograms(); } finally { GPA_HISTOGRAMS.stop(t); }
+    }
+
+    @Override
+    public void writeBatch(List<PendingWrite> writes) {
+        long t = WRITE_BATCH.start();
+        try { dao.writeBatch(writes); } finally { WRITE_BATCH.stop(t); }
+    }
+
+    @Override
+    public boolean hasChangeLog() { return dao.hasChangeLog(); }
+
+    @Override
+    public List<StudentChange> changesSince(long afterSeq, int limit) {
+        long t = CHANGES_SINCE.start();
+        try { return dao.changesSince(afterSeq, limit); } finally { CHANGES_SINCE.stop(t); }
+    }
+
+    @Override
+    public long lastChangeSeq() { return dao.lastChangeSeq(); }
+}
@@ -0,0 +1,8 @@
+package repo;
+
+import java.util.List;
+
+/** One page of a keyset-paginated query; pass {@code nextToken} back to fetch the following page. */
+public record Page<T>(List<T> items, String nextToken) {
+    public boolean hasNext() { return nextToken != null; }
+}
@@ -0,0 +1,26 @@
+package repo;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/** Opaque continuation token: sort field, direction and the sort key of the last row returned. */
+record PageToken(String field, boolean asc, String lastValue, int lastId) {
+
+    String encode() {
+        String raw = field + '\n' + (asc ? '1' : '0') + '\n' + lastId + '\n' + (lastValue == null ? "" : lastValue);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static PageToken decode(String token, String field, boolean asc) {
+        PageToken t;
+        try {
+            String[] p = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split("\n", 4);
+            t = new PageToken(p[0], p[1].equals("1"), p[3], Integer.parseInt(p[2]));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Malformed page token", e);
+        }
+        if (!t.field.equals(field) || t.asc != asc)
+            throw new IllegalArgumentException("Page token was issued for a different ordering");
+        return t;
+    }
+}
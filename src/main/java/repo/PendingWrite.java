@@ -0,0 +1,12 @@
+package repo;
+
+import model.Student;
+
+/**
+ * One deferred write for {@link StudentDAO#writeBatch}: the row's new state, or a delete when state is
+ * null. {@code versionBumps} is how many updates were coalesced into it, so the stored version ends up
+ * where the same updates applied one by one would have left it.
+ */
+public record PendingWrite(int id, Student state, int versionBumps) {
+    public boolean isDelete() { return state == null; }
+}
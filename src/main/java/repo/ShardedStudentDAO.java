@@ -0,0 +1,551 @@
+package repo;
+
+import db.ConnectionPool;
+import db.DBConfig;
+import exception.DataAccessException;
+import exception.DuplicateEmailException;
+import model.Student;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Partitions students over N stores (shards) by id. A row's global id is {@code localId * N + shard}, where
+ * localId is the id its shard assigned (AUTO_INCREMENT, or the embedded store's counter), so ids are unique
+ * without any coordination and every id routes to its shard as {@code id % N}. New rows are dealt to the
+ * shards in turn; a shard only ever sees its local ids.
+ * <ul>
+ *   <li>lookups and writes by id touch one shard; multi-id lookups send one query to each shard involved</li>
+ *   <li>findAll, searchByName, sortBy, query, page and stream ask all shards in parallel and k-way merge their
+ *       sorted answers. A page token keeps one cursor per shard, so paging never skips or repeats a row</li>
+ *   <li>emails are unique across shards through an email -> id directory built by a scan when the router
+ *       starts (about 100 bytes per row); each shard's unique key still guards the shard itself</li>
+ * </ul>
+ * Writes that span shards (saveAll) commit once per shard; if one shard fails, the rows the others took
+ * are deleted again. The directory only sees this process's writes, so every writer must go through one
+ * router. There is no common change log, so the change feed is not available.
+ */
+public class ShardedStudentDAO implements StudentDAO, Closeable {
+    private static final Logger log = LoggerFactory.getLogger(ShardedStudentDAO.class);
+    public static final int SHARDS = Integer.getInteger("srms.shards.count", 2);
+    public static final boolean EMBEDDED = Boolean.getBoolean("srms.shards.embedded");
+    // JDBC shards sort names and departments with this so their order is the merge's (String.compareTo, binary);
+    // empty for databases whose default collation is binary already
+    public static final String COLLATION = System.getProperty("srms.shards.collation", "utf8mb4_bin");
+    private static final Integer CLAIMED = -1; // directory entry of an email whose insert is still running
+    private static final String EXHAUSTED = "-";  // page cursor of a shard with no rows left
+
+    private final List<StudentDAO> shards;
+    private final int n;
+    private final int[] all;
+    private final List<AutoCloseable> owned;
+    private final ExecutorService workers;
+    private final ConcurrentHashMap<String, Integer> directory = new ConcurrentHashMap<>();
+    private final AtomicInteger nextShard = new AtomicInteger();
+
+    private record Head(Student row, Iterator<Student> rest) { }
+
+    public ShardedStudentDAO(List<? extends StudentDAO> shards) { this(shards, List.of()); }
+
+    private ShardedStudentDAO(List<? extends StudentDAO> shards, List<AutoCloseable> owned) {
+        if (shards.isEmpty()) throw new IllegalArgumentException("At least one shard is needed");
+        this.shards = List.copyOf(shards);
+        this.n = shards.size();
+        this.all = new int[n];
+        for (int k = 0; k < n; k++) all[k] = k;
+        this.owned = owned;
+        AtomicInteger threads = new AtomicInteger();
+        this.workers = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "srms-shard-" + threads.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            scatter(all, k -> {
+                shards.get(k).forEach(s -> {
+                    Integer other = directory.put(key(s.getEmail()), global(k, s.getId()));
+                    if (other != null) log.warn("Email {} is stored twice (ids {} and {})", s.getEmail(), other, global(k, s.getId()));
+                });
+                return null;
+            });
+        } catch (RuntimeException e) {
+            workers.shutdownNow();
+            throw e;
+        }
+    }
+
+    /**
+     * Shards from the srms.shards.* properties: srms.shards.count embedded stores under
+     * srms.embedded.dir/shard-k when srms.shards.embedded is set, otherwise one database per shard at
+     * srms.shard.k.url (with srms.shard.k.user / .pass, defaulting to srms.db.user / .pass).
+     */
+    public static ShardedStudentDAO open() throws IOException {
+        if (SHARDS < 1) throw new IllegalArgumentException("srms.shards.count must be positive");
+        List<StudentDAO> shards = new ArrayList<>(SHARDS);
+        List<AutoCloseable> owned = new ArrayList<>();
+        try {
+            for (int k = 0; k < SHARDS; k++) {
+                if (EMBEDDED) {
+                    shards.add(new EmbeddedStudentDAO(EmbeddedStudentDAO.DIR.resolve("shard-" + k), EmbeddedStudentDAO.FSYNC));
+                    continue;
+                }
+                String url = System.getProperty("srms.shard." + k + ".url");
+                if (url == null) throw new IllegalArgumentException("srms.shard." + k + ".url is not set");
+                ConnectionPool pool = new ConnectionPool(url, System.getProperty("srms.shard." + k + ".user", DBConfig.USER),
+                        System.getProperty("srms.shard." + k + ".pass", DBConfig.PASS));
+                owned.add(pool);
+                shards.add(new StudentDAOImpl(pool, COLLATION));
+            }
+            return new ShardedStudentDAO(shards, owned);
+        } catch (IOException | RuntimeException e) {
+            for (StudentDAO s : shards) if (s instanceof Closeable c) owned.add(c);
+            closeAll(owned);
+            throw e;
+        }
+    }
+
+    /** The shards {@link #open()} would use, for messages: their directories or database URLs. */
+    public static String describeConfig() {
+        if (EMBEDDED) return SHARDS + " embedded shards in " + EmbeddedStudentDAO.DIR.resolve("shard-*");
+        StringJoiner urls = new StringJoiner(", ", SHARDS + " database shards (", ")");
+        for (int k = 0; k < SHARDS; k++) urls.add(System.getProperty("srms.shard." + k + ".url", "srms.shard." + k + ".url unset"));
+        return urls.toString();
+    }
+
+    public int shardCount() { return n; }
+
+    /** Shard that holds (or would hold) the given id. */
+    public int shardOf(int id) { return Math.floorMod(id, n); }
+
+    private int local(int id) { return id / n; }
+
+    private int global(int shard, int localId) {
+        long id = (long) localId * n + shard;
+        if (id > Integer.MAX_VALUE) throw new DataAccessException("Shard " + shard + " has run out of ids", null);
+        return (int) id;
+    }
+
+    private Student toGlobal(int shard, Student s) {
+        s.setId(global(shard, s.getId()));
+        return s;
+    }
+
+    private static String key(String email) { return email.toLowerCase(Locale.ROOT); }
+
+    // ---- writes ----
+
+    @Override
+    public Student save(Student s) {
+        String key = key(s.getEmail());
+        if (directory.putIfAbsent(key, CLAIMED) != null) throw new DuplicateEmailException(s.getEmail());
+        int k = Math.floorMod(nextShard.getAndIncrement(), n);
+        try {
+            shards.get(k).save(s);
+        } catch (RuntimeException e) {
+            s.setId(null);
+            directory.remove(key, CLAIMED);
+            throw e;
+        }
+        toGlobal(k, s);
+        directory.replace(key, CLAIMED, s.getId());
+        return s;
+    }
+
+    @Override
+    public int saveAll(List<Student> students) {
+        if (students.isEmpty()) return 0;
+        List<String> claimed = new ArrayList<>(students.size());
+        try {
+            for (Student s : students) {
+                String key = key(s.getEmail());
+                if (directory.putIfAbsent(key, CLAIMED) != null) throw new DuplicateEmailException(s.getEmail());
+                claimed.add(key);
+            }
+            // deal the rows out in turn; each shard inserts its part in one transaction
+            List<List<Student>> parts = new ArrayList<>(n);
+            for (int k = 0; k < n; k++) parts.add(new ArrayList<>(students.size() / n + 1));
+            int first = nextShard.getAndAdd(students.size());
+            for (int i = 0; i < students.size(); i++) parts.get(Math.floorMod(first + i, n)).add(students.get(i));
+            List<RuntimeException> failures = scatter(all, k -> {
+                try {
+                    if (!parts.get(k).isEmpty()) shards.get(k).saveAll(parts.get(k));
+                    return null;
+                } catch (RuntimeException e) {
+                    return e;
+                }
+            });
+            RuntimeException failure = failures.stream().filter(Objects::nonNull).findFirst().orElse(null);
+            if (failure != null) {
+                for (int k = 0; k < n; k++) {
+                    if (failures.get(k) != null) continue;
+                    for (Student s : parts.get(k)) {
+                        try {
+                            shards.get(k).deleteById(s.getId());
+                        } catch (RuntimeException e) {
+                            log.warn("Could not undo insert of {} on shard {}", s.getEmail(), k, e);
+                        }
+                    }
+                }
+                for (Student s : students) s.setId(null);
+                throw failure;
+            }
+            for (int k = 0; k < n; k++) {
+                for (Student s : parts.get(k)) directory.replace(key(toGlobal(k, s).getEmail()), CLAIMED, s.getId());
+            }
+            return students.size();
+        } catch (RuntimeException e) {
+            for (String key : claimed) directory.remove(key, CLAIMED);
+            throw e;
+        }
+    }
+
+    @Override
+    public Student update(Student s) {
+        write(s, shard -> { shard.update(s); return true; });
+        return s;
+    }
+
+    @Override
+    public boolean updateIfVersion(Student s) {
+        return write(s, shard -> shard.updateIfVersion(s));
+    }
+
+    // Runs one update on the row's shard with its local id; a new email is claimed first and the old one released after
+    private boolean write(Student s, Predicate<StudentDAO> op) {
+        int id = s.getId();
+        StudentDAO shard = shards.get(shardOf(id));
+        String key = key(s.getEmail());
+        Integer owner = directory.get(key);
+        boolean newEmail = owner == null || owner != id;
+        String old = null;
+        if (newEmail) {
+            if (directory.putIfAbsent(key, id) != null) throw new DuplicateEmailException(s.getEmail());
+            old = shard.findById(local(id)).map(o -> key(o.getEmail())).orElse(null);
+        }
+        boolean done;
+        s.setId(local(id));
+        try {
+            done = op.test(shard);
+        } catch (RuntimeException e) {
+            if (newEmail) directory.remove(key, id);
+            throw e;
+        } finally {
+            s.setId(id);
+        }
+        if (newEmail) {
+            if (!done || old == null) directory.remove(key, id); // version moved on, or no such row
+            else if (!old.equals(key)) directory.remove(old, id);
+        }
+        return done;
+    }
+
+    @Override
+    public void deleteById(Integer id) {
+        StudentDAO shard = shards.get(shardOf(id));
+        Optional<Student> old = shard.findById(local(id));
+        shard.deleteById(local(id));
+        old.ifPresent(o -> directory.remove(key(o.getEmail()), id));
+    }
+
+    // ---- reads by id ----
+
+    @Override
+    public Optional<Student> findById(Integer id) {
+        int k = shardOf(id);
+        return shards.get(k).findById(local(id)).map(s -> toGlobal(k, s));
+    }
+
+    @Override
+    public boolean batchesLookups() { return shards.get(0).batchesLookups(); } // shards are all of one kind
+
+    @Override
+    public List<Student> findAllById(Collection<Integer> ids) {
+        List<List<Integer>> byShard = new ArrayList<>(n);
+        for (int k = 0; k < n; k++) byShard.add(new ArrayList<>());
+        for (Integer id : ids) byShard.get(shardOf(id)).add(local(id));
+        int[] involved = Arrays.stream(all).filter(k -> !byShard.get(k).isEmpty()).toArray();
+        List<Student> out = new ArrayList<>(ids.size());
+        for (List<Student> part : scatter(involved, k -> globalRows(k, shards.get(k).findAllById(byShard.get(k))))) out.addAll(part);
+        return out;
+    }
+
+    @Override
+    public boolean emailExists(String email) { return directory.containsKey(key(email)); }
+
+    // ---- scatter-gather reads ----
+
+    @Override
+    public List<Student> findAll() {
+        return mergeAll(scatter(all, k -> byId(globalRows(k, shards.get(k).findAll()))), order("id", true), Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<Student> searchByName(String nameLike) {
+        return mergeAll(scatter(all, k -> byId(globalRows(k, shards.get(k).searchByName(nameLike)))), order("id", true), Integer.MAX_VALUE);
+    }
+
+    // asked as a query, which breaks ties by id: a plain sortBy leaves their order to the store
+    @Override
+    public List<Student> sortBy(String field, boolean asc) {
+        return query(StudentQuery.all().orderBy(column(field), asc));
+    }
+
+    // Every shard applies the filters, order and limit; the merge keeps the first limit rows overall
+    @Override
+    public List<Student> query(StudentQuery q) {
+        return mergeAll(scatter(all, k -> globalRows(k, shards.get(k).query(q))), order(column(q.sortField()), q.asc()), q.limit());
+    }
+
+    @Override
+    public String describe(StudentQuery q) {
+        return "merge of " + n + " shards by " + column(q.sortField()) + (q.asc() ? " asc" : " desc")
+                + ", each: " + shards.get(0).describe(q);
+    }
+
+    @Override
+    public Page<Student> page(String field, boolean asc, int limit, String token) {
+        if (limit < 1) throw new IllegalArgumentException("limit must be positive");
+        String col = column(field);
+        String[] cursors = token == null ? new String[n] : decode(token, col, asc);
+        int[] live = Arrays.stream(all).filter(k -> !EXHAUSTED.equals(cursors[k])).toArray();
+        List<Page<Student>> pages = scatter(live, k -> {
+            Page<Student> p = shards.get(k).page(col, asc, limit, cursors[k]);
+            return new Page<>(globalRows(k, p.items()), p.nextToken());
+        });
+        List<Iterator<Student>> sources = new ArrayList<>(live.length);
+        for (Page<Student> p : pages) sources.add(p.items().iterator());
+        Iterator<Student> merged = merge(sources, order(col, asc));
+        List<Student> items = new ArrayList<>(limit);
+        int[] taken = new int[n];
+        Student[] last = new Student[n];
+        while (items.size() < limit && merged.hasNext()) {
+            Student s = merged.next();
+            int k = shardOf(s.getId());
+            taken[k]++;
+            last[k] = s;
+            items.add(s);
+        }
+        // each shard resumes right after the last of its rows handed out, whatever order its store sorts in
+        String[] next = cursors.clone();
+        boolean more = false;
+        for (int i = 0; i < live.length; i++) {
+            int k = live[i];
+            Page<Student> p = pages.get(i);
+            if (last[k] != null) next[k] = new PageToken(col, asc, sortValue(col, last[k]), local(last[k].getId())).encode();
+            if (taken[k] < p.items().size() || p.hasNext()) more = true;
+            else next[k] = EXHAUSTED;
+        }
+        return new Page<>(items, more ? encode(col, asc, next) : null);
+    }
+
+    @Override
+    public Stream<Student> stream(String field, boolean asc) {
+        String col = column(field);
+        List<Stream<Student>> streams = new ArrayList<>(n);
+        try {
+            for (int k = 0; k < n; k++) {
+                int shard = k;
+                streams.add(shards.get(k).stream(col, asc).map(s -> toGlobal(shard, s)));
+            }
+        } catch (RuntimeException e) {
+            streams.forEach(Stream::close);
+            throw e;
+        }
+        List<Iterator<Student>> sources = new ArrayList<>(n);
+        for (Stream<Student> s : streams) sources.add(s.iterator());
+        Iterator<Student> merged = merge(sources, order(col, asc));
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(merged, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(() -> streams.forEach(Stream::close));
+    }
+
+    @Override
+    public void forEach(Consumer<Student> action) {
+        for (int k = 0; k < n; k++) {
+            int shard = k;
+            shards.get(k).forEach(s -> action.accept(toGlobal(shard, s)));
+        }
+    }
+
+    @Override
+    public Set<String> findAllEmails() {
+        Set<String> out = new HashSet<>(directory.size() * 2);
+        for (Set<String> part : scatter(all, k -> shards.get(k).findAllEmails())) out.addAll(part);
+        return out;
+    }
+
+    @Override
+    public long count() {
+        long total = 0;
+        for (Long c : scatter(all, k -> shards.get(k).count())) total += c;
+        return total;
+    }
+
+    @Override
+    public Map<String, GpaHistogram> gpaHistograms() {
+        Map<String, GpaHistogram> out = new HashMap<>();
+        for (Map<String, GpaHistogram> part : scatter(all, k -> shards.get(k).gpaHistograms())) {
+            part.forEach((dept, h) -> out.computeIfAbsent(dept, d -> new GpaHistogram()).addAll(h));
+        }
+        return out;
+    }
+
+    // ---- helpers ----
+
+    /** Runs {@code task} for each listed shard at once (the first on the calling thread); results in list order. */
+    private <T> List<T> scatter(int[] which, IntFunction<T> task) {
+        if (which.length == 0) return new ArrayList<>();
+        List<Future<T>> futures = new ArrayList<>(which.length - 1);
+        for (int i = 1; i < which.length; i++) {
+            int k = which[i];
+            futures.add(workers.submit(() -> task.apply(k)));
+        }
+        List<T> out = new ArrayList<>(which.length);
+        RuntimeException failure = null;
+        try {
+            out.add(task.apply(which[0]));
+        } catch (RuntimeException e) {
+            failure = e;
+        }
+        for (Future<T> f : futures) { // wait for every shard, even after a failure, so nothing runs on behind our back
+            try {
+                out.add(f.get());
+            } catch (ExecutionException e) {
+                if (failure == null) failure = e.getCause() instanceof RuntimeException r ? r
+                        : new DataAccessException("Shard call failed", e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                if (failure == null) failure = new DataAccessException("Interrupted while waiting for a shard", e);
+            }
+        }
+        if (failure != null) throw failure;
+        return out;
+    }
+
+    private List<Student> globalRows(int shard, List<Student> rows) {
+        for (Student s : rows) toGlobal(shard, s);
+        return rows;
+    }
+
+    private static List<Student> byId(List<Student> rows) {
+        rows.sort(Comparator.comparing(Student::getId)); // usually sorted already (primary key order)
+        return rows;
+    }
+
+    private static List<Student> mergeAll(List<List<Student>> parts, Comparator<Student> order, int limit) {
+        int total = 0;
+        List<Iterator<Student>> sources = new ArrayList<>(parts.size());
+        for (List<Student> p : parts) {
+            total += p.size();
+            sources.add(p.iterator());
+        }
+        List<Student> out = new ArrayList<>(Math.min(total, limit));
+        for (Iterator<Student> it = merge(sources, order); out.size() < limit && it.hasNext(); ) out.add(it.next());
+        return out;
+    }
+
+    /** Lazy k-way merge of sorted sources: a heap holds the head row of each. */
+    private static Iterator<Student> merge(List<Iterator<Student>> sources, Comparator<Student> order) {
+        PriorityQueue<Head> heads = new PriorityQueue<>(Math.max(1, sources.size()), (a, b) -> order.compare(a.row, b.row));
+        for (Iterator<Student> it : sources) if (it.hasNext()) heads.add(new Head(it.next(), it));
+        return new Iterator<>() {
+            @Override public boolean hasNext() { return !heads.isEmpty(); }
+
+            @Override public Student next() {
+                Head h = heads.poll();
+                if (h == null) throw new NoSuchElementException();
+                if (h.rest.hasNext()) heads.add(new Head(h.rest.next(), h.rest));
+                return h.row;
+            }
+        };
+    }
+
+    // Same order the shards sort in (strings binary, see COLLATION): the sort column, then id (global ids keep each shard's id order)
+    private static Comparator<Student> order(String col, boolean asc) {
+        Comparator<Student> c = switch (col) {
+            case "name" -> Comparator.comparing(Student::getName);
+            case "gpa" -> Comparator.comparingDouble(Student::getGpa);
+            case "department" -> Comparator.comparing(Student::getDepartment);
+            default -> (a, b) -> 0;
+        };
+        c = c.thenComparing(Student::getId);
+        return asc ? c : c.reversed();
+    }
+
+    private static String sortValue(String col, Student s) {
+        return switch (col) {
+            case "name" -> s.getName();
+            case "gpa" -> BigDecimal.valueOf(Math.round(s.getGpa() * 100), 2).toPlainString();
+            case "department" -> s.getDepartment();
+            default -> null;
+        };
+    }
+
+    private static String column(String field) {
+        return switch (field.toLowerCase(Locale.ROOT)) {
+            case "name" -> "name";
+            case "gpa" -> "gpa";
+            case "department" -> "department";
+            default -> "id";
+        };
+    }
+
+    // Token = ordering, shard count and one cursor per shard: "" (not started), "-" (done) or that shard's own token
+    private String encode(String col, boolean asc, String[] cursors) {
+        StringBuilder raw = new StringBuilder(col).append('\n').append(asc ? '1' : '0').append('\n').append(n);
+        for (String c : cursors) raw.append('\n').append(c == null ? "" : c);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String[] decode(String token, String col, boolean asc) {
+        String[] p;
+        try {
+            p = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split("\n", -1);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Malformed page token", e);
+        }
+        if (p.length != n + 3 || !p[2].equals(String.valueOf(n)))
+            throw new IllegalArgumentException("Page token was issued for a different shard layout");
+        if (!p[0].equals(col) || !p[1].equals(asc ? "1" : "0"))
+            throw new IllegalArgumentException("Page token was issued for a different ordering");
+        String[] cursors = new String[n];
+        for (int k = 0; k < n; k++) cursors[k] = p[k + 3].isEmpty() ? null : p[k + 3];
+        return cursors;
+    }
+
+    @Override
+    public void close() throws IOException {
+        workers.shutdownNow();
+        List<AutoCloseable> all = new ArrayList<>();
+        for (StudentDAO s : shards) if (s instanceof Closeable c) all.add(c);
+        all.addAll(owned);
+        closeAll(all);
+    }
+
+    private static void closeAll(List<AutoCloseable> resources) throws IOException {
+        IOException failure = null;
+        for (AutoCloseable r : resources) {
+            try {
+                r.close();
+            } catch (Exception e) {
+                if (failure == null) failure = e instanceof IOException io ? io : new IOException(e);
+            }
+        }
+        if (failure != null) throw failure;
+    }
+}
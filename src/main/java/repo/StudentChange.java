@@ -0,0 +1,13 @@
+package repo;
+
+import model.Student;
+
+/**
+ * One entry of the student change log: {@code seq} is its position in the log, {@code state} the row
+ * as it was when the log was read (null once the row no longer exists, even for CREATED/UPDATED).
+ */
+public record StudentChange(long seq, Type type, int id, Student state) {
+    public enum Type { CREATED, UPDATED, DELETED }
+
+    public boolean removed() { return state == null; }
+}
@@ -1,10 +1,82 @@
 package repo;
 
 import model.Student;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 public interface StudentDAO extends CrudRepository<Student, Integer> {
     boolean emailExists(String email);
     List<Student> searchByName(String nameLike);     // searching
     List<Student> sortBy(String field, boolean asc); // sorting (name, gpa, department)
+    boolean updateIfVersion(Student s);              // optimistic update; false if the row's version moved on
+    int saveAll(List<Student> students);             // batched insert, one transaction
+    Set<String> findAllEmails();
+    void forEach(Consumer<Student> action);          // streams every row without materializing the table
+
+    /** Rows with the given ids, in no particular order; ids without a row are skipped. One lookup per id by default. */
+    default List<Student> findAllById(Collection<Integer> ids) {
+        List<Student> out = new ArrayList<>(ids.size());
+        for (Integer id : ids) findById(id).ifPresent(out::add);
+        return out;
+    }
+
+    /**
+     * Whether a lookup costs a round trip to a server, so concurrent single-id lookups are worth collecting into
+     * one {@link #findAllById} call. In-process stores answer a lookup faster than a batch forms.
+     */
+    default boolean batchesLookups() { return false; }
+
+    /**
+     * Keyset (seek) pagination ordered by field (id, name, gpa, department) with id as tie-breaker.
+     * Pass null as token for the first page, then the previous page's nextToken.
+     */
+    Page<Student> page(String field, boolean asc, int limit, String token);
+
+    /** Filter/sort/limit evaluated by the store (e.g. as one SQL query); ordering ties break on id. */
+    List<Student> query(StudentQuery q);
+
+    /** Describes how {@link #query} would run it, e.g. the SQL text and bind values. */
+    String describe(StudentQuery q);
+
+    long count();
+
+    /**
+     * Applies updates and deletes to existing rows, atomically where the store supports it (one
+     * transaction in SQL stores). The default applies them one by one, bumping versions once per write.
+     */
+    default void writeBatch(List<PendingWrite> writes) {
+        for (PendingWrite w : writes) {
+            if (w.isDelete()) deleteById(w.id());
+            else update(new Student(w.state()));
+        }
+    }
+
+    /** Exact GPA distribution per department (one GROUP BY in SQL stores; a full scan by default). */
+    default Map<String, GpaHistogram> gpaHistograms() {
+        Map<String, GpaHistogram> out = new HashMap<>();
+        forEach(s -> out.computeIfAbsent(s.getDepartment(), d -> new GpaHistogram()).add(s.getGpa()));
+        return out;
+    }
+
+    /**
+     * Whether the store keeps a change log shared by every process writing to it, i.e. whether a
+     * {@code ChangeFeed} can follow it. In-process stores have a single writer and keep none.
+     */
+    default boolean hasChangeLog() { return false; }
+
+    /** Up to {@code limit} entries of the change log with seq greater than {@code afterSeq}, oldest first; none without a log. */
+    default List<StudentChange> changesSince(long afterSeq, int limit) { return List.of(); }
+
+    /** Seq of the newest change log entry (0 if empty or without a log), i.e. where a fresh follower starts. */
+    default long lastChangeSeq() { return 0; }
+
+    /** Lazily streams all rows in the given order; close the stream (try-with-resources) to release the connection. */
+    Stream<Student> stream(String field, boolean asc);
 }
\ No newline at end of file
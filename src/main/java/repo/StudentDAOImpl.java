@@ -1,17 +1,69 @@
 package repo;
 
 
+import db.ConnectionPool;
+import db.DBConfig;
 import db.DBConnection;
 import exception.DataAccessException;
+import exception.DuplicateEmailException;
 import model.Student;
 
+import java.math.BigDecimal;
 import java.sql.*;
 import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class StudentDAOImpl implements StudentDAO {
+    private static final String COLUMNS = "id,name,email,department,gpa,created_at,version";
+
+    private final ConnectionPool pool; // null: the application-wide pool (srms.db.*)
+    private final String collate;      // appended to name/department in ORDER BY and keyset comparisons
+
+    public StudentDAOImpl() { this(null); }
+
+    /** A DAO over another database. */
+    public StudentDAOImpl(ConnectionPool pool) { this(pool, null); }
+
+    /**
+     * A DAO over another database that sorts names and departments by {@code orderCollation} (e.g.
+     * utf8mb4_bin) instead of the column's own collation, as the shards of {@link ShardedStudentDAO} must.
+     */
+    public StudentDAOImpl(ConnectionPool pool, String orderCollation) {
+        this.pool = pool;
+        this.collate = orderCollation == null || orderCollation.isBlank() ? "" : " COLLATE " + orderCollation;
+    }
+
+    // the sort expression for a column() result
+    private String key(String col) {
+        return col.equals("name") || col.equals("department") ? col + collate : col;
+    }
+
+    // the primary; the change log is read here too, since a lagging replica would hold the feed back
+    private Connection connection() throws SQLException {
+        return pool == null ? DBConnection.getConnection() : pool.borrow();
+    }
+
+    private Connection writeConnection() throws SQLException {
+        return pool == null ? DBConnection.getWriteConnection() : pool.borrow();
+    }
+
+    // a replica when srms.db.replicas is set, unless this thread wrote just now
+    private Connection readConnection() throws SQLException {
+        return pool == null ? DBConnection.getReadConnection() : pool.borrow();
+    }
 
     private Student map(ResultSet rs) throws SQLException {
         return new Student(
@@ -20,14 +72,15 @@ public class StudentDAOImpl implements StudentDAO {
                 rs.getString("email"),
                 rs.getString("department"),
                 rs.getDouble("gpa"),
-                rs.getTimestamp("created_at").toInstant().atZone(ZoneId.systemDefault()).toInstant()
+                rs.getTimestamp("created_at").toInstant().atZone(ZoneId.systemDefault()).toInstant(),
+                rs.getInt("version")
         );
     }
 
     @Override
     public Student save(Student s) {
         final String sql = "INSERT INTO students(name,email,department,gpa) VALUES(?,?,?,?)";
-        try (Connection c = DBConnection.getConnection();
+        try (Connection c = writeConnection();
              PreparedStatement ps = c.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
             ps.setString(1, s.getName());
             ps.setString(2, s.getEmail());
@@ -39,31 +92,125 @@ public class StudentDAOImpl implements StudentDAO {
             }
             return s;
         } catch (SQLException e) {
-            throw new DataAccessException("Insert failed", e);
+            throw writeFailure("Insert failed", s, e);
+        }
+    }
+
+    @Override
+    public int saveAll(List<Student> students) {
+        if (students.isEmpty()) return 0;
+        final String sql = "INSERT INTO students(name,email,department,gpa) VALUES(?,?,?,?)";
+        try (Connection c = writeConnection()) {
+            c.setAutoCommit(false);
+            try (PreparedStatement ps = c.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                for (Student s : students) {
+                    ps.setString(1, s.getName());
+                    ps.setString(2, s.getEmail());
+                    ps.setString(3, s.getDepartment());
+                    ps.setDouble(4, s.getGpa());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    for (int i = 0; i < students.size() && keys.next(); i++) students.get(i).setId(keys.getInt(1));
+                }
+                c.commit();
+                return students.size();
+            } catch (SQLException e) {
+                c.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new DataAccessException("Batch insert failed", e);
         }
     }
 
     @Override
     public Student update(Student s) {
-        final String sql = "UPDATE students SET name=?, email=?, department=?, gpa=? WHERE id=?";
-        try (Connection c = DBConnection.getConnection();
+        final String sql = "UPDATE students SET name=?, email=?, department=?, gpa=?, version=version+1 WHERE id=?";
+        try (Connection c = writeConnection();
              PreparedStatement ps = c.prepareStatement(sql)) {
             ps.setString(1, s.getName());
             ps.setString(2, s.getEmail());
             ps.setString(3, s.getDepartment());
             ps.setDouble(4, s.getGpa());
             ps.setInt(5, s.getId());
-            ps.executeUpdate();
+            if (ps.executeUpdate() > 0) s.setVersion(s.getVersion() + 1);
             return s;
         } catch (SQLException e) {
-            throw new DataAccessException("Update failed", e);
+            throw writeFailure("Update failed", s, e);
+        }
+    }
+
+    @Override
+    public boolean updateIfVersion(Student s) {
+        final String sql = "UPDATE students SET name=?, email=?, department=?, gpa=?, version=version+1 WHERE id=? AND version=?";
+        try (Connection c = writeConnection();
+             PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setString(1, s.getName());
+            ps.setString(2, s.getEmail());
+            ps.setString(3, s.getDepartment());
+            ps.setDouble(4, s.getGpa());
+            ps.setInt(5, s.getId());
+            ps.setInt(6, s.getVersion());
+            if (ps.executeUpdate() == 0) return false;
+            s.setVersion(s.getVersion() + 1);
+            return true;
+        } catch (SQLException e) {
+            throw writeFailure("Update failed", s, e);
+        }
+    }
+
+    // uq_students_email is the only unique key an insert or update can hit (MySQL 1062, SQL standard 23505)
+    private static RuntimeException writeFailure(String message, Student s, SQLException e) {
+        if (e.getErrorCode() == 1062 || "23505".equals(e.getSQLState())) return new DuplicateEmailException(s.getEmail());
+        return new DataAccessException(message, e);
+    }
+
+    // One transaction: a batch of UPDATEs and a batch of DELETEs
+    @Override
+    public void writeBatch(List<PendingWrite> writes) {
+        if (writes.isEmpty()) return;
+        final String update = "UPDATE students SET name=?, email=?, department=?, gpa=?, version=version+? WHERE id=?";
+        final String delete = "DELETE FROM students WHERE id=?";
+        try (Connection c = writeConnection()) {
+            c.setAutoCommit(false);
+            try (PreparedStatement up = c.prepareStatement(update);
+                 PreparedStatement del = c.prepareStatement(delete)) {
+                int updates = 0, deletes = 0;
+                for (PendingWrite w : writes) {
+                    if (w.isDelete()) {
+                        del.setInt(1, w.id());
+                        del.addBatch();
+                        deletes++;
+                        continue;
+                    }
+                    Student s = w.state();
+                    up.setString(1, s.getName());
+                    up.setString(2, s.getEmail());
+                    up.setString(3, s.getDepartment());
+                    up.setDouble(4, s.getGpa());
+                    up.setInt(5, w.versionBumps());
+                    up.setInt(6, w.id());
+                    up.addBatch();
+                    updates++;
+                }
+                if (updates > 0) up.executeBatch();
+                if (deletes > 0) del.executeBatch();
+                c.commit();
+            } catch (SQLException e) {
+                c.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new DataAccessException("Batch write failed", e);
         }
     }
 
     @Override
     public void deleteById(Integer id) {
         final String sql = "DELETE FROM students WHERE id=?";
-        try (Connection c = DBConnection.getConnection();
+        try (Connection c = writeConnection();
              PreparedStatement ps = c.prepareStatement(sql)) {
             ps.setInt(1, id);
             ps.executeUpdate();
@@ -75,7 +222,7 @@ public class StudentDAOImpl implements StudentDAO {
     @Override
     public Optional<Student> findById(Integer id) {
         final String sql = "SELECT * FROM students WHERE id=?";
-        try (Connection c = DBConnection.getConnection();
+        try (Connection c = readConnection();
              PreparedStatement ps = c.prepareStatement(sql)) {
             ps.setInt(1, id);
             try (ResultSet rs = ps.executeQuery()) {
@@ -86,10 +233,36 @@ public class StudentDAOImpl implements StudentDAO {
         }
     }
 
+    @Override
+    public boolean batchesLookups() { return true; }
+
+    // One connection; ids are sent in IN lists of at most DBConfig.IN_LIST_MAX, so a roster is a handful of round trips
+    @Override
+    public List<Student> findAllById(Collection<Integer> ids) {
+        List<Student> out = new ArrayList<>(ids.size());
+        if (ids.isEmpty()) return out;
+        Integer[] all = ids.toArray(new Integer[0]);
+        try (Connection c = readConnection()) {
+            for (int from = 0; from < all.length; from += DBConfig.IN_LIST_MAX) {
+                int n = Math.min(DBConfig.IN_LIST_MAX, all.length - from);
+                String sql = "SELECT " + COLUMNS + " FROM students WHERE id IN (" + "?,".repeat(n - 1) + "?)";
+                try (PreparedStatement ps = c.prepareStatement(sql)) {
+                    for (int i = 0; i < n; i++) ps.setInt(i + 1, all[from + i]);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) out.add(map(rs));
+                    }
+                }
+            }
+            return out;
+        } catch (SQLException e) {
+            throw new DataAccessException("Find by ids failed", e);
+        }
+    }
+
     @Override
     public List<Student> findAll() {
         final String sql = "SELECT * FROM students";
-        try (Connection c = DBConnection.getConnection();
+        try (Connection c = readConnection();
              PreparedStatement ps = c.prepareStatement(sql);
              ResultSet rs = ps.executeQuery()) {
             List<Student> list = new ArrayList<>();
@@ -100,10 +273,24 @@ public class StudentDAOImpl implements StudentDAO {
         }
     }
 
+    @Override
+    public void forEach(Consumer<Student> action) {
+        final String sql = "SELECT " + COLUMNS + " FROM students";
+        try (Connection c = readConnection();
+             PreparedStatement ps = c.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            ps.setFetchSize(DBConfig.STREAM_FETCH_SIZE);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) action.accept(map(rs));
+            }
+        } catch (SQLException e) {
+            throw new DataAccessException("Streaming read failed", e);
+        }
+    }
+
     @Override
     public boolean emailExists(String email) {
         final String sql = "SELECT 1 FROM students WHERE email=? LIMIT 1";
-        try (Connection c = DBConnection.getConnection();
+        try (Connection c = readConnection();
              PreparedStatement ps = c.prepareStatement(sql)) {
             ps.setString(1, email);
             try (ResultSet rs = ps.executeQuery()) {
@@ -114,10 +301,24 @@ public class StudentDAOImpl implements StudentDAO {
         }
     }
 
+    @Override
+    public Set<String> findAllEmails() {
+        final String sql = "SELECT email FROM students";
+        try (Connection c = readConnection();
+             PreparedStatement ps = c.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            Set<String> emails = new HashSet<>();
+            while (rs.next()) emails.add(rs.getString(1));
+            return emails;
+        } catch (SQLException e) {
+            throw new DataAccessException("Email scan failed", e);
+        }
+    }
+
     @Override
     public List<Student> searchByName(String nameLike) {
         final String sql = "SELECT * FROM students WHERE name LIKE ?";
-        try (Connection c = DBConnection.getConnection();
+        try (Connection c = readConnection();
              PreparedStatement ps = c.prepareStatement(sql)) {
             ps.setString(1, "%" + nameLike + "%");
             try (ResultSet rs = ps.executeQuery()) {
@@ -132,14 +333,8 @@ public class StudentDAOImpl implements StudentDAO {
 
     @Override
     public List<Student> sortBy(String field, boolean asc) {
-        String col = switch (field.toLowerCase()) {
-            case "name" -> "name";
-            case "gpa" -> "gpa";
-            case "department" -> "department";
-            default -> "id";
-        };
-        final String sql = "SELECT * FROM students ORDER BY " + col + (asc ? " ASC" : " DESC");
-        try (Connection c = DBConnection.getConnection();
+        final String sql = "SELECT * FROM students ORDER BY " + key(column(field)) + (asc ? " ASC" : " DESC");
+        try (Connection c = readConnection();
              PreparedStatement ps = c.prepareStatement(sql);
              ResultSet rs = ps.executeQuery()) {
             List<Student> list = new ArrayList<>();
@@ -149,5 +344,223 @@ public class StudentDAOImpl implements StudentDAO {
             throw new DataAccessException("Sort failed", e);
         }
     }
-}
 
+    @Override
+    public Page<Student> page(String field, boolean asc, int limit, String token) {
+        if (limit < 1) throw new IllegalArgumentException("limit must be positive");
+        String col = column(field), key = key(col);
+        PageToken after = token == null ? null : PageToken.decode(token, col, asc);
+        String dir = asc ? " ASC" : " DESC", cmp = asc ? " > " : " < ";
+        StringBuilder sql = new StringBuilder("SELECT " + COLUMNS + " FROM students");
+        if (after != null) {
+            sql.append(col.equals("id") ? " WHERE id" + cmp + "?"
+                    : " WHERE (" + key + cmp + "? OR (" + key + " = ? AND id" + cmp + "?))");
+        }
+        sql.append(" ORDER BY ").append(key).append(dir);
+        if (!col.equals("id")) sql.append(", id").append(dir);
+        sql.append(" LIMIT ?");
+        try (Connection c = readConnection();
+             PreparedStatement ps = c.prepareStatement(sql.toString())) {
+            int i = 1;
+            if (after != null) {
+                if (!col.equals("id")) {
+                    setKey(ps, i++, col, after.lastValue());
+                    setKey(ps, i++, col, after.lastValue());
+                }
+                ps.setInt(i++, after.lastId());
+            }
+            ps.setInt(i, limit + 1); // one extra row tells us whether another page exists
+            try (ResultSet rs = ps.executeQuery()) {
+                List<Student> items = new ArrayList<>(limit);
+                String lastValue = null;
+                boolean more = false;
+                while (rs.next()) {
+                    if (items.size() == limit) { more = true; break; }
+                    items.add(map(rs));
+                    if (!col.equals("id")) lastValue = rs.getString(col);
+                }
+                String next = more ? new PageToken(col, asc, lastValue, items.get(items.size() - 1).getId()).encode() : null;
+                return new Page<>(items, next);
+            }
+        } catch (SQLException e) {
+            throw new DataAccessException("Page query failed", e);
+        }
+    }
+
+    @Override
+    public Stream<Student> stream(String field, boolean asc) {
+        String col = column(field), dir = asc ? " ASC" : " DESC";
+        final String sql = "SELECT " + COLUMNS + " FROM students ORDER BY " + key(col) + dir
+                + (col.equals("id") ? "" : ", id" + dir);
+        Connection c = null;
+        PreparedStatement ps = null;
+        ResultSet rs;
+        try {
+            c = readConnection();
+            ps = c.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(DBConfig.STREAM_FETCH_SIZE);
+            rs = ps.executeQuery();
+        } catch (SQLException e) {
+            closeQuietly(ps, c);
+            throw new DataAccessException("Streaming read failed", e);
+        }
+        final Connection conn = c;
+        final PreparedStatement stmt = ps;
+        Spliterator<Student> rows = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE,
+                Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super Student> action) {
+                try {
+                    if (!rs.next()) return false;
+                    action.accept(map(rs));
+                    return true;
+                } catch (SQLException e) {
+                    throw new DataAccessException("Streaming read failed", e);
+                }
+            }
+        };
+        return StreamSupport.stream(rows, false).onClose(() -> closeQuietly(rs, stmt, conn));
+    }
+
+    @Override
+    public List<Student> query(StudentQuery q) {
+        List<Object> params = new ArrayList<>();
+        final String sql = sql(q, params);
+        try (Connection c = readConnection();
+             PreparedStatement ps = c.prepareStatement(sql)) {
+            for (int i = 0; i < params.size(); i++) ps.setObject(i + 1, params.get(i));
+            try (ResultSet rs = ps.executeQuery()) {
+                List<Student> list = new ArrayList<>();
+                while (rs.next()) list.add(map(rs));
+                return list;
+            }
+        } catch (SQLException e) {
+            throw new DataAccessException("Query failed", e);
+        }
+    }
+
+    @Override
+    public String describe(StudentQuery q) {
+        List<Object> params = new ArrayList<>();
+        String sql = sql(q, params);
+        return sql + "  params=" + params;
+    }
+
+    // Equality on department and ranges on gpa can use (department, id) / (gpa, id) indexes; LIMIT stops early
+    private String sql(StudentQuery q, List<Object> params) {
+        StringBuilder sql = new StringBuilder("SELECT " + COLUMNS + " FROM students");
+        List<String> where = new ArrayList<>();
+        if (q.department() != null) { where.add("department = ?"); params.add(q.department()); }
+        if (q.minGpa() != null) { where.add("gpa >= ?"); params.add(BigDecimal.valueOf(q.minGpa())); }
+        if (q.maxGpa() != null) { where.add("gpa <= ?"); params.add(BigDecimal.valueOf(q.maxGpa())); }
+        // '%x%' can't use an index anyway, so LOWER() costs nothing and keeps matching case-insensitive on any collation
+        if (q.nameContains() != null) {
+            where.add("LOWER(name) LIKE ? ESCAPE '!'");
+            params.add("%" + escapeLike(q.nameContains().toLowerCase(Locale.ROOT)) + "%");
+        }
+        if (!where.isEmpty()) sql.append(" WHERE ").append(String.join(" AND ", where));
+        String col = column(q.sortField()), dir = q.asc() ? " ASC" : " DESC";
+        sql.append(" ORDER BY ").append(key(col)).append(dir);
+        if (!col.equals("id")) sql.append(", id").append(dir);
+        if (q.limit() != Integer.MAX_VALUE) { sql.append(" LIMIT ?"); params.add(q.limit()); }
+        return sql.toString();
+    }
+
+    private static String escapeLike(String s) {
+        return s.replace("!", "!!").replace("%", "!%").replace("_", "!_");
+    }
+
+    @Override
+    public long count() {
+        final String sql = "SELECT COUNT(*) FROM students";
+        try (Connection c = readConnection();
+             PreparedStatement ps = c.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0;
+        } catch (SQLException e) {
+            throw new DataAccessException("Count failed", e);
+        }
+    }
+
+    // At most 401 rows per department come back, whatever the table size
+    @Override
+    public Map<String, GpaHistogram> gpaHistograms() {
+        final String sql = "SELECT department, ROUND(gpa * 100) AS h, COUNT(*) AS n FROM students GROUP BY department, gpa";
+        try (Connection c = readConnection();
+             PreparedStatement ps = c.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            Map<String, GpaHistogram> out = new HashMap<>();
+            while (rs.next()) {
+                out.computeIfAbsent(rs.getString("department"), d -> new GpaHistogram())
+                        .add(rs.getInt("h"), rs.getLong("n"));
+            }
+            return out;
+        } catch (SQLException e) {
+            throw new DataAccessException("GPA aggregation failed", e);
+        }
+    }
+
+    // Filled by the student_changes triggers (see README); the join returns each row as it is now
+    @Override
+    public boolean hasChangeLog() { return true; }
+
+    @Override
+    public List<StudentChange> changesSince(long afterSeq, int limit) {
+        final String sql = "SELECT c.seq, c.op, c.student_id, s.id, s.name, s.email, s.department, s.gpa, s.created_at,"
+                + " s.version FROM student_changes c LEFT JOIN students s ON s.id = c.student_id"
+                + " WHERE c.seq > ? ORDER BY c.seq LIMIT ?";
+        try (Connection c = connection();
+             PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setLong(1, afterSeq);
+            ps.setInt(2, limit);
+            try (ResultSet rs = ps.executeQuery()) {
+                List<StudentChange> out = new ArrayList<>();
+                while (rs.next()) {
+                    StudentChange.Type type = switch (rs.getString("op")) {
+                        case "I" -> StudentChange.Type.CREATED;
+                        case "U" -> StudentChange.Type.UPDATED;
+                        default -> StudentChange.Type.DELETED;
+                    };
+                    Student state = rs.getObject("id") == null ? null : map(rs);
+                    out.add(new StudentChange(rs.getLong("seq"), type, rs.getInt("student_id"), state));
+                }
+                return out;
+            }
+        } catch (SQLException e) {
+            throw new DataAccessException("Change log read failed", e);
+        }
+    }
+
+    @Override
+    public long lastChangeSeq() {
+        final String sql = "SELECT COALESCE(MAX(seq), 0) FROM student_changes";
+        try (Connection c = connection();
+             PreparedStatement ps = c.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0;
+        } catch (SQLException e) {
+            throw new DataAccessException("Change log read failed", e);
+        }
+    }
+
+    private static String column(String field) {
+        return switch (field.toLowerCase()) {
+            case "name" -> "name";
+            case "gpa" -> "gpa";
+            case "department" -> "department";
+            default -> "id";
+        };
+    }
+
+    private static void setKey(PreparedStatement ps, int i, String col, String value) throws SQLException {
+        if (col.equals("gpa")) ps.setBigDecimal(i, new BigDecimal(value));
+        else ps.setString(i, value);
+    }
+
+    private static void closeQuietly(AutoCloseable... resources) {
+        for (AutoCloseable r : resources) {
+            if (r == null) continue;
+            try { r.close(); } catch (Exception ignored) { }
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package repo;
+
+/**
+ * Combined filter + ordering for student queries. Null filters are not applied; limit is the maximum
+ * number of rows (Integer.MAX_VALUE = no limit). Build with {@code StudentQuery.all().department("CSE")...}.
+ */
+public record StudentQuery(String nameContains, String department, Double minGpa, Double maxGpa,
+                           String sortField, boolean asc, int limit) {
+    public StudentQuery {
+        if (limit < 1) throw new IllegalArgumentException("limit must be positive");
+        sortField = sortField == null ? "id" : sortField.toLowerCase();
+    }
+
+    public static StudentQuery all() { return new StudentQuery(null, null, null, null, "id", true, Integer.MAX_VALUE); }
+
+    public StudentQuery name(String contains) { return new StudentQuery(contains, department, minGpa, maxGpa, sortField, asc, limit); }
+    public StudentQuery department(String d) { return new StudentQuery(nameContains, d, minGpa, maxGpa, sortField, asc, limit); }
+    public StudentQuery gpa(Double min, Double max) { return new StudentQuery(nameContains, department, min, max, sortField, asc, limit); }
+    public StudentQuery orderBy(String field, boolean ascending) { return new StudentQuery(nameContains, department, minGpa, maxGpa, field, ascending, limit); }
+    public StudentQuery limit(int n) { return new StudentQuery(nameContains, department, minGpa, maxGpa, sortField, asc, n); }
+
+    public boolean hasFilter() { return nameContains != null || department != null || minGpa != null || maxGpa != null; }
+}
@@ -0,0 +1,192 @@
+package repo;
+
+import model.Student;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only, segmented log of deferred student writes. Each record is
+ * {@code [int length][int crc32][long seq][int id][byte op][state]}; a torn or corrupt tail is
+ * dropped on replay. {@link #sync} is a group commit: whoever forces the file makes every record
+ * appended before the force durable, so concurrent writers share one fsync.
+ */
+final class WriteAheadLog implements Closeable {
+    private static final byte UPSERT = 1, DELETE = 2;
+
+    record Entry(long seq, int id, Student state) { } // state null = delete
+
+    private final Path dir;
+    private final long segmentBytes;
+    private final boolean fsync;
+    private final Object appendLock = new Object(), syncLock = new Object();
+    private final TreeMap<Long, Path> sealed = new TreeMap<>(); // last seq in segment -> file; guarded by appendLock
+    private FileChannel current;
+    private long currentSize, segmentStart, lastSeq;
+    private volatile long syncedSeq;
+
+    private WriteAheadLog(Path dir, long segmentBytes, boolean fsync) {
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        this.fsync = fsync;
+    }
+
+    /** Opens the log in {@code dir}, handing every intact record of earlier runs to {@code replay} in order. */
+    static WriteAheadLog open(Path dir, long segmentBytes, boolean fsync, Consumer<Entry> replay) throws IOException {
+        Files.createDirectories(dir);
+        WriteAheadLog log = new WriteAheadLog(dir, segmentBytes, fsync);
+        List<Path> segments;
+        try (Stream<Path> files = Files.list(dir)) {
+            segments = files.filter(p -> p.getFileName().toString().endsWith(".wal")).sorted().toList();
+        }
+        for (Path p : segments) {
+            long last = log.replay(p, replay);
+            if (last < 0) Files.delete(p);
+            else log.sealed.put(last, p);
+        }
+        log.syncedSeq = log.lastSeq;
+        log.startSegment();
+        return log;
+    }
+
+    private long replay(Path file, Consumer<Entry> sink) throws IOException {
+        long last = -1;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            while (true) {
+                int len, crc;
+                byte[] body;
+                try {
+                    len = in.readInt();
+                    crc = in.readInt();
+                    if (len < 13 || len > 1 << 20) break;
+                    body = in.readNBytes(len);
+                } catch (EOFException e) {
+                    break;
+                }
+                if (body.length < len || crc(body) != crc) break; // torn write at the tail
+                Entry e = decode(body);
+                sink.accept(e);
+                last = e.seq;
+                lastSeq = Math.max(lastSeq, e.seq);
+            }
+        }
+        return last;
+    }
+
+    /** Appends (not yet durable) and returns the record's sequence number; pass it to {@link #sync}. */
+    long append(int id, Student state) throws IOException {
+        synchronized (appendLock) {
+            long seq = lastSeq + 1;
+            byte[] body = encode(seq, id, state);
+            ByteBuffer buf = ByteBuffer.allocate(8 + body.length);
+            buf.putInt(body.length).putInt(crc(body)).put(body).flip();
+            while (buf.hasRemaining()) current.write(buf);
+            currentSize += 8 + body.length;
+            lastSeq = seq;
+            if (currentSize >= segmentBytes) rotate();
+            return seq;
+        }
+    }
+
+    /** Returns once record {@code seq} (and everything before it) is on disk. */
+    void sync(long seq) throws IOException {
+        if (!fsync || syncedSeq >= seq) return;
+        synchronized (syncLock) {
+            if (syncedSeq >= seq) return;
+            FileChannel ch;
+            long target;
+            synchronized (appendLock) { ch = current; target = lastSeq; }
+            try {
+                ch.force(false);
+            } catch (ClosedChannelException e) {
+                // rotated meanwhile: the segment was forced before it was closed
+            }
+            syncedSeq = target;
+        }
+    }
+
+    /**
+     * Deletes segments that only hold records older than {@code oldestNeeded}; when nothing at all is
+     * needed any more the open segment is sealed first so the whole log can go.
+     */
+    void release(long oldestNeeded) throws IOException {
+        List<Path> drop = new ArrayList<>();
+        synchronized (appendLock) {
+            if (oldestNeeded > lastSeq && currentSize > 0) rotate();
+            for (var it = sealed.headMap(oldestNeeded, false).entrySet().iterator(); it.hasNext(); ) {
+                drop.add(it.next().getValue());
+                it.remove();
+            }
+        }
+        for (Path p : drop) Files.deleteIfExists(p);
+    }
+
+    long lastSeq() {
+        synchronized (appendLock) { return lastSeq; }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (appendLock) {
+            if (fsync) current.force(false);
+            current.close();
+        }
+    }
+
+    private void rotate() throws IOException {
+        if (fsync) current.force(false);
+        current.close();
+        sealed.put(lastSeq, segmentPath(segmentStart));
+        startSegment();
+    }
+
+    private void startSegment() throws IOException {
+        segmentStart = lastSeq + 1;
+        current = FileChannel.open(segmentPath(segmentStart), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        currentSize = 0;
+    }
+
+    private Path segmentPath(long firstSeq) { return dir.resolve(String.format("%020d.wal", firstSeq)); }
+
+    private static byte[] encode(long seq, int id, Student s) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeLong(seq);
+        out.writeInt(id);
+        out.writeByte(s == null ? DELETE : UPSERT);
+        if (s != null) {
+            out.writeInt(s.getVersion());
+            out.writeDouble(s.getGpa());
+            out.writeUTF(s.getName());
+            out.writeUTF(s.getEmail());
+            out.writeUTF(s.getDepartment());
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Entry decode(byte[] body) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+        long seq = in.readLong();
+        int id = in.readInt();
+        if (in.readByte() == DELETE) return new Entry(seq, id, null);
+        int version = in.readInt();
+        double gpa = in.readDouble();
+        Student s = new Student(id, in.readUTF(), in.readUTF(), in.readUTF(), gpa, null, version);
+        return new Entry(seq, id, s);
+    }
+
+    private static int crc(byte[] b) {
+        CRC32 c = new CRC32();
+        c.update(b);
+        return (int) c.getValue();
+    }
+}
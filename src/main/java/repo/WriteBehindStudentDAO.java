@@ -0,0 +1,469 @@
+package repo;
+
+import db.DBConnection;
+import exception.DataAccessException;
+import metrics.Counter;
+import metrics.Metrics;
+import metrics.Timer;
+import model.Student;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Write-behind decorator: updates and deletes are acknowledged once they are fsync'ed to a local
+ * {@link WriteAheadLog} and are committed by a background flusher, which coalesces repeated writes
+ * to the same id and applies them in grouped transactions ({@link StudentDAO#writeBatch}). Inserts
+ * stay synchronous because the id comes from the database.
+ * <p>
+ * Lookups by id, findAll/forEach and email checks see acknowledged writes immediately; filtered
+ * queries, sorts and pages go to the delegate and see them once flushed. When the queue holds
+ * {@link #MAX_PENDING} ids, writers block (backpressure) and fail after {@link #OFFER_TIMEOUT_MS}.
+ * On start the log is replayed, so writes acknowledged before a crash are committed again.
+ */
+public class WriteBehindStudentDAO implements StudentDAO, Closeable {
+    private static final Logger log = LoggerFactory.getLogger(WriteBehindStudentDAO.class);
+    public static final Path DIR = Path.of(System.getProperty("srms.writeBehind.dir", "srms-wal"));
+    public static final boolean FSYNC = Boolean.parseBoolean(System.getProperty("srms.writeBehind.fsync", "true"));
+    public static final long FLUSH_INTERVAL_MS = Long.getLong("srms.writeBehind.flushIntervalMs", 50L);
+    public static final int BATCH_SIZE = Integer.getInteger("srms.writeBehind.batchSize", 500);
+    public static final int MAX_PENDING = Integer.getInteger("srms.writeBehind.maxPending", 10_000);
+    public static final long OFFER_TIMEOUT_MS = Long.getLong("srms.writeBehind.offerTimeoutMs", 5_000L);
+    private static final long SEGMENT_BYTES = 16 << 20;
+    private static final int MAX_ATTEMPTS = 5;
+    private static final Counter WRITES = Metrics.counter("srms_write_behind_writes_total", "Writes acknowledged from the log"),
+            COALESCED = Metrics.counter("srms_write_behind_coalesced_total", "Writes merged into an already queued one"),
+            COMMITTED = Metrics.counter("srms_write_behind_committed_total", "Queued writes committed to the store"),
+            DROPPED = Metrics.counter("srms_write_behind_dropped_total", "Queued writes given up after repeated failures");
+    private static final Timer FLUSH = Metrics.timer("srms_write_behind_flush_seconds", "Commit time per flushed batch");
+
+    private final StudentDAO dao;
+    private final WriteAheadLog wal;
+    private final long flushIntervalMs;
+    private final int batchSize, maxPending;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition(), hasWork = lock.newCondition(), drained = lock.newCondition();
+    private final LinkedHashMap<Integer, Op> pending = new LinkedHashMap<>(); // waiting for the flusher, oldest first
+    private final Map<Integer, Op> inFlight = new HashMap<>();                // being committed right now
+    private long commits;   // completed flushes, lets optimistic updates detect a flush during their read
+    private boolean closed, flushNow;
+    private final Thread flusher;
+
+    private static final class Op {
+        final Student state; // null = delete
+        final int bumps;
+        final long firstSeq;
+        final Set<DBConnection.Session> writers; // stamped once committed, so their reads then avoid stale replicas
+        int attempts;
+
+        Op(Student state, int bumps, long firstSeq, Set<DBConnection.Session> writers) {
+            this.state = state;
+            this.bumps = bumps;
+            this.firstSeq = firstSeq;
+            this.writers = writers;
+        }
+    }
+
+    public WriteBehindStudentDAO(StudentDAO dao) throws IOException {
+        this(dao, DIR, FSYNC, FLUSH_INTERVAL_MS, BATCH_SIZE, MAX_PENDING);
+    }
+
+    public WriteBehindStudentDAO(StudentDAO dao, Path dir, boolean fsync, long flushIntervalMs, int batchSize,
+                                 int maxPending) throws IOException {
+        this.dao = dao;
+        this.flushIntervalMs = flushIntervalMs;
+        this.batchSize = batchSize;
+        this.maxPending = maxPending;
+        this.wal = WriteAheadLog.open(dir, SEGMENT_BYTES, fsync, e -> queue(e.id(), e.state(), e.state() == null ? 0 : 1, e.seq()));
+        if (!pending.isEmpty()) log.info("Replaying {} logged writes from {}", pending.size(), dir);
+        Metrics.gauge("srms_write_behind_pending", "Ids with queued writes", this::pendingCount);
+        flusher = new Thread(this::flushLoop, "srms-write-behind");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    // ---- writes ----
+
+    // An update of a missing or deleted row changes nothing, as in SQL, instead of queueing a row that is not there
+    @Override
+    public Student update(Student s) {
+        enqueueIf(s, current -> true);
+        return s;
+    }
+
+    @Override
+    public boolean updateIfVersion(Student s) {
+        int expected = s.getVersion();
+        return enqueueIf(s, current -> current.getVersion() == expected);
+    }
+
+    /**
+     * Queues s with its version bumped if the row exists and passes {@code check}. The check runs against the
+     * newest queued state, else the store; a flush that lands between the store read and the enqueue is
+     * detected through the commit counter and the check is redone. The fsync runs after the lock is released.
+     */
+    private boolean enqueueIf(Student s, Predicate<Student> check) {
+        long seq = 0, seen = -1;
+        Optional<Student> stored = null;
+        while (seq == 0) {
+            lock.lock();
+            try {
+                Op op = queued(s.getId());
+                if (op != null) {
+                    if (op.state == null || !check.test(op.state)) return false;
+                    seq = appendBumped(s);
+                } else if (stored != null && commits == seen) {
+                    if (stored.isEmpty() || !check.test(stored.get())) return false;
+                    seq = appendBumped(s);
+                } else {
+                    seen = commits;
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (seq == 0) stored = dao.findById(s.getId());
+        }
+        sync(seq);
+        return true;
+    }
+
+    private long appendBumped(Student s) {
+        s.setVersion(s.getVersion() + 1);
+        try {
+            return append(s.getId(), s);
+        } catch (RuntimeException e) {
+            s.setVersion(s.getVersion() - 1);
+            throw e;
+        }
+    }
+
+    @Override
+    public void deleteById(Integer id) {
+        sync(append(id, null));
+    }
+
+    @Override
+    public void writeBatch(List<PendingWrite> writes) {
+        for (PendingWrite w : writes) {
+            if (w.isDelete()) deleteById(w.id());
+            else update(new Student(w.state()));
+        }
+    }
+
+    /** Logs and queues the write, waiting while the queue is full; returns its log sequence number. */
+    private long append(int id, Student state) {
+        lock.lock();
+        try {
+            if (closed) throw new IllegalStateException("Write-behind queue is closed");
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(OFFER_TIMEOUT_MS);
+            while (pending.size() >= maxPending && !pending.containsKey(id)) {
+                long left = deadline - System.nanoTime();
+                if (left <= 0) throw new DataAccessException("Write-behind queue full (" + maxPending + " ids)", null);
+                notFull.awaitNanos(left);
+            }
+            long seq = wal.append(id, state);
+            queue(id, state, state == null ? 0 : 1, seq);
+            hasWork.signal();
+            return seq;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DataAccessException("Interrupted while queueing a write", null);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Write-behind log append failed", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Waits for the group fsync covering seq; never called with the lock held, so other writers keep going
+    private void sync(long seq) {
+        try {
+            wal.sync(seq);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Write-behind log fsync failed", e);
+        }
+        WRITES.increment();
+    }
+
+    // Caller holds the lock (or is the constructor replaying the log)
+    private void queue(int id, Student state, int bumps, long seq) {
+        Op prev = pending.get(id);
+        if (prev != null) COALESCED.increment();
+        Student copy = state == null ? null : new Student(state);
+        Set<DBConnection.Session> writers = prev == null ? new HashSet<>(2) : prev.writers;
+        writers.add(DBConnection.session());
+        pending.put(id, new Op(copy, state == null ? 0 : bumps + (prev == null ? 0 : prev.bumps),
+                prev == null ? seq : prev.firstSeq, writers));
+    }
+
+    private Op queued(int id) {
+        Op op = pending.get(id);
+        return op != null ? op : inFlight.get(id);
+    }
+
+    private int pendingCount() {
+        lock.lock();
+        try {
+            return pending.size() + inFlight.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Blocks until every write acknowledged before the call is committed to the store. */
+    public void flush() throws InterruptedException {
+        lock.lock();
+        try {
+            flushNow = true;
+            hasWork.signal();
+            while (!pending.isEmpty() || !inFlight.isEmpty()) drained.await();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Commits what is queued and stops the flusher; writes that still fail stay in the log for the next start. */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            closed = true;
+            hasWork.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        wal.close();
+    }
+
+    private void flushLoop() {
+        while (true) {
+            List<PendingWrite> batch = new ArrayList<>();
+            lock.lock();
+            try {
+                while (pending.isEmpty() && !closed) hasWork.await();
+                if (pending.isEmpty()) return;
+                // give a burst the whole interval to coalesce; each write signals hasWork, so wait out the deadline
+                long left = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+                while (left > 0 && !closed && !flushNow && pending.size() < batchSize) left = hasWork.awaitNanos(left);
+                flushNow = false;
+                for (Iterator<Map.Entry<Integer, Op>> it = pending.entrySet().iterator(); it.hasNext() && batch.size() < batchSize; ) {
+                    Map.Entry<Integer, Op> e = it.next();
+                    it.remove();
+                    inFlight.put(e.getKey(), e.getValue());
+                    batch.add(new PendingWrite(e.getKey(), e.getValue().state, e.getValue().bumps));
+                }
+                notFull.signalAll();
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+            boolean failed = commit(batch);
+            lock.lock();
+            try {
+                if (pending.isEmpty() && inFlight.isEmpty()) drained.signalAll();
+                if (failed && closed) return; // leave the rest to the log replay
+            } finally {
+                lock.unlock();
+            }
+            releaseLog();
+            if (failed) sleepQuietly(Math.max(flushIntervalMs, 1000));
+        }
+    }
+
+    // Commits the batch; on failure retries row by row so one bad row cannot block the others
+    private boolean commit(List<PendingWrite> batch) {
+        long t = FLUSH.start();
+        try {
+            dao.writeBatch(batch);
+            done(batch);
+            return false;
+        } catch (RuntimeException batchError) {
+            boolean failed = false;
+            for (PendingWrite w : batch) {
+                try {
+                    dao.writeBatch(List.of(w));
+                    done(List.of(w));
+                } catch (RuntimeException e) {
+                    failed = true;
+                    retryLater(w, e);
+                }
+            }
+            return failed;
+        } finally {
+            FLUSH.stop(t);
+        }
+    }
+
+    private void done(List<PendingWrite> writes) {
+        lock.lock();
+        try {
+            for (PendingWrite w : writes) inFlight.remove(w.id()).writers.forEach(DBConnection.Session::wrote);
+            commits++; // under the same hold as the removal, so a version check never sees one without the other
+            COMMITTED.add(writes.size());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void retryLater(PendingWrite w, RuntimeException e) {
+        lock.lock();
+        try {
+            Op op = inFlight.remove(w.id());
+            commits++;
+            boolean transientError = e.getCause() instanceof SQLException sql
+                    && sql.getSQLState() != null && sql.getSQLState().startsWith("08");
+            if (++op.attempts >= MAX_ATTEMPTS && !transientError) {
+                DROPPED.increment();
+                log.error("Giving up on queued write for student {} after {} attempts: {}", w.id(), op.attempts, e.toString());
+                return;
+            }
+            Op newer = pending.get(w.id());
+            if (newer == null) {
+                pending.put(w.id(), op); // goes to the back of the queue
+            } else if (newer.state != null) {
+                newer.writers.addAll(op.writers);
+                Op merged = new Op(newer.state, newer.bumps + op.bumps, op.firstSeq, newer.writers);
+                merged.attempts = op.attempts;
+                pending.put(w.id(), merged);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void releaseLog() {
+        long oldest = Long.MAX_VALUE;
+        lock.lock();
+        try {
+            for (Op op : pending.values()) oldest = Math.min(oldest, op.firstSeq);
+            for (Op op : inFlight.values()) oldest = Math.min(oldest, op.firstSeq);
+        } finally {
+            lock.unlock();
+        }
+        try {
+            wal.release(oldest);
+        } catch (IOException e) {
+            log.warn("Could not delete committed log segments: {}", e.toString());
+        }
+    }
+
+    private static void sleepQuietly(long ms) {
+        try { Thread.sleep(ms); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+    }
+
+    // ---- reads: queued writes overlay the store where rows are addressed by id ----
+
+    private Map<Integer, Op> overlay() {
+        lock.lock();
+        try {
+            if (pending.isEmpty() && inFlight.isEmpty()) return Map.of();
+            Map<Integer, Op> out = new HashMap<>(inFlight);
+            out.putAll(pending);
+            return out;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Optional<Student> findById(Integer id) {
+        Op op;
+        lock.lock();
+        try {
+            op = queued(id);
+        } finally {
+            lock.unlock();
+        }
+        if (op == null) return dao.findById(id);
+        return op.state == null ? Optional.empty() : Optional.of(new Student(op.state));
+    }
+
+    @Override
+    public List<Student> findAllById(Collection<Integer> ids) {
+        List<Student> out = new ArrayList<>(ids.size());
+        List<Integer> stored = new ArrayList<>(ids.size());
+        lock.lock();
+        try {
+            for (Integer id : ids) {
+                Op op = queued(id);
+                if (op == null) stored.add(id);
+                else if (op.state != null) out.add(new Student(op.state));
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (!stored.isEmpty()) out.addAll(dao.findAllById(stored));
+        return out;
+    }
+
+    @Override
+    public List<Student> findAll() {
+        List<Student> out = new ArrayList<>();
+        forEach(out::add);
+        return out;
+    }
+
+    @Override
+    public void forEach(Consumer<Student> action) {
+        Map<Integer, Op> overlay = overlay();
+        if (overlay.isEmpty()) { dao.forEach(action); return; }
+        dao.forEach(s -> {
+            Op op = overlay.get(s.getId());
+            if (op == null) action.accept(s);
+            else if (op.state != null) action.accept(withCreatedAt(op.state, s));
+        });
+    }
+
+    private static Student withCreatedAt(Student queued, Student stored) {
+        return new Student(queued.getId(), queued.getName(), queued.getEmail(), queued.getDepartment(),
+                queued.getGpa(), stored.getCreatedAt(), queued.getVersion());
+    }
+
+    @Override
+    public boolean emailExists(String email) {
+        for (Op op : overlay().values()) {
+            if (op.state != null && op.state.getEmail().equalsIgnoreCase(email)) return true;
+        }
+        return dao.emailExists(email);
+    }
+
+    @Override
+    public Set<String> findAllEmails() {
+        Set<String> out = dao.findAllEmails();
+        for (Op op : overlay().values()) if (op.state != null) out.add(op.state.getEmail());
+        return out;
+    }
+
+    @Override public Student save(Student s) { return dao.save(s); }
+    @Override public int saveAll(List<Student> students) { return dao.saveAll(students); }
+    @Override public List<Student> searchByName(String nameLike) { return dao.searchByName(nameLike); }
+    @Override public List<Student> sortBy(String field, boolean asc) { return dao.sortBy(field, asc); }
+    @Override public Page<Student> page(String field, boolean asc, int limit, String token) { return dao.page(field, asc, limit, token); }
+    @Override public List<Student> query(StudentQuery q) { return dao.query(q); }
+    @Override public String describe(StudentQuery q) { return dao.describe(q); }
+    @Override public long count() { return dao.count(); }
+    @Override public Stream<Student> stream(String field, boolean asc) { return dao.stream(field, asc); }
+    @Override public Map<String, GpaHistogram> gpaHistograms() { return dao.gpaHistograms(); }
+    @Override public boolean batchesLookups() { return dao.batchesLookups(); }
+    @Override public boolean hasChangeLog() { return dao.hasChangeLog(); }
+    @Override public List<StudentChange> changesSince(long afterSeq, int limit) { return dao.changesSince(afterSeq, limit); }
+    @Override public long lastChangeSeq() { return dao.lastChangeSeq(); }
+}
@@ -0,0 +1,142 @@
+package service;
+
+import db.DBConnection;
+import metrics.Counter;
+import metrics.Metrics;
+import model.Student;
+import repo.StudentDAO;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Micro-batches concurrent single-id loads into {@link StudentDAO#findAllById} calls. Requests queue up;
+ * while fewer than {@code maxConcurrent} queries are running, a waiting caller takes up to
+ * {@code maxBatch} queued ids and runs one query for all of them. An idle caller therefore queries at
+ * once, alone, and callers that arrive while the store is busy share round trips. With a window above
+ * zero each query first waits that long for more ids to join. A query runs in a session that is pinned to the
+ * primary if any of its requesters' is ({@link DBConnection.Session}), so nobody reads around their own write.
+ */
+public class BatchLoader {
+    public static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("srms.batchLoader.enabled", "true"));
+    public static final int MAX_BATCH = Integer.getInteger("srms.batchLoader.maxBatch", 256);
+    public static final int MAX_CONCURRENT = Integer.getInteger("srms.batchLoader.maxConcurrent", 4);
+    public static final long WINDOW_MICROS = Long.getLong("srms.batchLoader.windowMicros", 0L);
+    private static final Counter BATCHES = Metrics.counter("srms_batch_loader_batches_total", "Queries issued by the batch loader"),
+            IDS = Metrics.counter("srms_batch_loader_ids_total", "Ids loaded by the batch loader");
+
+    private final StudentDAO dao;
+    private final int maxBatch, maxConcurrent;
+    private final long windowNanos;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition slotFree = lock.newCondition();
+    private final ArrayDeque<Request> queue = new ArrayDeque<>();
+    private int running;
+
+    private static final class Request {
+        final int id;
+        final DBConnection.Session session = DBConnection.session();
+        final CompletableFuture<Optional<Student>> result = new CompletableFuture<>();
+        boolean taken; // guarded by lock
+
+        Request(int id) { this.id = id; }
+    }
+
+    public BatchLoader(StudentDAO dao) { this(dao, MAX_BATCH, MAX_CONCURRENT, WINDOW_MICROS); }
+
+    public BatchLoader(StudentDAO dao, int maxBatch, int maxConcurrent, long windowMicros) {
+        if (maxBatch < 1 || maxConcurrent < 1) throw new IllegalArgumentException("maxBatch and maxConcurrent must be positive");
+        this.dao = dao;
+        this.maxBatch = maxBatch;
+        this.maxConcurrent = maxConcurrent;
+        this.windowNanos = TimeUnit.MICROSECONDS.toNanos(windowMicros);
+    }
+
+    /** Same contract as {@link StudentDAO#findById}; blocks until the query carrying this id is done. */
+    public Optional<Student> load(int id) {
+        Request mine = new Request(id);
+        lock.lock();
+        try {
+            queue.add(mine);
+        } finally {
+            lock.unlock();
+        }
+        while (true) {
+            lock.lock();
+            try {
+                while (!mine.taken && running >= maxConcurrent) slotFree.awaitUninterruptibly();
+                if (mine.taken) break;
+                running++;
+            } finally {
+                lock.unlock();
+            }
+            if (windowNanos > 0) LockSupport.parkNanos(windowNanos);
+            run(take());
+        }
+        try {
+            return mine.result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException r) throw r;
+            throw e;
+        }
+    }
+
+    private List<Request> take() {
+        lock.lock();
+        try {
+            List<Request> batch = new ArrayList<>(Math.min(maxBatch, queue.size()));
+            while (batch.size() < maxBatch && !queue.isEmpty()) {
+                Request r = queue.poll();
+                r.taken = true;
+                batch.add(r);
+            }
+            return batch;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void run(List<Request> batch) {
+        try {
+            if (batch.isEmpty()) return;
+            List<Integer> ids = new ArrayList<>(batch.size());
+            List<DBConnection.Session> sessions = new ArrayList<>(batch.size());
+            for (Request r : batch) {
+                ids.add(r.id);
+                sessions.add(r.session);
+            }
+            BATCHES.increment();
+            IDS.add(ids.size());
+            Map<Integer, Student> found = new HashMap<>();
+            DBConnection.Session caller = DBConnection.use(DBConnection.Session.latest(sessions));
+            try {
+                for (Student s : dao.findAllById(ids)) found.put(s.getId(), s);
+            } catch (RuntimeException e) {
+                for (Request r : batch) r.result.completeExceptionally(e);
+                return;
+            } finally {
+                DBConnection.use(caller);
+            }
+            // every caller gets its own copy, even when the same id was asked for twice
+            for (Request r : batch) r.result.complete(Optional.ofNullable(found.get(r.id)).map(Student::new));
+        } finally {
+            lock.lock();
+            try {
+                running--;
+                slotFree.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package service;
+
+import exception.DataAccessException;
+import exception.DuplicateEmailException;
+import model.Student;
+import repo.StudentDAO;
+import util.CSVUtil;
+import util.SnapshotReader;
+import util.SnapshotWriter;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Streaming CSV (or binary snapshot) bulk load. Rows are read in chunks, de-duplicated within the chunk and
+ * inserted with one batched transaction per chunk. Emails already in the table are skipped up front when the
+ * service's {@link EmailIndex} is given (and it learns the imported rows); otherwise the unique key rejects
+ * the batch and that chunk is retried row by row, counting the duplicates. Memory stays at one chunk whatever
+ * the file or table size; each inserted row is handed to the {@code inserted} listener, if any, so in-memory
+ * read models can follow the import.
+ */
+public class BulkImporter {
+    public static final int DEFAULT_BATCH_SIZE = Integer.getInteger("srms.import.batchSize", 1000);
+
+    private final StudentDAO dao;
+    private final int batchSize;
+    private final EmailIndex emails; // null: existing emails are found by the unique key
+    private final Consumer<Student> inserted;
+
+    public BulkImporter(StudentDAO dao) { this(dao, DEFAULT_BATCH_SIZE); }
+
+    public BulkImporter(StudentDAO dao, int batchSize) { this(dao, batchSize, null); }
+
+    public BulkImporter(StudentDAO dao, int batchSize, EmailIndex emails) { this(dao, batchSize, emails, s -> { }); }
+
+    public BulkImporter(StudentDAO dao, int batchSize, EmailIndex emails, Consumer<Student> inserted) {
+        if (batchSize < 1) throw new IllegalArgumentException("batchSize must be positive");
+        this.dao = dao;
+        this.batchSize = batchSize;
+        this.emails = emails;
+        this.inserted = inserted;
+    }
+
+    public ImportReport importCSV(File file) throws IOException {
+        return load(sink -> CSVUtil.importCSV(file, batchSize, sink));
+    }
+
+    /** Same as {@link #importCSV} for a file written by {@link SnapshotWriter}; ids in the file are ignored. */
+    public ImportReport importSnapshot(File file) throws IOException {
+        return load(sink -> {
+            List<Student> chunk = new ArrayList<>(batchSize);
+            SnapshotReader.read(file, block -> {
+                for (int from = 0; from < block.size(); from += batchSize) { // snapshot blocks are larger than a batch
+                    chunk.clear();
+                    for (Student s : block.subList(from, Math.min(block.size(), from + batchSize))) {
+                        s.setId(null);
+                        chunk.add(s);
+                    }
+                    sink.accept(chunk);
+                }
+            });
+            return 0;
+        });
+    }
+
+    private interface Source { long read(Consumer<List<Student>> sink) throws IOException; } // returns rejected rows
+
+    private ImportReport load(Source source) throws IOException {
+        long t0 = System.currentTimeMillis();
+        Set<String> seen = new HashSet<>(); // duplicates within a chunk; earlier chunks are in the table by now
+        long[] counts = new long[3]; // read, inserted, duplicates
+        long[] failed = {0};
+        List<Student> batch = new ArrayList<>(batchSize);
+        long rejected = source.read(chunk -> {
+            counts[0] += chunk.size();
+            batch.clear();
+            seen.clear();
+            for (Student s : chunk) {
+                boolean known = emails != null && known(s.getEmail());
+                if (!known && seen.add(s.getEmail().toLowerCase(Locale.ROOT))) batch.add(s);
+                else counts[2]++;
+            }
+            try {
+                counts[1] += dao.saveAll(batch);
+                for (Student s : batch) indexed(s);
+            } catch (DataAccessException | DuplicateEmailException e) {
+                // a row in this chunk was rejected (an email already in the table, or a concurrent insert of it):
+                // the batch was rolled back, so fall back to row-by-row inserts for this chunk only
+                for (Student s : batch) {
+                    try {
+                        dao.save(s);
+                        counts[1]++;
+                        indexed(s);
+                    } catch (DuplicateEmailException dup) {
+                        counts[2]++;
+                    } catch (DataAccessException rowFailure) {
+                        failed[0]++;
+                    }
+                }
+            }
+        });
+        return new ImportReport(counts[0] + rejected, counts[1], counts[2], rejected + failed[0],
+                System.currentTimeMillis() - t0);
+    }
+
+    // An index hit is confirmed with the store, as in StudentService: the owner may have changed its email on another node
+    private boolean known(String email) {
+        int owner = emails.owner(email);
+        if (owner < 0) return false;
+        if (dao.emailExists(email)) return true;
+        emails.remove(owner); // stale entry
+        return false;
+    }
+
+    private void indexed(Student s) {
+        if (s.getId() == null) return;
+        if (emails != null) emails.put(s.getId(), s.getEmail());
+        inserted.accept(s);
+    }
+}
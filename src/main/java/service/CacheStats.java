@@ -0,0 +1,19 @@
+package service;
+
+public record CacheStats(long hits, long misses, long evictions, long loads, long loadFailures,
+                         long totalLoadNanos, long size) {
+    public double hitRate() {
+        long requests = hits + misses;
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+
+    public double averageLoadMillis() {
+        long n = loads + loadFailures;
+        return n == 0 ? 0 : totalLoadNanos / 1e6 / n;
+    }
+
+    @Override public String toString() {
+        return "CacheStats{size=%d, hits=%d, misses=%d, hitRate=%.2f, evictions=%d, loads=%d, loadFailures=%d, avgLoadMs=%.2f}"
+                .formatted(size, hits, misses, hitRate(), evictions, loads, loadFailures, averageLoadMillis());
+    }
+}
@@ -0,0 +1,151 @@
+package service;
+
+import metrics.Counter;
+import metrics.Metrics;
+import metrics.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import repo.StudentChange;
+import repo.StudentDAO;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Follows the store's change log ({@link StudentDAO#changesSince}) from a watermark and hands every
+ * new entry to the subscribed listeners, so caches and read models on this node pick up writes made
+ * by other processes without reloading the table.
+ * <p>
+ * Log seqs are assigned when a write happens but become visible when it commits, so a missing seq may
+ * still show up. The watermark stops below the first missing seq; entries above it are delivered once
+ * and remembered. A seq still missing after {@link #GAP_TIMEOUT_MS} belonged to a rolled-back write
+ * and is skipped.
+ */
+public final class ChangeFeed implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(ChangeFeed.class);
+    public static final boolean ENABLED = Boolean.getBoolean("srms.changeFeed.enabled");
+    public static final long POLL_INTERVAL_MS = Long.getLong("srms.changeFeed.pollIntervalMs", 1_000L);
+    public static final int BATCH_SIZE = Integer.getInteger("srms.changeFeed.batchSize", 1_000);
+    public static final long GAP_TIMEOUT_MS = Long.getLong("srms.changeFeed.gapTimeoutMs", 10_000L);
+    private static final Counter EVENTS = Metrics.counter("srms_change_feed_events_total", "Change log entries delivered");
+    private static final Timer POLL = Metrics.timer("srms_change_feed_poll_seconds", "Change log poll latency");
+
+    private final StudentDAO dao;
+    private final int batchSize;
+    private final long gapTimeoutNanos;
+    private final List<Consumer<StudentChange>> listeners = new CopyOnWriteArrayList<>();
+    private long watermark;                                          // every seq up to here is delivered or skipped
+    private final NavigableSet<Long> deliveredAbove = new TreeSet<>(); // delivered seqs above the watermark
+    private long gapSince;                                           // when watermark + 1 was first seen missing, 0 = no gap
+    private ScheduledExecutorService poller;
+
+    /** Starts at the end of the log: only changes made from now on are delivered. */
+    public ChangeFeed(StudentDAO dao) {
+        this(dao, dao.lastChangeSeq(), BATCH_SIZE, GAP_TIMEOUT_MS);
+    }
+
+    public ChangeFeed(StudentDAO dao, long watermark, int batchSize, long gapTimeoutMs) {
+        if (!dao.hasChangeLog()) throw new IllegalArgumentException(dao.getClass().getSimpleName() + " has no change log");
+        this.dao = dao;
+        this.watermark = watermark;
+        this.batchSize = batchSize;
+        this.gapTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(gapTimeoutMs);
+    }
+
+    /** Listeners run on the polling thread, in log order; one that throws does not stop the others. */
+    public void subscribe(Consumer<StudentChange> listener) { listeners.add(listener); }
+
+    public void unsubscribe(Consumer<StudentChange> listener) { listeners.remove(listener); }
+
+    public synchronized long watermark() { return watermark; }
+
+    /** Reads everything after the watermark once and delivers what is new; returns the number delivered. */
+    public synchronized int poll() {
+        long t = POLL.start();
+        try {
+            int delivered = 0;
+            long from = watermark;
+            while (true) {
+                List<StudentChange> batch = dao.changesSince(from, batchSize);
+                for (StudentChange c : batch) {
+                    if (!deliveredAbove.add(c.seq())) continue;
+                    deliver(c);
+                    delivered++;
+                }
+                advance();
+                if (batch.size() < batchSize) return delivered;
+                from = batch.get(batch.size() - 1).seq();
+            }
+        } finally {
+            POLL.stop(t);
+        }
+    }
+
+    private void deliver(StudentChange c) {
+        EVENTS.increment();
+        for (Consumer<StudentChange> l : listeners) {
+            try {
+                l.accept(c);
+            } catch (RuntimeException e) {
+                log.warn("Change listener failed on seq {} (student {}): {}", c.seq(), c.id(), e.toString());
+            }
+        }
+    }
+
+    private void advance() {
+        while (!deliveredAbove.isEmpty()) {
+            if (deliveredAbove.first() == watermark + 1) {
+                deliveredAbove.pollFirst();
+                watermark++;
+                gapSince = 0;
+                continue;
+            }
+            long now = System.nanoTime();
+            if (gapSince == 0) gapSince = now;
+            if (now - gapSince < gapTimeoutNanos) return;
+            log.debug("Skipping change log seqs {}..{}, never committed", watermark + 1, deliveredAbove.first() - 1);
+            watermark = deliveredAbove.first() - 1;
+            gapSince = 0;
+        }
+    }
+
+    /** Polls every {@code intervalMs} on a daemon thread; errors are logged and the next poll retries. */
+    public synchronized void start(long intervalMs) {
+        if (poller != null) return;
+        poller = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "srms-change-feed");
+            t.setDaemon(true);
+            return t;
+        });
+        poller.scheduleWithFixedDelay(() -> {
+            try {
+                poll();
+            } catch (RuntimeException e) {
+                log.warn("Change feed poll failed: {}", e.toString());
+            }
+        }, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void close() {
+        ScheduledExecutorService p;
+        synchronized (this) {
+            p = poller;
+            poller = null;
+        }
+        if (p == null) return;
+        p.shutdown();
+        try {
+            p.awaitTermination(POLL_INTERVAL_MS + 5_000, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package service;
+
+import repo.GpaHistogram;
+
+public record DepartmentStats(String department, long count, double mean, double min, double max,
+                              double p50, double p90, double p99) {
+    public static DepartmentStats of(String department, GpaHistogram h) {
+        return new DepartmentStats(department, h.count(), h.mean(), h.min(), h.max(),
+                h.percentile(50), h.percentile(90), h.percentile(99));
+    }
+
+    @Override public String toString() {
+        return "%-16s n=%-7d avg=%.2f min=%.2f max=%.2f p50=%.2f p90=%.2f p99=%.2f"
+                .formatted(department, count, mean, min, max, p50, p90, p99);
+    }
+}
@@ -0,0 +1,230 @@
+package service;
+
+import metrics.Counter;
+import metrics.Metrics;
+import repo.StudentDAO;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * In-process index of the emails in the table so duplicate checks do not cost a database round trip.
+ * Emails are lower-cased and reduced to a 64-bit fingerprint:
+ * <ul>
+ *   <li>a Bloom filter over the fingerprints answers most "is this new?" questions with a few bit reads</li>
+ *   <li>an open-addressing table maps fingerprint -> owning id and settles the rest</li>
+ *   <li>sorted id -> fingerprint arrays let updates and deletes drop the old email by id</li>
+ * </ul>
+ * Fingerprint collisions are negligible (~n / 2^64 per lookup), but the index can still be stale for
+ * rows written by other processes, so callers treat a miss as final (the unique key catches the rest)
+ * and confirm a hit against the store. Writes made while {@link #reload} runs win over scanned rows.
+ */
+public class EmailIndex {
+    private static final int BLOOM_BITS_PER_KEY = 10, BLOOM_HASHES = 7; // ~1% false positives at capacity
+    private static final long EMPTY = 0, REMOVED = 1;
+    private static final Counter BLOOM_NEGATIVE = lookups("bloom_negative"), ABSENT = lookups("absent"), PRESENT = lookups("present");
+
+    private long[] bloom = new long[1 << 10];
+    private int bloomCapacity = bloom.length * 64 / BLOOM_BITS_PER_KEY, bloomRemoved;
+    private long[] fps = new long[1 << 10]; // open addressing on fingerprint; EMPTY or REMOVED mark free slots
+    private int[] owners = new int[1 << 10];
+    private int used, live;                 // used counts REMOVED slots too
+    private int[] ids = new int[256];       // ascending; fingerprint REMOVED = deleted entry
+    private long[] idFps = new long[256];
+    private int idCount, idDead;
+    private volatile boolean loaded;
+    private Set<Integer> touchedDuringLoad; // non-null only while loading
+
+    private static Counter lookups(String result) {
+        return Metrics.counter("srms_email_index_lookups_total", "Email index duplicate checks", "result", result);
+    }
+
+    public boolean isLoaded() { return loaded; }
+
+    public synchronized int size() { return live; }
+
+    /** Rebuilds the index from a full scan of the store. */
+    public void reload(StudentDAO dao) {
+        synchronized (this) {
+            loaded = false;
+            clear();
+            touchedDuringLoad = new HashSet<>();
+        }
+        try {
+            dao.forEach(s -> {
+                synchronized (this) {
+                    if (!touchedDuringLoad.contains(s.getId())) putInternal(s.getId(), s.getEmail());
+                }
+            });
+            loaded = true;
+        } finally {
+            synchronized (this) { touchedDuringLoad = null; }
+        }
+    }
+
+    /** Id of the student this index believes owns {@code email}, or -1 if it is certainly not indexed. */
+    public synchronized int owner(String email) {
+        long fp = fingerprint(email);
+        if (!mightContain(fp)) {
+            BLOOM_NEGATIVE.increment();
+            return -1;
+        }
+        int slot = find(fp);
+        (slot < 0 ? ABSENT : PRESENT).increment();
+        return slot < 0 ? -1 : owners[slot];
+    }
+
+    /** Records that student {@code id} now has {@code email}, replacing its previous one. */
+    public synchronized void put(int id, String email) {
+        if (touchedDuringLoad != null) touchedDuringLoad.add(id);
+        putInternal(id, email);
+    }
+
+    public synchronized void remove(int id) {
+        if (touchedDuringLoad != null) touchedDuringLoad.add(id);
+        int at = Arrays.binarySearch(ids, 0, idCount, id);
+        if (at < 0 || idFps[at] == REMOVED) return;
+        unlink(idFps[at], id);
+        idFps[at] = REMOVED;
+        if (++idDead > idCount / 2 && idDead > 1024) compactIds();
+    }
+
+    private void putInternal(int id, String email) {
+        long fp = fingerprint(email);
+        int at = Arrays.binarySearch(ids, 0, idCount, id);
+        if (at >= 0) {
+            if (idFps[at] == fp) return;
+            if (idFps[at] == REMOVED) idDead--;
+            else unlink(idFps[at], id);
+            idFps[at] = fp;
+        } else {
+            at = -at - 1;
+            if (idCount == ids.length) {
+                ids = Arrays.copyOf(ids, idCount * 2);
+                idFps = Arrays.copyOf(idFps, idCount * 2);
+            }
+            System.arraycopy(ids, at, ids, at + 1, idCount - at); // ids mostly arrive ascending: usually a no-op
+            System.arraycopy(idFps, at, idFps, at + 1, idCount - at);
+            ids[at] = id;
+            idFps[at] = fp;
+            idCount++;
+        }
+        link(fp, id);
+    }
+
+    private void link(long fp, int id) {
+        if ((used + 1) * 4L > fps.length * 3L) rehash(live + 1 > fps.length / 2 ? fps.length * 2 : fps.length);
+        int mask = fps.length - 1, i = (int) fp & mask, free = -1;
+        for (; fps[i] != EMPTY; i = (i + 1) & mask) {
+            if (fps[i] == fp) { owners[i] = id; return; } // two ids claiming one email: the later write wins
+            if (fps[i] == REMOVED && free < 0) free = i;
+        }
+        if (free < 0) { free = i; used++; }
+        fps[free] = fp;
+        owners[free] = id;
+        live++;
+        if (live > bloomCapacity) rebuildBloom(bloomCapacity * 2);
+        else addToBloom(fp);
+    }
+
+    // Only drops the slot while it still belongs to this id (another id may have taken the email over)
+    private void unlink(long fp, int id) {
+        int slot = find(fp);
+        if (slot < 0 || owners[slot] != id) return;
+        fps[slot] = REMOVED;
+        live--;
+        // a Bloom filter cannot forget: rebuild once deleted keys make up a good share of its bits
+        if (++bloomRemoved > bloomCapacity / 4) rebuildBloom(bloomCapacity);
+    }
+
+    private int find(long fp) {
+        int mask = fps.length - 1;
+        for (int i = (int) fp & mask; fps[i] != EMPTY; i = (i + 1) & mask) {
+            if (fps[i] == fp) return i;
+        }
+        return -1;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldFps = fps;
+        int[] oldOwners = owners;
+        fps = new long[capacity];
+        owners = new int[capacity];
+        int mask = capacity - 1;
+        for (int j = 0; j < oldFps.length; j++) {
+            if (oldFps[j] == EMPTY || oldFps[j] == REMOVED) continue;
+            int i = (int) oldFps[j] & mask;
+            while (fps[i] != EMPTY) i = (i + 1) & mask;
+            fps[i] = oldFps[j];
+            owners[i] = oldOwners[j];
+        }
+        used = live;
+    }
+
+    private void compactIds() {
+        int n = 0;
+        for (int i = 0; i < idCount; i++) {
+            if (idFps[i] == REMOVED) continue;
+            ids[n] = ids[i];
+            idFps[n++] = idFps[i];
+        }
+        idCount = n;
+        idDead = 0;
+    }
+
+    private void rebuildBloom(int capacity) {
+        long bits = Long.highestOneBit(Math.max(1L << 16, (long) capacity * BLOOM_BITS_PER_KEY - 1) << 1);
+        bloom = new long[(int) Math.min(bits >>> 6, 1 << 30)];
+        bloomCapacity = (int) Math.min(Integer.MAX_VALUE, (long) bloom.length * 64 / BLOOM_BITS_PER_KEY);
+        bloomRemoved = 0;
+        for (long fp : fps) if (fp != EMPTY && fp != REMOVED) addToBloom(fp);
+    }
+
+    // Kirsch-Mitzenmacher: the k probes are h1 + i * h2, both halves of the fingerprint
+    private void addToBloom(long fp) {
+        long mask = bloom.length * 64L - 1;
+        int h1 = (int) fp, h2 = (int) (fp >>> 32) | 1;
+        for (int i = 0; i < BLOOM_HASHES; i++) {
+            long bit = (h1 + (long) i * h2) & mask;
+            bloom[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    private boolean mightContain(long fp) {
+        long mask = bloom.length * 64L - 1;
+        int h1 = (int) fp, h2 = (int) (fp >>> 32) | 1;
+        for (int i = 0; i < BLOOM_HASHES; i++) {
+            long bit = (h1 + (long) i * h2) & mask;
+            if ((bloom[(int) (bit >>> 6)] & 1L << bit) == 0) return false;
+        }
+        return true;
+    }
+
+    private void clear() {
+        bloom = new long[1 << 10];
+        bloomCapacity = bloom.length * 64 / BLOOM_BITS_PER_KEY;
+        bloomRemoved = 0;
+        fps = new long[1 << 10];
+        owners = new int[1 << 10];
+        used = live = 0;
+        ids = new int[256];
+        idFps = new long[256];
+        idCount = idDead = 0;
+    }
+
+    // FNV-1a over the lower-cased chars, then a murmur finalizer; 0 and 1 are reserved slot markers
+    static long fingerprint(String email) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < email.length(); i++) {
+            h ^= Character.toLowerCase(email.charAt(i));
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h == EMPTY || h == REMOVED ? h + 2 : h;
+    }
+}
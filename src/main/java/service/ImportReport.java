@@ -0,0 +1,12 @@
+package service;
+
+public record ImportReport(long read, long inserted, long duplicates, long rejected, long elapsedMillis) {
+    public double rowsPerSecond() {
+        return elapsedMillis == 0 ? read : read * 1000.0 / elapsedMillis;
+    }
+
+    @Override public String toString() {
+        return "read=%d, inserted=%d, duplicates skipped=%d, rejected=%d in %.1fs (%.0f rows/s)"
+                .formatted(read, inserted, duplicates, rejected, elapsedMillis / 1000.0, rowsPerSecond());
+    }
+}
@@ -0,0 +1,100 @@
+package service;
+
+import model.Student;
+import util.LatencyHistogram;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Closed-loop load generator: each client repeatedly issues one request through the
+ * {@link RequestExecutor} and waits for it. Reads are mostly cached lookups by id with some name
+ * searches and first-page listings; writes nudge a random student's GPA.
+ */
+public class LoadGenerator {
+    private static final String[] SEARCH_TERMS = {"a", "an", "ma", "ra", "jia", "son"};
+
+    public record Profile(int clients, long durationMillis, int readPercent) {
+        public Profile {
+            if (clients < 1 || durationMillis < 1 || readPercent < 0 || readPercent > 100)
+                throw new IllegalArgumentException("Invalid load profile");
+        }
+    }
+
+    public record Report(String mode, int clients, long ops, long reads, long writes, long errors, long rejected,
+                         long elapsedMillis, long p50Micros, long p99Micros, long p999Micros, long maxMicros) {
+        public double throughput() { return elapsedMillis == 0 ? 0 : ops * 1000.0 / elapsedMillis; }
+
+        @Override public String toString() {
+            return ("%s threads, %d clients: %d ops in %.1fs = %.0f ops/s (reads=%d, writes=%d, errors=%d, rejected=%d)%n"
+                    + "latency p50=%dus p99=%dus p999=%dus max=%dus").formatted(mode, clients, ops,
+                    elapsedMillis / 1000.0, throughput(), reads, writes, errors, rejected,
+                    p50Micros, p99Micros, p999Micros, maxMicros);
+        }
+    }
+
+    private final StudentService service;
+    private final RequestExecutor executor;
+
+    public LoadGenerator(StudentService service, RequestExecutor executor) {
+        this.service = service;
+        this.executor = executor;
+    }
+
+    public Report run(Profile profile) throws InterruptedException {
+        List<Integer> ids = new ArrayList<>();
+        service.page("id", true, 1000, null).items().forEach(s -> ids.add(s.getId()));
+        if (ids.isEmpty()) throw new IllegalStateException("No students to run against");
+
+        int clients = Math.min(profile.clients(), executor.maxConcurrency());
+        LatencyHistogram latency = new LatencyHistogram();
+        LongAdder reads = new LongAdder(), writes = new LongAdder(), errors = new LongAdder(), rejected = new LongAdder();
+        CountDownLatch done = new CountDownLatch(clients);
+        long start = System.currentTimeMillis(), deadline = start + profile.durationMillis();
+        for (int c = 0; c < clients; c++) {
+            long seed = c;
+            executor.launch(() -> {
+                SplittableRandom rnd = new SplittableRandom(seed);
+                try {
+                    while (System.currentTimeMillis() < deadline) {
+                        boolean read = rnd.nextInt(100) < profile.readPercent();
+                        int id = ids.get(rnd.nextInt(ids.size()));
+                        long t0 = System.nanoTime();
+                        try {
+                            executor.admit(() -> read ? read(rnd, id) : write(rnd, id));
+                            (read ? reads : writes).increment();
+                        } catch (RejectedExecutionException e) {
+                            rejected.increment();
+                        } catch (Exception e) {
+                            errors.increment();
+                        }
+                        latency.record(System.nanoTime() - t0);
+                    }
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        long elapsed = System.currentTimeMillis() - start;
+        return new Report(executor.mode().name().toLowerCase(Locale.ROOT), clients, latency.count(), reads.sum(), writes.sum(),
+                errors.sum(), rejected.sum(), elapsed, latency.percentileNanos(50) / 1000,
+                latency.percentileNanos(99) / 1000, latency.percentileNanos(99.9) / 1000, latency.maxNanos() / 1000);
+    }
+
+    private Object read(SplittableRandom rnd, int id) {
+        int kind = rnd.nextInt(100);
+        if (kind < 80) return service.getById(id);
+        if (kind < 90) return service.searchByName(SEARCH_TERMS[rnd.nextInt(SEARCH_TERMS.length)]);
+        return service.page("gpa", false, 20, null);
+    }
+
+    private Student write(SplittableRandom rnd, int id) {
+        return service.adjustGpa(id, rnd.nextBoolean() ? 0.01 : -0.01);
+    }
+}
@@ -0,0 +1,16 @@
+package service;
+
+/** The strategy chosen for one StudentQuery, with the reason and the concrete access path (EXPLAIN output). */
+public record QueryPlan(Strategy strategy, String reason, String detail) {
+    public enum Strategy {
+        IN_MEMORY,   // answer from the warm in-memory index
+        WARM_INDEX,  // index is cold but the table is small: load it once, then answer from memory
+        DB_PUSHDOWN  // filter/sort/limit run as one SQL query
+    }
+
+    public String explain() {
+        return "PLAN " + strategy + "\n  reason: " + reason + "\n  access: " + detail;
+    }
+
+    @Override public String toString() { return explain(); }
+}
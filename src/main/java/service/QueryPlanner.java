@@ -0,0 +1,58 @@
+package service;
+
+import repo.StudentDAO;
+import repo.StudentQuery;
+
+/**
+ * Picks, per query, between the in-memory index and pushing the query down to the store. A warm index
+ * always wins; a cold one is only worth loading when the table is small, otherwise the query is sent
+ * to the database with its filters, ORDER BY and LIMIT so only matching rows cross the wire.
+ */
+public class QueryPlanner {
+    public static final long WARM_MAX_ROWS = Long.getLong("srms.query.warmIndexMaxRows", 200_000L);
+    private static final long COUNT_TTL_MS = 60_000;
+
+    private final StudentDAO dao;
+    private final StudentIndex index; // null when disabled
+    private final long warmMaxRows;
+    private volatile long cachedCount = -1, countedAt;
+
+    public QueryPlanner(StudentDAO dao, StudentIndex index) { this(dao, index, WARM_MAX_ROWS); }
+
+    public QueryPlanner(StudentDAO dao, StudentIndex index, long warmMaxRows) {
+        this.dao = dao;
+        this.index = index;
+        this.warmMaxRows = warmMaxRows;
+    }
+
+    /** The strategy alone, for running a query; unlike {@link #plan} it builds no description strings. */
+    public QueryPlan.Strategy strategy(StudentQuery q) {
+        if (index == null) return QueryPlan.Strategy.DB_PUSHDOWN;
+        if (index.isLoaded()) return QueryPlan.Strategy.IN_MEMORY;
+        return estimatedRows() <= warmMaxRows ? QueryPlan.Strategy.WARM_INDEX : QueryPlan.Strategy.DB_PUSHDOWN;
+    }
+
+    /** The strategy with its reason and access path, for EXPLAIN output. */
+    public QueryPlan plan(StudentQuery q) {
+        QueryPlan.Strategy s = strategy(q);
+        return switch (s) {
+            case IN_MEMORY -> new QueryPlan(s, "index warm (" + index.size() + " rows)", index.describe(q));
+            case WARM_INDEX -> new QueryPlan(s, "index cold, table ~" + estimatedRows() + " rows <= " + warmMaxRows
+                    + ": load once and serve from memory", "load index, then " + index.describe(q));
+            case DB_PUSHDOWN -> new QueryPlan(s, index == null ? "in-memory index disabled"
+                    : "index cold, table ~" + estimatedRows() + " rows > " + warmMaxRows, dao.describe(q));
+        };
+    }
+
+    /** Whether a cold in-memory structure is worth building with one scan of the table. */
+    boolean smallEnoughToLoad() { return estimatedRows() <= warmMaxRows; }
+
+    private long estimatedRows() {
+        long now = System.currentTimeMillis();
+        if (cachedCount < 0 || now - countedAt > COUNT_TTL_MS) {
+            cachedCount = dao.count();
+            countedAt = now;
+        }
+        return cachedCount;
+    }
+}
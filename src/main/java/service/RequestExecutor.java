@@ -0,0 +1,109 @@
+package service;
+
+import db.DBConfig;
+import db.DBConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Locale;
+import java.util.concurrent.*;
+
+/**
+ * Runs service calls for many concurrent clients. Work runs either on virtual threads (JDK 21+) or on a
+ * bounded platform pool; in both modes every call must first take an admission permit, and by default
+ * there are exactly as many permits as pooled DB connections, so excess callers queue here (cheaply)
+ * instead of timing out inside the connection pool.
+ */
+public final class RequestExecutor implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(RequestExecutor.class);
+
+    public enum Mode { VIRTUAL, PLATFORM }
+
+    public static final Mode DEFAULT_MODE = Mode.valueOf(System.getProperty("srms.executor.mode", "virtual").toUpperCase(Locale.ROOT));
+    public static final int DEFAULT_THREADS = Integer.getInteger("srms.executor.threads", 32);
+    public static final int DEFAULT_MAX_IN_FLIGHT = Integer.getInteger("srms.executor.maxInFlight", DBConfig.POOL_MAX_SIZE);
+    public static final long DEFAULT_ADMISSION_TIMEOUT_MS = Long.getLong("srms.executor.admissionTimeoutMs", 10_000L);
+
+    private final ExecutorService executor;
+    private final Mode mode;
+    private final int threads;
+    private final Semaphore admission;
+    private final int maxInFlight;
+    private final long admissionTimeoutMs;
+
+    public RequestExecutor() {
+        this(DEFAULT_MODE, DEFAULT_THREADS, DEFAULT_MAX_IN_FLIGHT, DEFAULT_ADMISSION_TIMEOUT_MS);
+    }
+
+    public RequestExecutor(Mode mode, int threads, int maxInFlight, long admissionTimeoutMs) {
+        ExecutorService virtual = mode == Mode.VIRTUAL ? newVirtualThreadExecutor() : null;
+        if (mode == Mode.VIRTUAL && virtual == null) {
+            log.warn("Virtual threads need JDK 21+ (running {}); using a pool of {} platform threads",
+                    Runtime.version(), threads);
+            mode = Mode.PLATFORM;
+        }
+        this.mode = mode;
+        this.threads = threads;
+        this.executor = virtual != null ? virtual : new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread t = new Thread(r, "srms-worker");
+                    t.setDaemon(true);
+                    return t;
+                });
+        this.admission = new Semaphore(maxInFlight, true);
+        this.maxInFlight = maxInFlight;
+        this.admissionTimeoutMs = admissionTimeoutMs;
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor() via reflection so the code still builds for Java 17
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    public Mode mode() { return mode; }
+
+    /** How many callers can actually run at once: unbounded for virtual threads, the pool size otherwise. */
+    public int maxConcurrency() { return mode == Mode.VIRTUAL ? Integer.MAX_VALUE : threads; }
+
+    public int inFlight() { return maxInFlight - admission.availablePermits(); }
+
+    /** Runs the task on a worker once admitted, in the submitter's read-your-writes session. */
+    public <T> Future<T> submit(Callable<T> task) {
+        Callable<T> carried = DBConnection.carrySession(task);
+        return executor.submit(() -> admit(carried));
+    }
+
+    /** Starts a long-running task (e.g. a client loop) without taking a permit. */
+    public void launch(Runnable task) {
+        executor.execute(task);
+    }
+
+    /**
+     * Runs the task in the calling thread while holding an admission permit. Throws
+     * {@link RejectedExecutionException} if no permit frees up within the admission timeout.
+     */
+    public <T> T admit(Callable<T> task) throws Exception {
+        if (!admission.tryAcquire(admissionTimeoutMs, TimeUnit.MILLISECONDS))
+            throw new RejectedExecutionException("Overloaded: no capacity within " + admissionTimeoutMs + " ms");
+        try {
+            return task.call();
+        } finally {
+            admission.release();
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) executor.shutdownNow();
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
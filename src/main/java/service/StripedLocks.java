@@ -0,0 +1,45 @@
+package service;
+
+import metrics.Metrics;
+import metrics.Timer;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fixed array of locks selected by key hash. Writes on keys that land in different stripes run in
+ * parallel; multi-key acquisition always locks stripes in index order so it cannot deadlock.
+ */
+final class StripedLocks {
+    private static final Timer WAIT = Metrics.timer("srms_lock_wait_seconds", "Time spent acquiring write lock stripes");
+    private final ReentrantLock[] stripes;
+
+    StripedLocks(int count) {
+        int n = Integer.highestOneBit(Math.max(1, count - 1)) << 1; // power of two
+        stripes = new ReentrantLock[n];
+        for (int i = 0; i < n; i++) stripes[i] = new ReentrantLock();
+    }
+
+    /** Locks the stripes of all keys; close the returned handle to unlock. */
+    Held lock(Object... keys) {
+        int[] idx = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) idx[i] = index(keys[i]);
+        Arrays.sort(idx);
+        int n = 0;
+        for (int i = 0; i < idx.length; i++) if (i == 0 || idx[i] != idx[i - 1]) idx[n++] = idx[i];
+        int[] held = Arrays.copyOf(idx, n);
+        long t = WAIT.start();
+        for (int i = 0; i < n; i++) stripes[held[i]].lock();
+        WAIT.stop(t);
+        return () -> { for (int i = held.length - 1; i >= 0; i--) stripes[held[i]].unlock(); };
+    }
+
+    private int index(Object key) {
+        int h = key.hashCode() * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & (stripes.length - 1);
+    }
+
+    interface Held extends AutoCloseable {
+        @Override void close();
+    }
+}
@@ -0,0 +1,95 @@
+package service;
+
+import model.Student;
+import repo.GpaHistogram;
+import repo.StudentDAO;
+
+import java.util.*;
+
+/**
+ * Incrementally maintained aggregates, updated by {@link StudentService} writes: an exact GPA
+ * histogram per department (count/avg/min/max/percentiles in constant time) and per-department
+ * (gpa, id) orderings for top-k/bottom-k in O(k). Like {@link StudentIndex} it is loaded with one
+ * scan and only sees rows written by other processes after {@link #reload} or through a {@link ChangeFeed}.
+ */
+public class StudentAnalytics {
+    private final Map<String, Department> departments = new HashMap<>();
+    private final Map<Integer, Tracked> byId = new HashMap<>();
+    private boolean loaded;
+    private Set<Integer> touchedDuringLoad; // non-null only while loading
+
+    private record Tracked(String department, int hundredths) { }
+
+    private static final class Department {
+        final GpaHistogram histogram = new GpaHistogram();
+        final NavigableSet<Long> byGpa = new TreeSet<>(); // hundredths << 32 | id
+    }
+
+    public synchronized boolean isLoaded() { return loaded; }
+
+    /** Rebuilds from a full scan; writes that happen meanwhile win over the scanned rows. */
+    public void reload(StudentDAO dao) {
+        synchronized (this) {
+            departments.clear();
+            byId.clear();
+            loaded = false;
+            touchedDuringLoad = new HashSet<>();
+        }
+        try {
+            dao.forEach(s -> {
+                synchronized (this) {
+                    if (!touchedDuringLoad.contains(s.getId())) add(s.getId(), s.getDepartment(), s.getGpa());
+                }
+            });
+            synchronized (this) { loaded = true; }
+        } finally {
+            synchronized (this) { touchedDuringLoad = null; }
+        }
+    }
+
+    public synchronized void upsert(Student s) {
+        if (touchedDuringLoad != null) touchedDuringLoad.add(s.getId());
+        removeInternal(s.getId());
+        add(s.getId(), s.getDepartment(), s.getGpa());
+    }
+
+    public synchronized void remove(int id) {
+        if (touchedDuringLoad != null) touchedDuringLoad.add(id);
+        removeInternal(id);
+    }
+
+    public synchronized Map<String, GpaHistogram> histograms() {
+        Map<String, GpaHistogram> out = new TreeMap<>();
+        departments.forEach((d, dep) -> out.put(d, dep.histogram.copy()));
+        return out;
+    }
+
+    /** Ids of the k highest (gpa desc, id desc) or lowest (gpa asc, id asc) students of the department. */
+    public synchronized List<Integer> extremes(String department, int k, boolean highest) {
+        Department dep = departments.get(department);
+        if (dep == null) return List.of();
+        List<Integer> ids = new ArrayList<>(Math.min(k, dep.byGpa.size()));
+        for (Iterator<Long> it = highest ? dep.byGpa.descendingIterator() : dep.byGpa.iterator();
+             it.hasNext() && ids.size() < k; ) {
+            ids.add((int) (long) it.next());
+        }
+        return ids;
+    }
+
+    private void add(int id, String department, double gpa) {
+        int h = (int) Math.round(gpa * 100);
+        Department dep = departments.computeIfAbsent(department, d -> new Department());
+        dep.histogram.add(h, 1);
+        dep.byGpa.add((long) h << 32 | id);
+        byId.put(id, new Tracked(department, h));
+    }
+
+    private void removeInternal(int id) {
+        Tracked t = byId.remove(id);
+        if (t == null) return;
+        Department dep = departments.get(t.department);
+        dep.histogram.add(t.hundredths, -1);
+        dep.byGpa.remove((long) t.hundredths << 32 | id);
+        if (dep.histogram.count() == 0) departments.remove(t.department);
+    }
+}
@@ -0,0 +1,334 @@
+package service;
+
+import db.DBConnection;
+import metrics.Counter;
+import metrics.Metrics;
+import metrics.Timer;
+import model.Student;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+/**
+ * Size-bounded LRU cache of students keyed by id, split into independently locked segments.
+ * Entries are private copies: callers always get their own {@link Student} instance, so mutating
+ * a returned object never changes what other readers see. Loads run outside the segment lock; a
+ * load that races with a put/invalidate of the same id is returned but not cached. Concurrent
+ * misses on one id share a single load (single-flight); a write to the id detaches callers arriving
+ * later from a load that started before it.
+ */
+public class StudentCache {
+    public static final int  DEFAULT_MAX_SIZE = Integer.getInteger("srms.cache.maxSize", 10_000);
+    public static final long DEFAULT_TTL_MS = Long.getLong("srms.cache.ttlMs", 300_000L);
+    public static final long DEFAULT_REFRESH_AFTER_MS = Long.getLong("srms.cache.refreshAfterMs", 0L); // 0 = off
+    public static final long DEFAULT_NEGATIVE_TTL_MS = Long.getLong("srms.cache.negativeTtlMs", 0L);   // 0 = off
+
+    private static final int SEGMENTS = 16;
+    private static final Counter HITS = Metrics.counter("srms_cache_requests_total", "Student cache lookups", "result", "hit"),
+            MISSES = Metrics.counter("srms_cache_requests_total", "Student cache lookups", "result", "miss"),
+            EVICTIONS = Metrics.counter("srms_cache_evictions_total", "LRU evictions from the student cache"),
+            COALESCED = Metrics.counter("srms_cache_coalesced_total", "Misses that waited for another caller's load");
+    private static final Timer LOAD = Metrics.timer("srms_cache_load_seconds", "Cache miss load latency");
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    // in-flight loads, changed under the segment lock; every write to an id drops its entry, so a load
+    // may cache its result only while it is still the one registered here
+    private final Map<Integer, CompletableFuture<Optional<Student>>> loading = new ConcurrentHashMap<>();
+    private final long ttlMs, refreshAfterMs, negativeTtlMs;
+    private final Executor refresher;
+    private final LongAdder hits = new LongAdder(), misses = new LongAdder(), evictions = new LongAdder(),
+            loads = new LongAdder(), loadFailures = new LongAdder(), loadNanos = new LongAdder();
+
+    public StudentCache() {
+        this(DEFAULT_MAX_SIZE, DEFAULT_TTL_MS, DEFAULT_REFRESH_AFTER_MS, DEFAULT_NEGATIVE_TTL_MS);
+    }
+
+    public StudentCache(int maxSize, long ttlMs, long refreshAfterMs, long negativeTtlMs) {
+        if (maxSize < 1) throw new IllegalArgumentException("maxSize must be positive");
+        this.ttlMs = ttlMs;
+        this.refreshAfterMs = refreshAfterMs;
+        this.negativeTtlMs = negativeTtlMs;
+        this.refresher = ForkJoinPool.commonPool();
+        int perSegment = Math.max(1, (maxSize + SEGMENTS - 1) / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) segments[i] = new Segment(perSegment);
+    }
+
+    /**
+     * Returns the cached student or loads it. An empty loader result is cached only when negative
+     * caching is enabled; loader exceptions propagate and leave the cache untouched.
+     */
+    public Optional<Student> get(int id, IntFunction<Optional<Student>> loader) {
+        Segment seg = segment(id);
+        long now = System.currentTimeMillis();
+        Entry e;
+        CompletableFuture<Optional<Student>> flight = null, mine = null;
+        synchronized (seg) {
+            e = live(seg, id, now);
+            if (e == null && (flight = loading.get(id)) == null) loading.put(id, mine = new CompletableFuture<>());
+        }
+        if (e != null) {
+            hits.increment();
+            HITS.increment();
+            final Entry hit = e;
+            if (hit.value != null && refreshAfterMs > 0 && now - hit.writtenAt > refreshAfterMs
+                    && hit.refreshing.compareAndSet(false, true)) {
+                refresher.execute(DBConnection.carrySession(() -> refresh(id, loader, hit)));
+            }
+            return hit.value == null ? Optional.empty() : Optional.of(new Student(hit.value));
+        }
+        misses.increment();
+        MISSES.increment();
+        if (mine == null) return await(flight);
+        Optional<Student> loaded;
+        try {
+            loaded = load(id, loader);
+        } catch (RuntimeException ex) {
+            synchronized (seg) { loading.remove(id, mine); }
+            mine.completeExceptionally(ex);
+            throw ex;
+        }
+        settle(seg, id, mine, loaded.orElse(null));
+        return loaded;
+    }
+
+    /**
+     * Multi-get: cached ids are answered from memory and all other misses are loaded with one call of
+     * {@code loader}, which returns the rows it found. Ids another caller is already loading are waited
+     * for rather than loaded twice. Returns the students found, in the order of {@code ids}.
+     */
+    public Map<Integer, Student> getAll(Collection<Integer> ids, Function<List<Integer>, List<Student>> loader) {
+        long now = System.currentTimeMillis();
+        Map<Integer, Student> out = new LinkedHashMap<>();
+        Map<Integer, CompletableFuture<Optional<Student>>> mine = new LinkedHashMap<>(), theirs = new HashMap<>();
+        for (Integer id : ids) {
+            if (out.containsKey(id)) continue;
+            out.put(id, null); // keeps the requested order
+            Segment seg = segment(id);
+            Entry e;
+            synchronized (seg) {
+                e = live(seg, id, now);
+                if (e == null) {
+                    CompletableFuture<Optional<Student>> flight = loading.get(id);
+                    if (flight != null) theirs.put(id, flight);
+                    else loading.put(id, mine.computeIfAbsent(id, k -> new CompletableFuture<>()));
+                }
+            }
+            if (e == null) continue;
+            hits.increment();
+            HITS.increment();
+            if (e.value != null) out.put(id, new Student(e.value));
+        }
+        misses.add(mine.size() + theirs.size());
+        MISSES.add(mine.size() + theirs.size());
+        if (!mine.isEmpty()) {
+            Map<Integer, Student> found = new HashMap<>();
+            try {
+                for (Student s : loadAll(new ArrayList<>(mine.keySet()), loader)) found.put(s.getId(), s);
+            } catch (RuntimeException ex) {
+                mine.forEach((id, f) -> {
+                    synchronized (segment(id)) { loading.remove(id, f); }
+                    f.completeExceptionally(ex);
+                });
+                throw ex;
+            }
+            mine.forEach((id, f) -> {
+                Student s = found.get(id);
+                settle(segment(id), id, f, s);
+                out.put(id, s);
+            });
+        }
+        theirs.forEach((id, f) -> out.put(id, await(f).orElse(null)));
+        out.values().removeIf(s -> s == null);
+        return out;
+    }
+
+    // Entry for id unless absent or expired (expired ones are dropped); caller holds the segment lock
+    private Entry live(Segment seg, int id, long now) {
+        Entry e = seg.map.get(id);
+        if (e != null && now - e.writtenAt > (e.value == null ? negativeTtlMs : ttlMs)) {
+            seg.map.remove(id);
+            return null;
+        }
+        return e;
+    }
+
+    // Caches a finished load unless the id was written meanwhile, then releases the callers waiting on it
+    private void settle(Segment seg, int id, CompletableFuture<Optional<Student>> flight, Student loaded) {
+        synchronized (seg) {
+            if (loading.get(id) == flight && (loaded != null || negativeTtlMs > 0)) {
+                seg.put(id, new Entry(loaded == null ? null : new Student(loaded)));
+            }
+            loading.remove(id, flight);
+        }
+        flight.complete(loaded == null ? Optional.empty() : Optional.of(new Student(loaded)));
+    }
+
+    private static Optional<Student> await(CompletableFuture<Optional<Student>> flight) {
+        COALESCED.increment();
+        try {
+            return flight.join().map(Student::new);
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException r) throw r;
+            throw e;
+        }
+    }
+
+    // Any write to the id replaces or drops the stale entry, so the refresh only lands while it is still cached
+    private void refresh(int id, IntFunction<Optional<Student>> loader, Entry stale) {
+        Segment seg = segment(id);
+        try {
+            Optional<Student> loaded = load(id, loader);
+            synchronized (seg) {
+                if (seg.map.get(id) != stale) return;
+                if (loaded.isPresent()) seg.put(id, new Entry(new Student(loaded.get())));
+                else seg.map.remove(id);
+            }
+        } catch (RuntimeException ignored) {
+            // keep serving the old value until the TTL expires
+        } finally {
+            stale.refreshing.set(false);
+        }
+    }
+
+    private Optional<Student> load(int id, IntFunction<Optional<Student>> loader) {
+        long t0 = System.nanoTime();
+        long t = LOAD.start();
+        try {
+            Optional<Student> v = loader.apply(id);
+            loads.increment();
+            return v == null ? Optional.empty() : v;
+        } catch (RuntimeException ex) {
+            loadFailures.increment();
+            throw ex;
+        } finally {
+            loadNanos.add(System.nanoTime() - t0);
+            LOAD.stop(t);
+        }
+    }
+
+    private List<Student> loadAll(List<Integer> ids, Function<List<Integer>, List<Student>> loader) {
+        long t0 = System.nanoTime();
+        long t = LOAD.start();
+        try {
+            List<Student> v = loader.apply(ids);
+            loads.increment();
+            return v;
+        } catch (RuntimeException ex) {
+            loadFailures.increment();
+            throw ex;
+        } finally {
+            loadNanos.add(System.nanoTime() - t0);
+            LOAD.stop(t);
+        }
+    }
+
+    /** Caches s after a successful write, replacing whatever is cached for the id. */
+    public void put(Student s) {
+        Segment seg = segment(s.getId());
+        Entry e = new Entry(new Student(s));
+        synchronized (seg) {
+            loading.remove(s.getId());
+            seg.put(s.getId(), e);
+        }
+    }
+
+    /**
+     * Like {@link #put}, but keeps a cached row with a higher version: for writes whose version is the one the
+     * store holds (checked version updates), where concurrent writers may finish out of order.
+     */
+    public void putIfNewer(Student s) {
+        Segment seg = segment(s.getId());
+        Entry e = new Entry(new Student(s));
+        synchronized (seg) {
+            loading.remove(s.getId());
+            Entry cur = seg.map.get(s.getId());
+            if (cur != null && cur.value != null && cur.value.getVersion() > s.getVersion()) return;
+            seg.put(s.getId(), e);
+        }
+    }
+
+    /** Replaces an entry that is already cached (including a cached "not found") unless it is newer; other ids stay uncached. */
+    public void putIfPresent(Student s) {
+        Segment seg = segment(s.getId());
+        synchronized (seg) {
+            loading.remove(s.getId()); // an in-flight load may have read the old row
+            if (!seg.map.containsKey(s.getId())) return;
+            Entry cur = seg.map.get(s.getId());
+            if (cur.value == null || cur.value.getVersion() <= s.getVersion()) seg.put(s.getId(), new Entry(new Student(s)));
+        }
+    }
+
+    public void invalidate(int id) {
+        Segment seg = segment(id);
+        synchronized (seg) {
+            seg.map.remove(id);
+            loading.remove(id);
+        }
+    }
+
+    public void invalidateAll() {
+        for (Segment seg : segments) {
+            synchronized (seg) {
+                seg.map.clear();
+                loading.keySet().removeIf(id -> segment(id) == seg);
+            }
+        }
+    }
+
+    public long size() {
+        long n = 0;
+        for (Segment seg : segments) synchronized (seg) { n += seg.map.size(); }
+        return n;
+    }
+
+    public CacheStats stats() {
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), loads.sum(), loadFailures.sum(),
+                loadNanos.sum(), size());
+    }
+
+    private Segment segment(int id) {
+        int h = id * 0x9E3779B9;
+        return segments[(h ^ (h >>> 16)) & (SEGMENTS - 1)];
+    }
+
+    private static final class Entry {
+        final Student value; // null = cached "not found"
+        final long writtenAt = System.currentTimeMillis();
+        final AtomicBoolean refreshing = new AtomicBoolean();
+
+        Entry(Student value) { this.value = value; }
+    }
+
+    private final class Segment {
+        final int capacity;
+        final LinkedHashMap<Integer, Entry> map = new LinkedHashMap<>(16, 0.75f, true); // access order = LRU
+
+        Segment(int capacity) { this.capacity = capacity; }
+
+        void put(int id, Entry e) {
+            map.put(id, e);
+            if (map.size() > capacity) {
+                Iterator<Map.Entry<Integer, Entry>> it = map.entrySet().iterator();
+                it.next();
+                it.remove();
+                evictions.increment();
+                EVICTIONS.increment();
+            }
+        }
+    }
+}
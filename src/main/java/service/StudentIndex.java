@@ -0,0 +1,244 @@
+package service;
+
+import model.Student;
+import repo.StudentDAO;
+import repo.StudentQuery;
+
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * In-memory read model for search and sort, kept in sync by {@link StudentService} writes:
+ * <ul>
+ *   <li>trigram index over lower-cased names for substring search</li>
+ *   <li>sorted (field, id) indexes on name, gpa and department for ordered scans, top-k and GPA ranges</li>
+ *   <li>department -> ids inverted index</li>
+ * </ul>
+ * Names and departments compare like the table's utf8mb4_unicode_ci columns (case- and accent-insensitive,
+ * ties on id), so a query returns the same rows in the same order whether it is planned in memory or in SQL.
+ * Readers never lock; writers are serialized on the index itself. Rows changed by other processes
+ * are only picked up by {@link #reload} or through a {@link ChangeFeed}.
+ */
+public class StudentIndex {
+    // primary strength: base letters only, the Java counterpart of MySQL's *_ci collations
+    private static final Collator COLLATOR = Collator.getInstance(Locale.ROOT);
+    static { COLLATOR.setStrength(Collator.PRIMARY); }
+
+    private static final Comparator<Entry> BY_ID = Comparator.comparingInt(e -> e.student.getId());
+    private static final Comparator<Entry> BY_NAME = Comparator.<Entry, CollationKey>comparing(e -> e.nameKey).thenComparing(BY_ID);
+    private static final Comparator<Entry> BY_GPA = Comparator.<Entry>comparingDouble(e -> e.student.getGpa()).thenComparing(BY_ID);
+    private static final Comparator<Entry> BY_DEPT = Comparator.<Entry, CollationKey>comparing(e -> e.deptKey).thenComparing(BY_ID);
+
+    // all structures of one generation; reload builds the next one aside and swaps it in whole
+    private volatile State state = new State();
+    private volatile boolean loaded;
+    private Set<Integer> touchedDuringLoad; // guarded by this; non-null only while loading
+
+    // the collation keys are computed once per write, so readers compare them without the (synchronized) collator
+    private record Entry(Student student, String normName, CollationKey nameKey, CollationKey deptKey) {
+        Entry(Student s) {
+            this(s, normalize(s.getName()), key(s.getName()), key(s.getDepartment()));
+        }
+    }
+
+    private static final class State {
+        final Map<Integer, Entry> byId = new ConcurrentHashMap<>();
+        final Map<String, Set<Integer>> trigrams = new ConcurrentHashMap<>();
+        final Map<CollationKey, Set<Integer>> byDepartment = new ConcurrentHashMap<>();
+        final NavigableSet<Entry> byName = new ConcurrentSkipListSet<>(BY_NAME);
+        final NavigableSet<Entry> byGpa = new ConcurrentSkipListSet<>(BY_GPA);
+        final NavigableSet<Entry> byDept = new ConcurrentSkipListSet<>(BY_DEPT);
+
+        void add(Student s) { add(new Entry(s)); }
+
+        void add(Entry e) {
+            int id = e.student.getId();
+            byId.put(id, e);
+            for (String t : trigramsOf(e.normName)) trigrams.computeIfAbsent(t, k -> ConcurrentHashMap.newKeySet()).add(id);
+            byDepartment.computeIfAbsent(e.deptKey, k -> ConcurrentHashMap.newKeySet()).add(id);
+            byName.add(e);
+            byGpa.add(e);
+            byDept.add(e);
+        }
+
+        void remove(int id) {
+            Entry e = byId.remove(id);
+            if (e == null) return;
+            for (String t : trigramsOf(e.normName)) {
+                Set<Integer> ids = trigrams.get(t);
+                if (ids != null) { ids.remove(id); if (ids.isEmpty()) trigrams.remove(t); }
+            }
+            Set<Integer> dept = byDepartment.get(e.deptKey);
+            if (dept != null) { dept.remove(id); if (dept.isEmpty()) byDepartment.remove(e.deptKey); }
+            byName.remove(e);
+            byGpa.remove(e);
+            byDept.remove(e);
+        }
+    }
+
+    public boolean isLoaded() { return loaded; }
+
+    public int size() { return state.byId.size(); }
+
+    /**
+     * Rebuilds the index from a full scan into fresh structures while readers keep using the current ones,
+     * then publishes them in one swap; writes that happen meanwhile win over the scanned rows.
+     */
+    public void reload(StudentDAO dao) {
+        synchronized (this) { touchedDuringLoad = new HashSet<>(); }
+        try {
+            State next = new State();
+            dao.forEach(s -> next.add(new Student(s)));
+            synchronized (this) {
+                State current = state;
+                for (Integer id : touchedDuringLoad) {
+                    next.remove(id);
+                    Entry e = current.byId.get(id);
+                    if (e != null) next.add(e);
+                }
+                state = next;
+            }
+            loaded = true;
+        } finally {
+            synchronized (this) { touchedDuringLoad = null; }
+        }
+    }
+
+    public synchronized void upsert(Student s) {
+        if (touchedDuringLoad != null) touchedDuringLoad.add(s.getId());
+        State st = state;
+        st.remove(s.getId());
+        st.add(new Student(s));
+    }
+
+    public synchronized void remove(int id) {
+        if (touchedDuringLoad != null) touchedDuringLoad.add(id);
+        state.remove(id);
+    }
+
+    /** First {@code limit} students ordered by field (name, gpa, department, otherwise id). */
+    public List<Student> sorted(String field, boolean asc, int limit) {
+        State st = state;
+        Collection<Entry> source = switch (field.toLowerCase(Locale.ROOT)) {
+            case "name" -> asc ? st.byName : st.byName.descendingSet();
+            case "gpa" -> asc ? st.byGpa : st.byGpa.descendingSet();
+            case "department" -> asc ? st.byDept : st.byDept.descendingSet();
+            default -> null;
+        };
+        if (source == null) {
+            List<Entry> all = new ArrayList<>(st.byId.values());
+            all.sort(asc ? BY_ID : BY_ID.reversed());
+            source = all;
+        }
+        List<Student> out = new ArrayList<>(Math.min(limit, st.byId.size()));
+        for (Entry e : source) {
+            if (out.size() == limit) break;
+            out.add(copy(e.student));
+        }
+        return out;
+    }
+
+    /** Evaluates the query using the most selective index, then filters, orders and limits in memory. */
+    public List<Student> query(StudentQuery q) {
+        if (!q.hasFilter()) return sorted(q.sortField(), q.asc(), q.limit());
+        String needle = q.nameContains() == null ? null : normalize(q.nameContains());
+        CollationKey dept = q.department() == null ? null : key(q.department());
+        List<Entry> hits = new ArrayList<>();
+        for (Entry e : candidates(state, q, dept)) if (matches(e, q, dept, needle)) hits.add(e);
+        hits.sort(comparator(q.sortField(), q.asc()));
+        List<Student> out = new ArrayList<>(Math.min(hits.size(), q.limit()));
+        for (int i = 0; i < hits.size() && i < q.limit(); i++) out.add(copy(hits.get(i).student));
+        return out;
+    }
+
+    /** Human-readable access path {@link #query} would take. */
+    public String describe(StudentQuery q) {
+        String order = q.sortField() + (q.asc() ? " asc" : " desc");
+        String limit = q.limit() == Integer.MAX_VALUE ? "" : " -> limit " + q.limit();
+        if (!q.hasFilter()) return "ordered scan of " + order + " index" + limit;
+        State st = state;
+        return switch (accessPath(q)) {
+            case DEPARTMENT -> "department index lookup ('" + q.department() + "': "
+                    + st.byDepartment.getOrDefault(key(q.department()), Set.of()).size() + " ids)";
+            case GPA_RANGE -> "gpa index range [" + (q.minGpa() == null ? "-inf" : q.minGpa()) + ", "
+                    + (q.maxGpa() == null ? "+inf" : q.maxGpa()) + "]";
+            case TRIGRAM -> "name trigram index lookup ('" + normalize(q.nameContains()) + "')";
+            case SCAN -> "full scan of " + st.byId.size() + " rows";
+        } + " -> filter -> sort " + order + limit;
+    }
+
+    private enum Access { DEPARTMENT, GPA_RANGE, TRIGRAM, SCAN }
+
+    private static Access accessPath(StudentQuery q) {
+        if (q.department() != null) return Access.DEPARTMENT;
+        if (q.nameContains() != null && q.nameContains().length() >= 3) return Access.TRIGRAM;
+        if (q.minGpa() != null || q.maxGpa() != null) return Access.GPA_RANGE;
+        return Access.SCAN;
+    }
+
+    private static Collection<Entry> candidates(State st, StudentQuery q, CollationKey dept) {
+        List<Entry> out = new ArrayList<>();
+        switch (accessPath(q)) {
+            case DEPARTMENT -> {
+                for (Integer id : st.byDepartment.getOrDefault(dept, Set.of())) addEntry(st, out, id);
+            }
+            case TRIGRAM -> {
+                String needle = normalize(q.nameContains());
+                Set<Integer> smallest = null;
+                for (int i = 0; i + 3 <= needle.length(); i++) {
+                    Set<Integer> ids = st.trigrams.get(needle.substring(i, i + 3));
+                    if (ids == null) return out;
+                    if (smallest == null || ids.size() < smallest.size()) smallest = ids;
+                }
+                for (Integer id : smallest) addEntry(st, out, id);
+            }
+            case GPA_RANGE -> {
+                Entry lo = probe(q.minGpa() == null ? Double.NEGATIVE_INFINITY : q.minGpa(), Integer.MIN_VALUE);
+                Entry hi = probe(q.maxGpa() == null ? Double.POSITIVE_INFINITY : q.maxGpa(), Integer.MAX_VALUE);
+                out.addAll(st.byGpa.subSet(lo, true, hi, true));
+            }
+            case SCAN -> out.addAll(st.byId.values());
+        }
+        return out;
+    }
+
+    private static void addEntry(State st, List<Entry> out, Integer id) {
+        Entry e = st.byId.get(id);
+        if (e != null) out.add(e);
+    }
+
+    private static boolean matches(Entry e, StudentQuery q, CollationKey dept, String needle) {
+        Student s = e.student;
+        if (dept != null && !e.deptKey.equals(dept)) return false;
+        if (q.minGpa() != null && s.getGpa() < q.minGpa()) return false;
+        if (q.maxGpa() != null && s.getGpa() > q.maxGpa()) return false;
+        return needle == null || e.normName.contains(needle);
+    }
+
+    private static Comparator<Entry> comparator(String field, boolean asc) {
+        Comparator<Entry> c = switch (field) {
+            case "name" -> BY_NAME;
+            case "gpa" -> BY_GPA;
+            case "department" -> BY_DEPT;
+            default -> BY_ID;
+        };
+        return asc ? c : c.reversed();
+    }
+
+    private static Set<String> trigramsOf(String s) {
+        Set<String> out = new HashSet<>();
+        for (int i = 0; i + 3 <= s.length(); i++) out.add(s.substring(i, i + 3));
+        return out;
+    }
+
+    private static String normalize(String s) { return s.toLowerCase(Locale.ROOT); }
+
+    private static CollationKey key(String s) { return COLLATOR.getCollationKey(s); }
+
+    private static Entry probe(double gpa, int id) { return new Entry(new Student(id, "", "", "", gpa, null)); }
+
+    private static Student copy(Student s) { return new Student(s); }
+}
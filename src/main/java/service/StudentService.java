@@ -3,99 +3,335 @@ package service;
 
 import exception.DuplicateEmailException;
 import exception.NotFoundException;
+import exception.VersionConflictException;
 import model.Student;
+import repo.GpaHistogram;
+import repo.Page;
+import repo.StudentChange;
 import repo.StudentDAO;
+import repo.StudentQuery;
 
 import java.util.*;
-import java.util.concurrent.*;
-import java.util.concurrent.locks.ReentrantLock;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
 
 public class StudentService {
+    // optimistic mode: updates check the row version instead of taking the per-id lock
+    public static final boolean OPTIMISTIC = Boolean.getBoolean("srms.optimisticLocking");
+    private static final int MAX_OPTIMISTIC_RETRIES = 5;
+    // in-memory search/sort read model; -Dsrms.index.enabled=false sends every query to the database
+    public static final boolean INDEX_ENABLED = Boolean.parseBoolean(System.getProperty("srms.index.enabled", "true"));
+    // incrementally maintained department aggregates; -Dsrms.analytics.enabled=false always asks the database
+    public static final boolean ANALYTICS_ENABLED = Boolean.parseBoolean(System.getProperty("srms.analytics.enabled", "true"));
+    // in-process email index for duplicate checks; -Dsrms.emailIndex.enabled=false asks the database every time
+    public static final boolean EMAIL_INDEX_ENABLED = Boolean.parseBoolean(System.getProperty("srms.emailIndex.enabled", "true"));
+
     private final StudentDAO dao;
-    private final Map<Integer, Student> cache = new ConcurrentHashMap<>();
-    private final ReentrantLock writeLock = new ReentrantLock(); // synchronize writes
+    private final StudentCache cache;
+    private final IntFunction<Optional<Student>> loader; // cache misses by id, micro-batched for stores behind a server unless disabled
+    private final StripedLocks locks = new StripedLocks(64); // writes to different ids/emails run in parallel
+    private final boolean optimistic;
+    private final StudentIndex index; // null when disabled
+    private final Object indexLoadLock = new Object();
+    private final QueryPlanner planner;
+    private final StudentAnalytics analytics; // null when disabled
+    private final Object analyticsLoadLock = new Object();
+    private final EmailIndex emails; // null when disabled; consulted only once loaded
+    private final Object emailsLoadLock = new Object();
+
+    public StudentService(StudentDAO dao) { this(dao, new StudentCache()); }
+
+    public StudentService(StudentDAO dao, StudentCache cache) { this(dao, cache, OPTIMISTIC); }
+
+    public StudentService(StudentDAO dao, StudentCache cache, boolean optimistic) {
+        this(dao, cache, optimistic, INDEX_ENABLED ? new StudentIndex() : null);
+    }
+
+    public StudentService(StudentDAO dao, StudentCache cache, boolean optimistic, StudentIndex index) {
+        this(dao, cache, optimistic, index, ANALYTICS_ENABLED ? new StudentAnalytics() : null);
+    }
+
+    public StudentService(StudentDAO dao, StudentCache cache, boolean optimistic, StudentIndex index,
+                          StudentAnalytics analytics) {
+        this(dao, cache, optimistic, index, analytics, EMAIL_INDEX_ENABLED ? new EmailIndex() : null);
+    }
 
-    public StudentService(StudentDAO dao) { this.dao = dao; }
+    public StudentService(StudentDAO dao, StudentCache cache, boolean optimistic, StudentIndex index,
+                          StudentAnalytics analytics, EmailIndex emails) {
+        this.dao = dao;
+        this.cache = cache;
+        this.loader = BatchLoader.ENABLED && dao.batchesLookups() ? new BatchLoader(dao)::load : dao::findById;
+        this.optimistic = optimistic;
+        this.index = index;
+        this.planner = new QueryPlanner(dao, index);
+        this.analytics = analytics;
+        this.emails = emails;
+    }
 
     public Student addStudent(Student s) {
-        if (dao.emailExists(s.getEmail())) throw new DuplicateEmailException(s.getEmail());
-        writeLock.lock();
-        try {
+        // the email stripe makes check-then-insert (and the index update) atomic for concurrent adds in this process
+        try (StripedLocks.Held ignored = locks.lock(emailKey(s.getEmail()))) {
+            if (emailTaken(s.getEmail(), null)) throw new DuplicateEmailException(s.getEmail());
             Student saved = dao.save(s);
-            cache.put(saved.getId(), saved);
+            written(saved);
             return saved;
-        } finally {
-            writeLock.unlock();
         }
     }
 
+    /** In optimistic mode throws {@link VersionConflictException} if the row changed since {@code s} was read. */
     public Student updateStudent(Student s) {
         if (s.getId() == null) throw new NotFoundException("ID required");
-        writeLock.lock();
-        try {
+        // the email stripe, as in addStudent, keeps a concurrent add or update from taking the address between
+        // the check and the write; optimistic mode leaves the id itself to the version check
+        try (StripedLocks.Held ignored = optimistic ? locks.lock(emailKey(s.getEmail()))
+                : locks.lock(emailKey(s.getEmail()), s.getId())) {
+            if (emailTaken(s.getEmail(), s.getId())) throw new DuplicateEmailException(s.getEmail());
+            if (optimistic) {
+                if (!dao.updateIfVersion(s)) {
+                    cache.invalidate(s.getId());
+                    throw new VersionConflictException(s.getId(), s.getVersion());
+                }
+                versionWritten(s);
+                return s;
+            }
             Student updated = dao.update(s);
-            cache.put(updated.getId(), updated);
+            written(updated);
             return updated;
-        } finally {
-            writeLock.unlock();
         }
     }
 
     public void delete(int id) {
-        writeLock.lock();
-        try {
+        try (StripedLocks.Held ignored = locks.lock(id)) {
             dao.deleteById(id);
-            cache.remove(id);
-        } finally {
-            writeLock.unlock();
+            cache.invalidate(id);
+            if (index != null) index.remove(id);
+            if (analytics != null) analytics.remove(id);
+            if (emails != null) emails.remove(id);
+        }
+    }
+
+    // Read-modify-write of one student's GPA, safe against concurrent writers in either mode
+    Student adjustGpa(int id, double delta) {
+        if (optimistic) {
+            for (int attempt = 0; attempt < MAX_OPTIMISTIC_RETRIES; attempt++) {
+                Student s = dao.findById(id).orElseThrow(() -> new NotFoundException("Student not found: " + id));
+                s.setGpa(Math.max(0.0, Math.min(4.0, s.getGpa() + delta)));
+                if (dao.updateIfVersion(s)) {
+                    versionWritten(s);
+                    return s;
+                }
+            }
+            cache.invalidate(id);
+            throw new VersionConflictException("Gave up updating student " + id + " after "
+                    + MAX_OPTIMISTIC_RETRIES + " version conflicts");
+        }
+        try (StripedLocks.Held ignored = locks.lock(id)) {
+            Student s = dao.findById(id).orElseThrow(() -> new NotFoundException("Student not found: " + id));
+            s.setGpa(Math.max(0.0, Math.min(4.0, s.getGpa() + delta)));
+            dao.update(s);
+            written(s);
+            return s;
         }
     }
 
+    // Propagates a successful write to the cache and the in-memory read models
+    private void written(Student s) {
+        cache.put(s);
+        indexed(s);
+    }
+
+    // After updateIfVersion the version is the stored one, so a writer finishing out of order must not roll the cache back
+    private void versionWritten(Student s) {
+        cache.putIfNewer(s);
+        indexed(s);
+    }
+
+    private void indexed(Student s) {
+        if (index != null) index.upsert(s);
+        if (analytics != null) analytics.upsert(s);
+        if (emails != null) emails.put(s.getId(), s.getEmail());
+    }
+
+    /**
+     * Duplicate check for {@code email} written by student {@code self} (null for a new row). Without
+     * a loaded index the store is asked, for adds only; updates then rely on the unique key as before.
+     * An index miss is final: a row the index has not seen yet is caught by uq_students_email. A hit
+     * costs one confirming lookup, since the owner may have changed its email on another node.
+     */
+    private boolean emailTaken(String email, Integer self) {
+        EmailIndex e = loadedEmails();
+        if (e == null) return self == null && dao.emailExists(email);
+        int owner = e.owner(email);
+        if (owner < 0 || self != null && owner == self) return false;
+        if (dao.emailExists(email)) return true;
+        e.remove(owner); // stale entry
+        return false;
+    }
+
+    private EmailIndex loadedEmails() { return emails != null && emails.isLoaded() ? emails : null; }
+
+    /**
+     * Builds the email index with one scan of the table; until it finishes duplicate checks go to the
+     * store. Meant to run at startup, off the caller's thread for large tables.
+     */
+    public void loadEmailIndex() {
+        if (emails == null) return;
+        synchronized (emailsLoadLock) {
+            if (!emails.isLoaded()) emails.reload(dao);
+        }
+    }
+
+    /**
+     * Importer that de-duplicates against the email index when it is loaded and keeps it, the search
+     * index and the aggregates current. Imported rows are not cached, only a cached "not found" is replaced.
+     */
+    public BulkImporter importer() {
+        return new BulkImporter(dao, BulkImporter.DEFAULT_BATCH_SIZE, loadedEmails(), this::imported);
+    }
+
+    private void imported(Student s) {
+        cache.putIfPresent(s);
+        if (index != null) index.upsert(s);
+        if (analytics != null) analytics.upsert(s);
+    }
+
+    /**
+     * Applies a change from the store's change log (see {@link ChangeFeed}), typically made by another
+     * node: cached copies are replaced rather than added, and the index and aggregates follow the row.
+     * This node's own writes come back through the log as well and are simply re-applied.
+     */
+    public void applyChange(StudentChange c) {
+        if (c.removed()) {
+            cache.invalidate(c.id());
+            if (index != null) index.remove(c.id());
+            if (analytics != null) analytics.remove(c.id());
+            if (emails != null) emails.remove(c.id());
+            return;
+        }
+        cache.putIfPresent(c.state());
+        if (index != null) index.upsert(c.state());
+        if (analytics != null) analytics.upsert(c.state());
+        if (emails != null) emails.put(c.id(), c.state().getEmail());
+    }
+
+    private static String emailKey(String email) {
+        return "email:" + email.toLowerCase(Locale.ROOT);
+    }
+
     public Student getById(int id) {
-        return cache.computeIfAbsent(id, i ->
-                dao.findById(i).orElseThrow(() -> new NotFoundException("Student not found: " + i)));
+        return cache.get(id, loader)
+                .orElseThrow(() -> new NotFoundException("Student not found: " + id));
     }
 
+    /** The students with these ids in request order, unknown ids left out; all cache misses cost one store query. */
+    public Map<Integer, Student> getByIds(Collection<Integer> ids) {
+        return cache.getAll(ids, dao::findAllById);
+    }
+
+    // Full-table reads bypass the cache so they cannot evict hot entries or overwrite newer writes
     public List<Student> all() {
-        List<Student> list = dao.findAll();
-        list.forEach(s -> cache.putIfAbsent(s.getId(), s));
-        return list;
+        return dao.findAll();
+    }
+
+    public CacheStats cacheStats() { return cache.stats(); }
+
+    // Streams every row to the consumer without touching the cache (used by export)
+    public void forEach(Consumer<Student> action) {
+        dao.forEach(action);
+    }
+
+    // Keyset pagination straight from the DB (does not fill the cache)
+    public Page<Student> page(String field, boolean asc, int limit, String token) {
+        return dao.page(field, asc, limit, token);
+    }
+
+    // Filtered/sorted reads go through the planner: warm index in memory, otherwise SQL pushdown
+    public List<Student> query(StudentQuery q) {
+        if (planner.strategy(q) == QueryPlan.Strategy.DB_PUSHDOWN) return dao.query(q);
+        return loadedIndex().query(q);
     }
 
-    // Streams: search + sort in-memory
+    public QueryPlan explain(StudentQuery q) { return planner.plan(q); }
+
     public List<Student> searchByName(String q) {
-        return all().stream()
-                .filter(s -> s.getName().toLowerCase().contains(q.toLowerCase()))
-                .collect(Collectors.toList());
+        return query(StudentQuery.all().name(q));
     }
+
     public List<Student> sortBy(String field, boolean asc) {
-        Comparator<Student> cmp = switch (field.toLowerCase()) {
-            case "name" -> Comparator.comparing(Student::getName);
-            case "gpa" -> Comparator.comparingDouble(Student::getGpa);
-            case "department" -> Comparator.comparing(Student::getDepartment);
-            default -> Comparator.comparing(Student::getId);
-        };
-        if (!asc) cmp = cmp.reversed();
-        return all().stream().sorted(cmp).collect(Collectors.toList());
-    }
-
-    // Simple multi-threading demo: run tasks concurrently (reads safe, writes locked)
-    public void simulateConcurrentAccess() {
-        ExecutorService pool = Executors.newFixedThreadPool(3);
-        List<Callable<Void>> jobs = List.of(
-                () -> { all(); return null; },
-                () -> { searchByName("a"); return null; },
-                () -> { if (!all().isEmpty()) { // synchronized write section
-                    writeLock.lock();
-                    try {
-                        Student s = all().get(0);
-                        s.setGpa(Math.min(4.0, s.getGpa() + 0.1));
-                        dao.update(s); cache.put(s.getId(), s);
-                    } finally { writeLock.unlock(); }
-                } return null; }
-        );
-        try { pool.invokeAll(jobs); } catch (InterruptedException ignored) { }
-        finally { pool.shutdown(); }
+        return query(StudentQuery.all().orderBy(field, asc));
+    }
+
+    public List<Student> topK(String field, boolean asc, int k) {
+        return query(StudentQuery.all().orderBy(field, asc).limit(k));
+    }
+
+    public List<Student> gpaBetween(double min, double max) {
+        return query(StudentQuery.all().gpa(min, max).orderBy("gpa", true));
+    }
+
+    public List<Student> byDepartment(String department) {
+        return query(StudentQuery.all().department(department));
+    }
+
+    // Count/avg/min/max/percentiles per department, sorted by department
+    public List<DepartmentStats> departmentStats() {
+        List<DepartmentStats> out = new ArrayList<>();
+        histograms().forEach((d, h) -> out.add(DepartmentStats.of(d, h)));
+        return out;
+    }
+
+    /** GPA distribution of one department, or of everyone when department is null. */
+    public GpaHistogram gpaHistogram(String department) {
+        Map<String, GpaHistogram> all = histograms();
+        if (department != null) return all.getOrDefault(department, new GpaHistogram());
+        GpaHistogram total = new GpaHistogram();
+        all.values().forEach(total::addAll);
+        return total;
+    }
+
+    // Ordered by gpa desc, id desc; a null department ranks everyone
+    public List<Student> topByGpa(String department, int k) { return extremes(department, k, true); }
+
+    // Ordered by gpa asc, id asc
+    public List<Student> bottomByGpa(String department, int k) { return extremes(department, k, false); }
+
+    private List<Student> extremes(String department, int k, boolean highest) {
+        if (k < 1) throw new IllegalArgumentException("k must be positive");
+        StudentAnalytics a = department == null ? null : loadedAnalytics();
+        if (a == null) return query(StudentQuery.all().department(department).orderBy("gpa", !highest).limit(k));
+        return new ArrayList<>(getByIds(a.extremes(department, k, highest)).values());
+    }
+
+    private Map<String, GpaHistogram> histograms() {
+        StudentAnalytics a = loadedAnalytics();
+        return a != null ? a.histograms() : new TreeMap<>(dao.gpaHistograms());
+    }
+
+    // The aggregates are built on first use when the table is small enough, otherwise SQL answers
+    private StudentAnalytics loadedAnalytics() {
+        if (analytics == null) return null;
+        if (!analytics.isLoaded()) {
+            if (!planner.smallEnoughToLoad()) return null;
+            synchronized (analyticsLoadLock) {
+                if (!analytics.isLoaded()) analytics.reload(dao);
+            }
+        }
+        return analytics;
+    }
+
+    // Re-reads the whole table into the index and aggregates, e.g. after other processes changed rows
+    public void refreshIndex() {
+        if (index != null) synchronized (indexLoadLock) { index.reload(dao); }
+        if (analytics != null && analytics.isLoaded()) synchronized (analyticsLoadLock) { analytics.reload(dao); }
+        if (emails != null && emails.isLoaded()) synchronized (emailsLoadLock) { emails.reload(dao); }
+    }
+
+    private StudentIndex loadedIndex() {
+        if (!index.isLoaded()) {
+            synchronized (indexLoadLock) {
+                if (!index.isLoaded()) index.reload(dao);
+            }
+        }
+        return index;
     }
 }
@@ -0,0 +1,310 @@
+package util;
+
+import metrics.Counter;
+import metrics.Metrics;
+import metrics.Timer;
+import model.Student;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * RFC-4180 student CSV parser working directly on memory-mapped bytes (quoted fields may contain
+ * commas, doubled quotes and line breaks). {@link #parse(File)} splits the file into segments at
+ * record boundaries and parses them in parallel on the common ForkJoinPool: a first parallel pass
+ * counts quotes per chunk so the quote state at every chunk start is known, which tells us which
+ * newline in each chunk really ends a record. GPA is parsed straight from the bytes; the only
+ * per-row allocations are the Student and its Strings.
+ */
+public final class CSVParser {
+    private CSVParser() {}
+
+    static final int SEGMENT_BYTES = 32 << 20;
+    private static final int FIELDS = 5; // id,name,email,department,gpa; extra columns are ignored
+    private static final double[] POW10 = new double[23];
+    static {
+        POW10[0] = 1;
+        for (int i = 1; i < POW10.length; i++) POW10[i] = POW10[i - 1] * 10;
+    }
+
+    private static final Counter ROWS_READ = Metrics.counter("srms_csv_rows_total", "CSV rows parsed or written", "op", "read"),
+            BYTES_READ = Metrics.counter("srms_csv_bytes_total", "CSV bytes parsed or written (uncompressed)", "op", "read"),
+            REJECTED = Metrics.counter("srms_csv_rejected_total", "Malformed CSV rows skipped");
+    private static final Timer PARSE = Metrics.timer("srms_csv_seconds", "Whole-file CSV parse/write time", "op", "read");
+
+    public record Result(List<Student> students, long rejected) { }
+
+    /** Parses the whole file in parallel; rows keep their file order. */
+    public static Result parse(File file) throws IOException {
+        return parse(file, ForkJoinPool.commonPool());
+    }
+
+    public static Result parse(File file, ForkJoinPool pool) throws IOException {
+        long t = PARSE.start();
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size == 0) return new Result(new ArrayList<>(), 0);
+            long[] bounds = segmentBounds(ch, size, pool);
+            List<Callable<Result>> tasks = new ArrayList<>();
+            for (int i = 0; i + 1 < bounds.length; i++) {
+                long start = bounds[i], end = bounds[i + 1];
+                boolean first = i == 0;
+                tasks.add(() -> {
+                    if (end - start > Integer.MAX_VALUE) throw new IOException("CSV record larger than 2 GB");
+                    MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+                    Scanner sc = new Scanner(first);
+                    List<Student> out = new ArrayList<>();
+                    sc.scan(buf, 0, (int) (end - start), true, out::add);
+                    return new Result(out, sc.rejected);
+                });
+            }
+            List<Student> all = new ArrayList<>();
+            long rejected = 0;
+            for (Result r : join(pool.invokeAll(tasks))) {
+                all.addAll(r.students);
+                rejected += r.rejected;
+            }
+            record(all.size(), size, rejected);
+            return new Result(all, rejected);
+        } finally {
+            PARSE.stop(t);
+        }
+    }
+
+    /**
+     * Sequential streaming parse: hands rows to {@code sink} in chunks of at most {@code chunkSize}
+     * (the list is reused between calls). Returns the number of rejected rows.
+     */
+    public static long parse(File file, int chunkSize, Consumer<List<Student>> sink) throws IOException {
+        if (chunkSize < 1) throw new IllegalArgumentException("chunkSize must be positive");
+        List<Student> chunk = new ArrayList<>(chunkSize);
+        Scanner sc = new Scanner(true);
+        long[] rows = {0};
+        long t = PARSE.start();
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = ch.size(), pos = 0;
+            int region = SEGMENT_BYTES;
+            while (pos < size) {
+                int len = (int) Math.min(region, size - pos);
+                boolean eof = pos + len == size;
+                MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, pos, len);
+                int consumed = sc.scan(buf, 0, len, eof, s -> {
+                    chunk.add(s);
+                    rows[0]++;
+                    if (chunk.size() == chunkSize) { sink.accept(chunk); chunk.clear(); }
+                });
+                if (consumed == 0 && !eof) { // a single record spans the whole region: widen it
+                    if (region == Integer.MAX_VALUE) throw new IOException("CSV record larger than 2 GB");
+                    region = (int) Math.min((long) region * 2, Integer.MAX_VALUE);
+                    continue;
+                }
+                pos += consumed;
+            }
+            if (!chunk.isEmpty()) sink.accept(chunk);
+            record(rows[0], size, sc.rejected);
+        } finally {
+            PARSE.stop(t);
+        }
+        return sc.rejected;
+    }
+
+    private static void record(long rows, long bytes, long rejected) {
+        ROWS_READ.add(rows);
+        BYTES_READ.add(bytes);
+        REJECTED.add(rejected);
+    }
+
+    // Offsets where segments start (every one the start of a record) followed by the file size.
+    private static long[] segmentBounds(FileChannel ch, long size, ForkJoinPool pool) throws IOException {
+        int chunks = (int) ((size + SEGMENT_BYTES - 1) / SEGMENT_BYTES);
+        List<Callable<long[]>> tasks = new ArrayList<>(chunks);
+        for (int i = 0; i < chunks; i++) {
+            long start = (long) i * SEGMENT_BYTES;
+            int len = (int) Math.min(SEGMENT_BYTES, size - start);
+            tasks.add(() -> quoteScan(ch.map(FileChannel.MapMode.READ_ONLY, start, len), len));
+        }
+        List<long[]> scans = join(pool.invokeAll(tasks));
+        long[] bounds = new long[chunks + 1];
+        int n = 0;
+        bounds[n++] = 0;
+        long quotes = 0;
+        for (int i = 0; i < chunks; i++) {
+            long[] s = scans.get(i); // {quotes, first newline at even parity, first newline at odd parity}
+            if (i > 0) {
+                long nl = (quotes & 1) == 0 ? s[1] : s[2];
+                if (nl >= 0 && (long) i * SEGMENT_BYTES + nl + 1 < size) bounds[n++] = (long) i * SEGMENT_BYTES + nl + 1;
+            }
+            quotes += s[0];
+        }
+        bounds[n++] = size;
+        return Arrays.copyOf(bounds, n);
+    }
+
+    private static long[] quoteScan(ByteBuffer buf, int len) {
+        long quotes = 0, even = -1, odd = -1;
+        for (int i = 0; i < len; i++) {
+            byte b = buf.get(i);
+            if (b == '"') quotes++;
+            else if (b == '\n') {
+                if ((quotes & 1) == 0) { if (even < 0) even = i; }
+                else if (odd < 0) odd = i;
+            }
+        }
+        return new long[]{quotes, even, odd};
+    }
+
+    private static <T> List<T> join(List<Future<T>> futures) throws IOException {
+        List<T> out = new ArrayList<>(futures.size());
+        try {
+            for (Future<T> f : futures) out.add(f.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while parsing CSV", e);
+        } catch (ExecutionException e) {
+            Throwable c = e.getCause();
+            if (c instanceof IOException io) throw io;
+            if (c instanceof UncheckedIOException uio) throw uio.getCause();
+            if (c instanceof RuntimeException re) throw re;
+            throw new IOException(c);
+        }
+        return out;
+    }
+
+    /** Single-threaded record scanner; reuses its field offsets and scratch buffer across rows. */
+    private static final class Scanner {
+        private final int[] starts = new int[FIELDS], ends = new int[FIELDS];
+        private final boolean[] quoted = new boolean[FIELDS];
+        private byte[] scratch = new byte[256];
+        private boolean skipHeader;
+        long rejected;
+
+        Scanner(boolean skipHeader) { this.skipHeader = skipHeader; }
+
+        /**
+         * Parses the complete records in buf[from, to) and returns the offset just after the last one.
+         * When {@code eof} is false a trailing partial record is left for the next call.
+         */
+        int scan(ByteBuffer buf, int from, int to, boolean eof, Consumer<Student> out) {
+            int p = from;
+            while (p < to) {
+                int recStart = p, nf = 0;
+                while (true) {
+                    int fs = p, fe;
+                    boolean fq = false;
+                    if (p < to && buf.get(p) == '"') {
+                        fq = true;
+                        fs = ++p;
+                        while (true) {
+                            if (p >= to) {
+                                if (!eof) return recStart;
+                                break; // unterminated quote at end of file: take the rest as the field
+                            }
+                            if (buf.get(p) == '"') {
+                                if (p + 1 < to && buf.get(p + 1) == '"') { p += 2; continue; }
+                                if (p + 1 >= to && !eof) return recStart; // could still be an escaped quote
+                                break;
+                            }
+                            p++;
+                        }
+                        fe = p;
+                        if (p < to) p++; // closing quote
+                        while (p < to && buf.get(p) != ',' && buf.get(p) != '\n') p++;
+                    } else {
+                        while (p < to && buf.get(p) != ',' && buf.get(p) != '\n') p++;
+                        fe = p;
+                        if (fe > fs && buf.get(fe - 1) == '\r' && (p == to || buf.get(p) == '\n')) fe--;
+                    }
+                    if (nf < FIELDS) { starts[nf] = fs; ends[nf] = fe; quoted[nf] = fq; }
+                    nf++;
+                    if (p >= to) {
+                        if (!eof) return recStart;
+                        break;
+                    }
+                    if (buf.get(p++) == '\n') break;
+                    if (p >= to && !eof) return recStart; // comma right at the window end
+                    if (p >= to) { // trailing comma at end of file: one more empty field
+                        if (nf < FIELDS) { starts[nf] = p; ends[nf] = p; quoted[nf] = false; }
+                        nf++;
+                        break;
+                    }
+                }
+                emit(buf, nf, out);
+            }
+            return p;
+        }
+
+        private void emit(ByteBuffer buf, int nf, Consumer<Student> out) {
+            if (nf == 1 && starts[0] == ends[0] && !quoted[0]) return; // blank line
+            if (skipHeader) { skipHeader = false; return; }
+            if (nf < FIELDS) { rejected++; return; }
+            double gpa;
+            try {
+                gpa = parseDouble(buf, starts[4], ends[4]);
+            } catch (NumberFormatException e) {
+                rejected++;
+                return;
+            }
+            out.accept(new Student(field(buf, 1), field(buf, 2), field(buf, 3), gpa));
+        }
+
+        private String field(ByteBuffer buf, int i) {
+            int s = starts[i], e = ends[i], n = 0;
+            if (scratch.length < e - s) scratch = new byte[Math.max(e - s, scratch.length * 2)];
+            for (int p = s; p < e; p++) {
+                byte b = buf.get(p);
+                scratch[n++] = b;
+                if (b == '"' && quoted[i] && p + 1 < e && buf.get(p + 1) == '"') p++; // "" -> "
+            }
+            return new String(scratch, 0, n, StandardCharsets.UTF_8);
+        }
+    }
+
+    // Plain decimals go through an exact long/10^k fast path; anything else falls back to the JDK.
+    static double parseDouble(ByteBuffer b, int s, int e) {
+        while (s < e && b.get(s) == ' ') s++;
+        while (e > s && b.get(e - 1) == ' ') e--;
+        if (s == e) throw new NumberFormatException("empty GPA");
+        int i = s;
+        boolean neg = false;
+        if (b.get(i) == '-' || b.get(i) == '+') neg = b.get(i++) == '-';
+        long mant = 0;
+        int digits = 0, frac = 0;
+        boolean dot = false;
+        for (; i < e; i++) {
+            byte c = b.get(i);
+            if (c >= '0' && c <= '9') {
+                if (++digits > 18) return slowParse(b, s, e);
+                mant = mant * 10 + (c - '0');
+                if (dot) frac++;
+            } else if (c == '.' && !dot) {
+                dot = true;
+            } else {
+                return slowParse(b, s, e);
+            }
+        }
+        if (digits == 0) throw new NumberFormatException("no digits in GPA");
+        if (mant >= (1L << 53) || frac >= POW10.length) return slowParse(b, s, e);
+        double v = mant / POW10[frac]; // both operands exact, so the quotient is correctly rounded
+        return neg ? -v : v;
+    }
+
+    private static double slowParse(ByteBuffer b, int s, int e) {
+        byte[] tmp = new byte[e - s];
+        for (int i = 0; i < tmp.length; i++) tmp[i] = b.get(s + i);
+        return Double.parseDouble(new String(tmp, StandardCharsets.US_ASCII));
+    }
+}
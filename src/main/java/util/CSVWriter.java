@@ -0,0 +1,159 @@
+package util;
+
+import metrics.Counter;
+import metrics.Metrics;
+import metrics.Timer;
+import model.Student;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streaming CSV writer: rows are encoded straight into a large byte buffer (no String.format,
+ * no intermediate Strings for ASCII fields) and flushed to a FileChannel, optionally through gzip.
+ * Use as the sink of {@code StudentDAO.forEach} to export without holding the table in memory.
+ */
+public final class CSVWriter implements Consumer<Student>, Closeable {
+    static final String HEADER = "id,name,email,department,gpa\n";
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final Counter ROWS_WRITTEN = Metrics.counter("srms_csv_rows_total", "CSV rows parsed or written", "op", "write"),
+            BYTES_WRITTEN = Metrics.counter("srms_csv_bytes_total", "CSV bytes parsed or written (uncompressed)", "op", "write");
+    private static final Timer WRITE = Metrics.timer("srms_csv_seconds", "Whole-file CSV parse/write time", "op", "write");
+
+    private final WritableByteChannel out;
+    private final ByteBuffer buf = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final long started = WRITE.start();
+    private long rows, bytes;
+
+    private CSVWriter(WritableByteChannel out) throws IOException {
+        this.out = out;
+        putAscii(HEADER);
+    }
+
+    public static CSVWriter open(File file, boolean gzip) throws IOException {
+        FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        if (!gzip) return new CSVWriter(ch);
+        return new CSVWriter(Channels.newChannel(new GZIPOutputStream(Channels.newOutputStream(ch), 1 << 16)));
+    }
+
+    /** Writes to a stream (e.g. an HTTP response); {@link #close} closes it. */
+    public static CSVWriter to(OutputStream out) throws IOException {
+        return new CSVWriter(Channels.newChannel(out));
+    }
+
+    @Override
+    public void accept(Student s) {
+        try { write(s); }
+        catch (IOException e) { throw new UncheckedIOException(e); }
+    }
+
+    public void write(Student s) throws IOException {
+        ensure(16);
+        if (s.getId() != null) putLong(s.getId());
+        buf.put((byte) ',');
+        putField(s.getName());
+        buf.put((byte) ',');
+        putField(s.getEmail());
+        buf.put((byte) ',');
+        putField(s.getDepartment());
+        ensure(24);
+        buf.put((byte) ',');
+        putGpa(s.getGpa());
+        buf.put((byte) '\n');
+        rows++;
+    }
+
+    public long rows() { return rows; }
+
+    private void putField(String s) throws IOException {
+        boolean quote = needsQuotes(s);
+        if (quote) { ensure(1); buf.put((byte) '"'); }
+        int n = s.length();
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x80) { // rare: fall back to the JDK encoder for the remainder
+                putBytes(s.substring(i).replace("\"", "\"\"").getBytes(StandardCharsets.UTF_8));
+                break;
+            }
+            ensure(2);
+            if (c == '"') buf.put((byte) '"');
+            buf.put((byte) c);
+        }
+        if (quote) { ensure(1); buf.put((byte) '"'); }
+    }
+
+    static boolean needsQuotes(String s) {
+        for (int i = 0, n = s.length(); i < n; i++) {
+            char c = s.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') return true;
+        }
+        return false;
+    }
+
+    // GPA is stored as DECIMAL(3,2), so rounding to hundredths is exact
+    private void putGpa(double gpa) {
+        long cents = Math.round(gpa * 100);
+        if (cents < 0) { buf.put((byte) '-'); cents = -cents; }
+        putLong(cents / 100);
+        buf.put((byte) '.');
+        long frac = cents % 100;
+        buf.put((byte) ('0' + frac / 10));
+        buf.put((byte) ('0' + frac % 10));
+    }
+
+    private void putLong(long v) {
+        if (v < 0) { buf.put((byte) '-'); v = -v; }
+        if (v < 10) { buf.put((byte) ('0' + v)); return; }
+        int start = buf.position();
+        while (v > 0) { buf.put((byte) ('0' + v % 10)); v /= 10; }
+        for (int i = start, j = buf.position() - 1; i < j; i++, j--) {
+            byte t = buf.get(i);
+            buf.put(i, buf.get(j));
+            buf.put(j, t);
+        }
+    }
+
+    private void putAscii(String s) throws IOException {
+        putBytes(s.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private void putBytes(byte[] b) throws IOException {
+        int off = 0;
+        while (off < b.length) {
+            ensure(1);
+            int n = Math.min(buf.remaining(), b.length - off);
+            buf.put(b, off, n);
+            off += n;
+        }
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (buf.remaining() < bytes) flush();
+    }
+
+    private void flush() throws IOException {
+        bytes += buf.position();
+        buf.flip();
+        while (buf.hasRemaining()) out.write(buf);
+        buf.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try { flush(); }
+        finally {
+            out.close();
+            ROWS_WRITTEN.add(rows);
+            BYTES_WRITTEN.add(bytes);
+            WRITE.stop(started);
+        }
+    }
+}
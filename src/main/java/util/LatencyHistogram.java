@@ -0,0 +1,74 @@
+package util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free log-linear latency histogram (nanoseconds). Each power of two is split into 16 linear
+ * sub-buckets, so percentiles are accurate to ~6% over the full long range in ~1000 counters.
+ * Buckets are striped {@link LongAdder}s, so concurrent recorders do not contend on one cache line.
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BITS = 4, SUB = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS + 1) * SUB;
+
+    private final LongAdder[] counts = new LongAdder[BUCKETS];
+    private final LongAdder total = new LongAdder(), sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) counts[i] = new LongAdder();
+    }
+
+    public void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        counts[index(nanos)].increment();
+        total.increment();
+        sum.add(nanos);
+        if (nanos > max.get()) max.accumulateAndGet(nanos, Math::max);
+    }
+
+    public long count() { return total.sum(); }
+
+    public long sumNanos() { return sum.sum(); }
+
+    public long maxNanos() { return max.get(); }
+
+    public double meanNanos() {
+        long n = total.sum();
+        return n == 0 ? 0 : (double) sum.sum() / n;
+    }
+
+    /** Upper bound of the bucket holding the given percentile (0..100). */
+    public long percentileNanos(double percentile) {
+        long n = total.sum();
+        if (n == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * n));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i].sum();
+            if (seen >= rank) return Math.min(upperBound(i), max.get());
+        }
+        return max.get();
+    }
+
+    public void reset() {
+        for (LongAdder c : counts) c.reset();
+        total.reset(); sum.reset(); max.set(0);
+    }
+
+    static int index(long v) {
+        if (v < SUB) return (int) v;
+        int exp = 63 - Long.numberOfLeadingZeros(v);           // >= SUB_BITS
+        int sub = (int) (v >>> (exp - SUB_BITS)) & (SUB - 1);
+        return (exp - SUB_BITS + 1) * SUB + sub;
+    }
+
+    static long upperBound(int index) {
+        if (index < SUB) return index;
+        int exp = index / SUB + SUB_BITS - 1, sub = index % SUB;
+        if (exp >= 62) return Long.MAX_VALUE;
+        long base = (SUB | (long) sub) << (exp - SUB_BITS);
+        return base + (1L << (exp - SUB_BITS)) - 1;
+    }
+}
@@ -0,0 +1,254 @@
+package util;
+
+import metrics.Counter;
+import metrics.Metrics;
+import metrics.Timer;
+import model.Student;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import static util.SnapshotWriter.*;
+
+/**
+ * Reads files written by {@link SnapshotWriter}. The file is memory-mapped block by block: a first pass only
+ * hops from block header to block header, then the blocks are checksummed and decoded in parallel on the
+ * common ForkJoinPool. Stored blocks are decoded straight from the mapping and compressed ones are inflated
+ * from it, so file bytes are never copied onto the heap first. A checksum mismatch, an unknown version or a
+ * truncated file fails the whole read with an {@link IOException}.
+ */
+public final class SnapshotReader {
+    private SnapshotReader() {}
+
+    private static final Counter ROWS_READ = Metrics.counter("srms_snapshot_rows_total", "Snapshot rows read or written", "op", "read"),
+            BYTES_READ = Metrics.counter("srms_snapshot_bytes_total", "Snapshot bytes read or written (on disk)", "op", "read");
+    private static final Timer READ = Metrics.timer("srms_snapshot_seconds", "Whole-file snapshot read/write time", "op", "read");
+
+    private record BlockRef(long offset, int rows, int rawBytes, int storedBytes, int crc, byte codec) { }
+
+    /** Reads the whole file; rows keep their file order. */
+    public static List<Student> read(File file) throws IOException {
+        List<Student> all = new ArrayList<>();
+        read(file, all::addAll);
+        return all;
+    }
+
+    /**
+     * Hands the rows to {@code sink} one block at a time, in file order. Blocks are decoded a few at a time
+     * in parallel, so memory stays at a handful of blocks regardless of file size. Returns the row count.
+     */
+    public static long read(File file, Consumer<List<Student>> sink) throws IOException {
+        return read(file, ForkJoinPool.commonPool(), sink);
+    }
+
+    public static long read(File file, ForkJoinPool pool, Consumer<List<Student>> sink) throws IOException {
+        long t = READ.start(), rows = 0;
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            List<BlockRef> blocks = blocks(ch);
+            int window = Math.max(2, pool.getParallelism());
+            for (int from = 0; from < blocks.size(); from += window) {
+                List<Future<List<Student>>> decoding = new ArrayList<>(window);
+                for (BlockRef b : blocks.subList(from, Math.min(blocks.size(), from + window))) {
+                    decoding.add(pool.submit(() -> {
+                        try {
+                            return decode(ch, b);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e); // join() unwraps it again
+                        }
+                    }));
+                }
+                for (List<Student> decoded : join(decoding)) {
+                    rows += decoded.size();
+                    sink.accept(decoded);
+                }
+            }
+            ROWS_READ.add(rows);
+            BYTES_READ.add(ch.size());
+            return rows;
+        } finally {
+            READ.stop(t);
+        }
+    }
+
+    private static List<BlockRef> blocks(FileChannel ch) throws IOException {
+        long size = ch.size();
+        if (size < HEADER_BYTES) throw new IOException("Not a snapshot file: too short");
+        ByteBuffer h = readAt(ch, 0, HEADER_BYTES);
+        if (h.getInt() != MAGIC) throw new IOException("Not a snapshot file: bad magic number");
+        short version = h.getShort();
+        if (version != VERSION) throw new IOException("Unsupported snapshot version " + version + " (expected " + VERSION + ")");
+        List<BlockRef> blocks = new ArrayList<>();
+        for (long pos = HEADER_BYTES; pos < size; ) {
+            if (size - pos < BLOCK_HEADER_BYTES) throw new IOException("Snapshot truncated in the block header at offset " + pos);
+            ByteBuffer b = readAt(ch, pos, BLOCK_HEADER_BYTES);
+            BlockRef ref = new BlockRef(pos + BLOCK_HEADER_BYTES, b.getInt(), b.getInt(), b.getInt(), b.getInt(), b.get());
+            // the checksum only covers the payload, so bound the sizes before anything is allocated from them
+            boolean sane = ref.rows >= 0 && ref.storedBytes >= 0 && ref.rawBytes >= ref.rows
+                    && (ref.codec == CODEC_NONE ? ref.rawBytes == ref.storedBytes : ref.rawBytes / 1032 <= ref.storedBytes);
+            if (!sane || ref.offset + ref.storedBytes > size) {
+                throw new IOException("Snapshot truncated or corrupt in the block at offset " + pos);
+            }
+            blocks.add(ref);
+            pos = ref.offset + ref.storedBytes;
+        }
+        return blocks;
+    }
+
+    private static ByteBuffer readAt(FileChannel ch, long pos, int n) throws IOException {
+        ByteBuffer b = ByteBuffer.allocate(n).order(ByteOrder.LITTLE_ENDIAN);
+        while (b.hasRemaining()) {
+            if (ch.read(b, pos + b.position()) < 0) throw new IOException("Snapshot truncated at offset " + (pos + b.position()));
+        }
+        return b.flip();
+    }
+
+    private static List<Student> decode(FileChannel ch, BlockRef b) throws IOException {
+        ByteBuffer stored = ch.map(FileChannel.MapMode.READ_ONLY, b.offset, b.storedBytes);
+        CRC32 crc = new CRC32();
+        crc.update(stored.duplicate());
+        if ((int) crc.getValue() != b.crc) throw corrupt(b, "checksum mismatch");
+        ByteBuffer raw;
+        if (b.codec == CODEC_NONE) raw = stored;
+        else if (b.codec == CODEC_DEFLATE) raw = inflate(stored, b);
+        else throw corrupt(b, "unknown codec " + b.codec);
+        try {
+            return new Decoder(raw).block(b.rows);
+        } catch (RuntimeException e) { // checksum passed, so only a writer bug or a hostile file lands here
+            throw corrupt(b, "undecodable (" + e + ")");
+        }
+    }
+
+    private static ByteBuffer inflate(ByteBuffer stored, BlockRef b) throws IOException {
+        Inflater inf = new Inflater(true);
+        try {
+            inf.setInput(stored);
+            byte[] raw = new byte[b.rawBytes];
+            int n = 0;
+            while (n < raw.length && !inf.finished()) {
+                int got = inf.inflate(raw, n, raw.length - n);
+                if (got == 0 && (inf.needsInput() || inf.needsDictionary())) break;
+                n += got;
+            }
+            if (n != raw.length) throw corrupt(b, "inflated to " + n + " bytes, expected " + raw.length);
+            return ByteBuffer.wrap(raw);
+        } catch (DataFormatException e) {
+            throw corrupt(b, e.getMessage());
+        } finally {
+            inf.end();
+        }
+    }
+
+    private static IOException corrupt(BlockRef b, String why) {
+        return new IOException("Snapshot block at offset " + (b.offset - BLOCK_HEADER_BYTES) + " is corrupt: " + why);
+    }
+
+    private static <T> List<T> join(List<Future<T>> futures) throws IOException {
+        List<T> out = new ArrayList<>(futures.size());
+        try {
+            for (Future<T> f : futures) out.add(f.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while reading snapshot");
+        } catch (ExecutionException e) {
+            Throwable c = e.getCause();
+            if (c instanceof IOException io) throw io;
+            if (c instanceof UncheckedIOException uio) throw uio.getCause();
+            if (c instanceof RuntimeException re) throw re;
+            throw new IOException(c);
+        }
+        return out;
+    }
+
+    /** Walks the seven column streams of one block side by side, one row at a time. */
+    private static final class Decoder {
+        private final ByteBuffer buf;
+        private final int[] at = new int[COLUMNS];
+        private byte[] scratch = new byte[256];
+        private int pos;
+
+        Decoder(ByteBuffer buf) { this.buf = buf; }
+
+        List<Student> block(int rows) {
+            String[] dictionary = new String[(int) varLong()];
+            for (int i = 0; i < dictionary.length; i++) dictionary[i] = string().intern();
+            int[] lengths = new int[COLUMNS];
+            for (int i = 0; i < COLUMNS; i++) lengths[i] = (int) varLong();
+            for (int i = 0, start = pos; i < COLUMNS; start += lengths[i++]) at[i] = start;
+            if (at[COLUMNS - 1] + lengths[COLUMNS - 1] != buf.limit()) throw new IllegalStateException("column lengths do not add up");
+            List<Student> out = new ArrayList<>(rows);
+            int id = 0;
+            long millis = 0;
+            for (int r = 0; r < rows; r++) {
+                id += (int) unzigzag(column(0));
+                int version = (int) column(1);
+                long c = column(2);
+                Instant createdAt = null;
+                if ((c & 1) != 0) {
+                    millis += unzigzag(c >>> 1);
+                    createdAt = Instant.ofEpochMilli(millis);
+                }
+                double gpa = unzigzag(column(3)) / 100.0;
+                String department = dictionary[(int) column(4)];
+                String name = columnString(5), email = columnString(6);
+                out.add(new Student(id == 0 ? null : id, name, email, department, gpa, createdAt, version));
+            }
+            return out;
+        }
+
+        private long column(int i) {
+            pos = at[i];
+            long v = varLong();
+            at[i] = pos;
+            return v;
+        }
+
+        private String columnString(int i) {
+            pos = at[i];
+            String s = string();
+            at[i] = pos;
+            return s;
+        }
+
+        private long varLong() {
+            long v = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = buf.get(pos++);
+                v |= (long) (b & 0x7F) << shift;
+                if (b >= 0) return v;
+                if (shift > 56) throw new IllegalStateException("varint too long");
+            }
+        }
+
+        private String string() {
+            int n = (int) varLong();
+            if (buf.hasArray()) {
+                String s = new String(buf.array(), buf.arrayOffset() + pos, n, StandardCharsets.UTF_8);
+                pos += n;
+                return s;
+            }
+            if (scratch.length < n) scratch = new byte[Math.max(n, scratch.length * 2)];
+            buf.get(pos, scratch, 0, n);
+            pos += n;
+            return new String(scratch, 0, n, StandardCharsets.UTF_8);
+        }
+    }
+
+    static long unzigzag(long v) { return v >>> 1 ^ -(v & 1); }
+}
@@ -0,0 +1,261 @@
+package util;
+
+import metrics.Counter;
+import metrics.Metrics;
+import metrics.Timer;
+import model.Student;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes students in the binary snapshot format, a compact alternative to CSV for bulk transfers:
+ * <pre>
+ *   file   = "SRMS" u16:version u16:flags block*
+ *   block  = u32:rows u32:rawBytes u32:storedBytes u32:crc32(stored) u8:codec stored
+ *   raw    = dictionary lengths[7] ids versions createdAt gpa departments names emails
+ * </pre>
+ * Every block is self-contained (its own department dictionary), so blocks decode independently and in
+ * parallel. Ids are zigzag-varint deltas (one byte for consecutive ids), GPA is the varint of gpa * 100
+ * (exact for DECIMAL(3,2)), departments are varint dictionary codes and strings are varint-length
+ * UTF-8. Columns are stored one after another, which also lets Deflate find the repetition in each.
+ * Blocks are compressed on the common ForkJoinPool while the next one is encoded.
+ */
+public final class SnapshotWriter implements Consumer<Student>, Closeable {
+    static final int MAGIC = 0x53524D53; // "SRMS"
+    static final short VERSION = 1;
+    static final short FLAG_DEFLATE = 1;
+    static final byte CODEC_NONE = 0, CODEC_DEFLATE = 1;
+    static final int HEADER_BYTES = 8, BLOCK_HEADER_BYTES = 17, COLUMNS = 7;
+    public static final int BLOCK_ROWS = Integer.getInteger("srms.snapshot.blockRows", 65_536);
+    public static final boolean DEFLATE = Boolean.parseBoolean(System.getProperty("srms.snapshot.deflate", "true"));
+    private static final int MAX_PENDING = Math.max(2, ForkJoinPool.getCommonPoolParallelism());
+    private static final Counter ROWS_WRITTEN = Metrics.counter("srms_snapshot_rows_total", "Snapshot rows read or written", "op", "write"),
+            BYTES_WRITTEN = Metrics.counter("srms_snapshot_bytes_total", "Snapshot bytes read or written (on disk)", "op", "write");
+    private static final Timer WRITE = Metrics.timer("srms_snapshot_seconds", "Whole-file snapshot read/write time", "op", "write");
+
+    private final FileChannel out;
+    private final boolean deflate;
+    private final int blockRows;
+    private final ArrayDeque<Future<ByteBuffer>> pending = new ArrayDeque<>();
+    private final long started = WRITE.start();
+    private Block block;
+    private long rows, bytes;
+
+    private SnapshotWriter(FileChannel out, boolean deflate, int blockRows) throws IOException {
+        if (blockRows < 1) throw new IllegalArgumentException("blockRows must be positive");
+        this.out = out;
+        this.deflate = deflate;
+        this.blockRows = blockRows;
+        this.block = new Block(blockRows);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN)
+                .putInt(MAGIC).putShort(VERSION).putShort(deflate ? FLAG_DEFLATE : 0).flip();
+        write(header);
+    }
+
+    public static SnapshotWriter open(File file) throws IOException { return open(file, DEFLATE, BLOCK_ROWS); }
+
+    public static SnapshotWriter open(File file, boolean deflate, int blockRows) throws IOException {
+        FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            return new SnapshotWriter(ch, deflate, blockRows);
+        } catch (IOException | RuntimeException e) {
+            ch.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void accept(Student s) {
+        try { write(s); }
+        catch (IOException e) { throw new UncheckedIOException(e); }
+    }
+
+    public void write(Student s) throws IOException {
+        block.add(s);
+        rows++;
+        if (block.rows == blockRows) {
+            submit(block);
+            block = new Block(blockRows);
+        }
+    }
+
+    public long rows() { return rows; }
+
+    private void submit(Block b) throws IOException {
+        pending.add(ForkJoinPool.commonPool().submit(() -> b.seal(deflate)));
+        while (pending.size() > MAX_PENDING) drainOne();
+    }
+
+    private void drainOne() throws IOException {
+        try {
+            write(pending.poll().get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while writing snapshot");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException r) throw r;
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private void write(ByteBuffer buf) throws IOException {
+        bytes += buf.remaining();
+        while (buf.hasRemaining()) out.write(buf);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (block.rows > 0) submit(block);
+            while (!pending.isEmpty()) drainOne();
+        } finally {
+            pending.forEach(f -> f.cancel(false));
+            out.close();
+            ROWS_WRITTEN.add(rows);
+            BYTES_WRITTEN.add(bytes);
+            WRITE.stop(started);
+        }
+    }
+
+    /** One block being filled: every column has its own buffer until the block is sealed. */
+    private static final class Block {
+        final Column[] columns = new Column[COLUMNS];
+        final Map<String, Integer> dictionary = new HashMap<>();
+        final Column dictionaryBytes = new Column(64);
+        int rows, prevId;
+        long prevMillis;
+
+        Block(int capacity) {
+            int n = Math.min(capacity, 1 << 16);
+            int[] sizes = {n, n, n, 2 * n, n, 24 * n, 28 * n};
+            for (int i = 0; i < COLUMNS; i++) columns[i] = new Column(sizes[i]);
+        }
+
+        void add(Student s) {
+            // 0 stands for "no id yet": database ids start at 1
+            int id = s.getId() == null ? 0 : s.getId();
+            columns[0].putVarLong(zigzag((long) id - prevId));
+            prevId = id;
+            columns[1].putVarLong(s.getVersion());
+            if (s.getCreatedAt() == null) columns[2].putVarLong(0);
+            else {
+                long millis = s.getCreatedAt().toEpochMilli();
+                columns[2].putVarLong(zigzag(millis - prevMillis) << 1 | 1);
+                prevMillis = millis;
+            }
+            columns[3].putVarLong(zigzag(Math.round(s.getGpa() * 100)));
+            Integer code = dictionary.get(s.getDepartment());
+            if (code == null) {
+                code = dictionary.size();
+                dictionary.put(s.getDepartment(), code);
+                dictionaryBytes.putString(s.getDepartment());
+            }
+            columns[4].putVarLong(code);
+            columns[5].putString(s.getName());
+            columns[6].putString(s.getEmail());
+            rows++;
+        }
+
+        /** Header plus (possibly compressed) payload, ready to append to the file. */
+        ByteBuffer seal(boolean deflate) {
+            Column raw = new Column(dictionaryBytes.len + 64 + total());
+            raw.putVarLong(dictionary.size());
+            raw.putBytes(dictionaryBytes.buf, 0, dictionaryBytes.len);
+            for (Column c : columns) raw.putVarLong(c.len);
+            for (Column c : columns) raw.putBytes(c.buf, 0, c.len);
+            byte codec = CODEC_NONE;
+            byte[] stored = raw.buf;
+            int storedLen = raw.len;
+            if (deflate) {
+                Deflater d = new Deflater(Deflater.BEST_SPEED, true);
+                try {
+                    byte[] z = new byte[raw.len + raw.len / 1000 + 64];
+                    d.setInput(raw.buf, 0, raw.len);
+                    d.finish();
+                    int n = d.deflate(z);
+                    if (d.finished() && n < raw.len) { // incompressible blocks are stored as they are
+                        codec = CODEC_DEFLATE;
+                        stored = z;
+                        storedLen = n;
+                    }
+                } finally {
+                    d.end();
+                }
+            }
+            CRC32 crc = new CRC32();
+            crc.update(stored, 0, storedLen);
+            return ByteBuffer.allocate(BLOCK_HEADER_BYTES + storedLen).order(ByteOrder.LITTLE_ENDIAN)
+                    .putInt(rows).putInt(raw.len).putInt(storedLen).putInt((int) crc.getValue()).put(codec)
+                    .put(stored, 0, storedLen).flip();
+        }
+
+        private int total() {
+            int n = 0;
+            for (Column c : columns) n += c.len;
+            return n;
+        }
+    }
+
+    /** Growable byte array with varint and string encoders. */
+    private static final class Column {
+        byte[] buf;
+        int len;
+
+        Column(int capacity) { buf = new byte[Math.max(16, capacity)]; }
+
+        void putVarLong(long v) {
+            ensure(10);
+            while ((v & ~0x7FL) != 0) {
+                buf[len++] = (byte) (v & 0x7F | 0x80);
+                v >>>= 7;
+            }
+            buf[len++] = (byte) v;
+        }
+
+        void putString(String s) {
+            int n = s.length();
+            ensure(5 + n);
+            int at = len;
+            putVarLong(n); // ASCII guess: the length prefix is fixed up below if it was wrong
+            for (int i = 0; i < n; i++) {
+                char c = s.charAt(i);
+                if (c >= 0x80) { // rare: encode with the JDK instead
+                    len = at;
+                    byte[] b = s.getBytes(StandardCharsets.UTF_8);
+                    putVarLong(b.length);
+                    putBytes(b, 0, b.length);
+                    return;
+                }
+                buf[len++] = (byte) c;
+            }
+        }
+
+        void putBytes(byte[] b, int off, int n) {
+            ensure(n);
+            System.arraycopy(b, off, buf, len, n);
+            len += n;
+        }
+
+        private void ensure(int n) {
+            if (buf.length - len < n) buf = Arrays.copyOf(buf, Math.max(buf.length * 2, len + n));
+        }
+    }
+
+    static long zigzag(long v) { return v << 1 ^ v >> 63; }
+}
@@ -0,0 +1,146 @@
+package repo;
+
+import exception.DataAccessException;
+import exception.DuplicateEmailException;
+import model.Student;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EmbeddedStudentDAOTest {
+    @TempDir Path dir;
+    private EmbeddedStudentDAO dao;
+
+    @BeforeEach
+    void open() throws IOException {
+        dao = new EmbeddedStudentDAO(dir, false);
+    }
+
+    @AfterEach
+    void close() throws IOException {
+        dao.close();
+    }
+
+    private void fill(int n) {
+        String[] depts = {"CSE", "EEE", "BBA"};
+        List<Student> rows = new ArrayList<>();
+        // few distinct names and gpas, so most of the order comes from the id tie-breaker
+        for (int i = 0; i < n; i++) rows.add(new Student("Name" + i % 4, "u" + i + "@x.org", depts[i % 3], (i % 5) / 2.0));
+        assertEquals(n, dao.saveAll(rows));
+    }
+
+    @Test
+    void keysetPagesCoverEveryRowOnceInOrder() {
+        fill(53);
+        for (String field : List.of("id", "name", "gpa", "department")) {
+            for (boolean asc : new boolean[] {true, false}) {
+                List<Student> expected = new ArrayList<>(dao.findAll());
+                expected.sort(asc ? order(field) : order(field).reversed());
+                assertEquals(ids(expected), ids(pageThrough(dao, field, asc, 5)), field + (asc ? " asc" : " desc"));
+            }
+        }
+    }
+
+    @Test
+    void pagingResumesAfterRowsChangedBetweenPages() {
+        fill(20);
+        Page<Student> first = dao.page("gpa", true, 10, null);
+        Student last = first.items().get(9);
+        // rows before the cursor may come and go; the next page still starts right after it
+        dao.deleteById(first.items().get(0).getId());
+        dao.save(new Student("New", "new@x.org", "CSE", 0.0));
+        List<Student> rest = new ArrayList<>();
+        for (String token = first.nextToken(); token != null; ) {
+            Page<Student> p = dao.page("gpa", true, 10, token);
+            rest.addAll(p.items());
+            token = p.nextToken();
+        }
+        assertTrue(rest.stream().allMatch(s -> order("gpa").compare(s, last) > 0));
+        assertEquals(10, rest.size());
+    }
+
+    @Test
+    void lastPageHasNoToken() {
+        fill(10);
+        Page<Student> p = dao.page("id", true, 10, null);
+        assertEquals(10, p.items().size());
+        assertFalse(p.hasNext());
+        assertThrows(IllegalArgumentException.class, () -> dao.page("id", true, 0, null));
+    }
+
+    @Test
+    void rejectsDuplicateEmailsIgnoringCase() {
+        dao.save(new Student("A", "a@x.org", "CSE", 3.0));
+        assertThrows(DuplicateEmailException.class, () -> dao.save(new Student("B", "A@X.org", "CSE", 3.0)));
+        // saveAll is all or nothing
+        List<Student> batch = List.of(new Student("C", "c@x.org", "CSE", 3.0), new Student("D", "C@x.org", "CSE", 3.0));
+        assertThrows(DuplicateEmailException.class, () -> dao.saveAll(batch));
+        assertEquals(1, dao.count());
+    }
+
+    @Test
+    void rejectsGpaOutsideTheColumnRange() {
+        assertThrows(DataAccessException.class, () -> dao.save(new Student("A", "a@x.org", "CSE", 4.01)));
+        assertThrows(DataAccessException.class, () -> dao.save(new Student("A", "a@x.org", "CSE", -0.5)));
+        Student ok = dao.save(new Student("A", "a@x.org", "CSE", 4.0));
+        ok.setGpa(Double.NaN);
+        assertThrows(DataAccessException.class, () -> dao.update(ok));
+        assertEquals(4.0, dao.findById(ok.getId()).orElseThrow().getGpa());
+    }
+
+    @Test
+    void reopeningReplaysTheLog() throws IOException {
+        fill(30);
+        Student s = dao.findById(5).orElseThrow();
+        s.setName("Renamed");
+        dao.update(s);
+        dao.deleteById(6);
+        List<Student> before = dao.findAll();
+        dao.close();
+        dao = new EmbeddedStudentDAO(dir, false);
+        List<Student> after = dao.findAll();
+        assertEquals(ids(before), ids(after));
+        assertEquals("Renamed", dao.findById(5).orElseThrow().getName());
+        assertTrue(dao.findById(6).isEmpty());
+        assertEquals(31, dao.save(new Student("Next", "next@x.org", "CSE", 1.0)).getId()); // ids are never reused
+    }
+
+    static Comparator<Student> order(String field) {
+        Comparator<Student> byId = Comparator.comparing(Student::getId);
+        return switch (field) {
+            case "name" -> Comparator.comparing(Student::getName).thenComparing(byId);
+            case "gpa" -> Comparator.comparingDouble(Student::getGpa).thenComparing(byId);
+            case "department" -> Comparator.comparing(Student::getDepartment).thenComparing(byId);
+            default -> byId;
+        };
+    }
+
+    static List<Student> pageThrough(StudentDAO dao, String field, boolean asc, int limit) {
+        List<Student> out = new ArrayList<>();
+        Set<String> tokens = new HashSet<>();
+        String token = null;
+        do {
+            Page<Student> p = dao.page(field, asc, limit, token);
+            assertTrue(p.items().size() <= limit);
+            out.addAll(p.items());
+            token = p.nextToken();
+            assertTrue(token == null || tokens.add(token), "paging went round in a loop");
+        } while (token != null);
+        return out;
+    }
+
+    static List<Integer> ids(List<Student> rows) {
+        return rows.stream().map(Student::getId).toList();
+    }
+}
@@ -0,0 +1,40 @@
+package repo;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PageTokenTest {
+    @Test
+    void roundTrips() {
+        PageToken t = new PageToken("name", false, "Smith, \"J\"\nline two", 42);
+        assertEquals(t, PageToken.decode(t.encode(), "name", false));
+    }
+
+    @Test
+    void roundTripsIdOrderWithoutSortValue() {
+        PageToken t = new PageToken("id", true, null, 7);
+        PageToken back = PageToken.decode(t.encode(), "id", true);
+        assertEquals(7, back.lastId());
+        assertEquals("", back.lastValue());
+    }
+
+    @Test
+    void isUrlSafe() {
+        String token = new PageToken("department", true, "\u00ff\u00fe??>>", Integer.MAX_VALUE).encode();
+        assertTrue(token.matches("[A-Za-z0-9_-]+"), token);
+    }
+
+    @Test
+    void rejectsATokenForAnotherOrdering() {
+        String token = new PageToken("gpa", true, "3.50", 1).encode();
+        assertThrows(IllegalArgumentException.class, () -> PageToken.decode(token, "gpa", false));
+        assertThrows(IllegalArgumentException.class, () -> PageToken.decode(token, "name", true));
+    }
+
+    @Test
+    void rejectsGarbage() {
+        assertThrows(IllegalArgumentException.class, () -> PageToken.decode("not a token!", "id", true));
+        assertThrows(IllegalArgumentException.class, () -> PageToken.decode("bm8tbmV3bGluZXM", "id", true));
+    }
+}
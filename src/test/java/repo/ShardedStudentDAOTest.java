@@ -0,0 +1,98 @@
+package repo;
+
+import exception.DuplicateEmailException;
+import model.Student;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static repo.EmbeddedStudentDAOTest.ids;
+import static repo.EmbeddedStudentDAOTest.order;
+import static repo.EmbeddedStudentDAOTest.pageThrough;
+
+class ShardedStudentDAOTest {
+    @TempDir Path dir;
+    private final List<EmbeddedStudentDAO> shards = new ArrayList<>();
+    private ShardedStudentDAO dao;
+
+    @BeforeEach
+    void open() throws IOException {
+        for (int k = 0; k < 3; k++) shards.add(new EmbeddedStudentDAO(dir.resolve("shard-" + k), false));
+        dao = new ShardedStudentDAO(shards);
+    }
+
+    @AfterEach
+    void close() throws IOException {
+        dao.close();
+        for (EmbeddedStudentDAO s : shards) s.close();
+    }
+
+    private List<Student> fill(int n) {
+        String[] depts = {"CSE", "EEE", "BBA", "Law"};
+        List<Student> rows = new ArrayList<>();
+        for (int i = 0; i < n; i++) rows.add(new Student("Name" + i % 6, "u" + i + "@x.org", depts[i % 4], (i % 7) / 2.0));
+        assertEquals(n, dao.saveAll(rows));
+        return rows;
+    }
+
+    @Test
+    void idsRouteToTheShardThatHoldsTheRow() {
+        List<Student> rows = fill(30);
+        for (Student s : rows) {
+            assertEquals(s.getEmail(), dao.findById(s.getId()).orElseThrow().getEmail());
+            int k = dao.shardOf(s.getId());
+            assertTrue(shards.get(k).findById(s.getId() / 3).isPresent(), "row " + s.getId() + " not on shard " + k);
+        }
+        for (EmbeddedStudentDAO shard : shards) assertEquals(10, shard.count()); // dealt in turn
+        assertEquals(30, dao.count());
+    }
+
+    @Test
+    void pagesMergeAllShardsWithoutSkipsOrRepeats() {
+        fill(47);
+        for (String field : List.of("id", "name", "gpa", "department")) {
+            for (boolean asc : new boolean[] {true, false}) {
+                for (int limit : new int[] {1, 4, 10, 100}) {
+                    List<Student> expected = new ArrayList<>(dao.findAll());
+                    expected.sort(asc ? order(field) : order(field).reversed());
+                    assertEquals(ids(expected), ids(pageThrough(dao, field, asc, limit)),
+                            field + (asc ? " asc" : " desc") + " by " + limit);
+                }
+            }
+        }
+    }
+
+    @Test
+    void pagingKeepsGoingWhenShardsRunOutAtDifferentTimes() {
+        // all high gpas land on one shard, so the others are exhausted early in a gpa-desc scan
+        for (int i = 0; i < 12; i++) dao.save(new Student("S" + i, "s" + i + "@x.org", "CSE", i % 3 == 0 ? 4.0 : 1.0));
+        List<Student> all = pageThrough(dao, "gpa", false, 3);
+        assertEquals(12, all.size());
+        assertEquals(4.0, all.get(0).getGpa());
+        assertEquals(1.0, all.get(11).getGpa());
+    }
+
+    @Test
+    void tokenOfAnotherOrderingIsRejected() {
+        fill(10);
+        String token = dao.page("name", true, 3, null).nextToken();
+        assertThrows(IllegalArgumentException.class, () -> dao.page("name", false, 3, token));
+    }
+
+    @Test
+    void emailsAreUniqueAcrossShards() {
+        Student a = dao.save(new Student("A", "same@x.org", "CSE", 3.0));
+        // the next insert goes to another shard, whose own unique key would not see the first row
+        assertThrows(DuplicateEmailException.class, () -> dao.save(new Student("B", "SAME@x.org", "EEE", 2.0)));
+        assertEquals(1, dao.count());
+        dao.deleteById(a.getId());
+        assertNotNull(dao.save(new Student("B", "same@x.org", "EEE", 2.0)).getId());
+    }
+}
@@ -0,0 +1,100 @@
+package repo;
+
+import model.Student;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteAheadLogTest {
+    @TempDir Path dir;
+
+    private static Student student(int id, int version) {
+        return new Student(id, "Name " + id, "u" + id + "@x.org", "CSE", 3.25, null, version);
+    }
+
+    @Test
+    void replaysEveryRecordInOrderAfterReopen() throws IOException {
+        try (WriteAheadLog log = WriteAheadLog.open(dir, 1 << 20, true, e -> fail("fresh log replayed " + e))) {
+            for (int i = 1; i <= 10; i++) log.sync(log.append(i, student(i, i)));
+            log.sync(log.append(3, null));
+            assertEquals(11, log.lastSeq());
+        }
+        List<WriteAheadLog.Entry> replayed = new ArrayList<>();
+        try (WriteAheadLog log = WriteAheadLog.open(dir, 1 << 20, true, replayed::add)) {
+            assertEquals(11, replayed.size());
+            for (int i = 0; i < 10; i++) {
+                WriteAheadLog.Entry e = replayed.get(i);
+                assertEquals(i + 1, e.seq());
+                assertEquals(i + 1, e.id());
+                assertEquals("u" + (i + 1) + "@x.org", e.state().getEmail());
+                assertEquals(i + 1, e.state().getVersion());
+                assertEquals(3.25, e.state().getGpa());
+            }
+            assertEquals(new WriteAheadLog.Entry(11, 3, null), replayed.get(10));
+            assertEquals(12, log.append(4, student(4, 0))); // numbering continues after the replayed records
+        }
+    }
+
+    @Test
+    void dropsATornTail() throws IOException {
+        try (WriteAheadLog log = WriteAheadLog.open(dir, 1 << 20, false, e -> { })) {
+            for (int i = 1; i <= 3; i++) log.append(i, student(i, 0));
+        }
+        Path segment = segments().get(0);
+        byte[] whole = Files.readAllBytes(segment);
+        Files.write(segment, Arrays.copyOf(whole, whole.length - 5)); // last record cut short
+        Files.write(segment, new byte[] {0, 0, 0, 20, 1, 2}, StandardOpenOption.APPEND);
+        List<WriteAheadLog.Entry> replayed = new ArrayList<>();
+        try (WriteAheadLog log = WriteAheadLog.open(dir, 1 << 20, false, replayed::add)) {
+            assertEquals(List.of(1L, 2L), replayed.stream().map(WriteAheadLog.Entry::seq).toList());
+            assertEquals(3, log.append(9, student(9, 0)));
+        }
+    }
+
+    @Test
+    void corruptRecordEndsTheReplay() throws IOException {
+        try (WriteAheadLog log = WriteAheadLog.open(dir, 1 << 20, false, e -> { })) {
+            for (int i = 1; i <= 3; i++) log.append(i, student(i, 0));
+        }
+        Path segment = segments().get(0);
+        byte[] bytes = Files.readAllBytes(segment);
+        int second = bytes.length / 3; // records are the same length
+        bytes[second + 20] ^= 0x55;
+        Files.write(segment, bytes);
+        List<WriteAheadLog.Entry> replayed = new ArrayList<>();
+        WriteAheadLog.open(dir, 1 << 20, false, replayed::add).close();
+        assertEquals(1, replayed.size());
+    }
+
+    @Test
+    void rotatesSegmentsAndReleasesOldOnes() throws IOException {
+        try (WriteAheadLog log = WriteAheadLog.open(dir, 200, false, e -> { })) {
+            for (int i = 1; i <= 20; i++) log.append(i, student(i, 0));
+            int before = segments().size();
+            assertTrue(before > 3, "expected several segments, got " + before);
+            log.release(11); // records 1-10 are applied
+            assertTrue(segments().size() < before);
+            log.release(log.lastSeq() + 1); // everything applied: the whole log can go
+            assertEquals(1, segments().size()); // the fresh, empty one
+        }
+        List<WriteAheadLog.Entry> replayed = new ArrayList<>();
+        WriteAheadLog.open(dir, 200, false, replayed::add).close();
+        assertTrue(replayed.isEmpty(), "released records were replayed: " + replayed);
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(p -> p.getFileName().toString().endsWith(".wal")).sorted().toList();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package service;
+
+import model.Student;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import repo.EmbeddedStudentDAO;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EmailIndexTest {
+    @Test
+    void findsTheOwnerIgnoringCase() {
+        EmailIndex index = new EmailIndex();
+        index.put(1, "Ada@X.org");
+        assertEquals(1, index.owner("ada@x.org"));
+        assertEquals(1, index.owner("ADA@X.ORG"));
+        assertEquals(-1, index.owner("bob@x.org"));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    void changingOrRemovingAnEmailFreesTheOldOne() {
+        EmailIndex index = new EmailIndex();
+        index.put(1, "old@x.org");
+        index.put(1, "new@x.org");
+        assertEquals(-1, index.owner("old@x.org"));
+        assertEquals(1, index.owner("new@x.org"));
+        index.remove(1);
+        assertEquals(-1, index.owner("new@x.org"));
+        assertEquals(0, index.size());
+        index.remove(1); // unknown ids are ignored
+    }
+
+    @Test
+    void growsAndSurvivesChurn() {
+        EmailIndex index = new EmailIndex();
+        int n = 50_000;
+        for (int i = 0; i < n; i++) index.put(i, "u" + i + "@x.org");
+        for (int i = 0; i < n; i += 2) index.remove(i);
+        for (int i = 0; i < n; i++) assertEquals(i % 2 == 0 ? -1 : i, index.owner("u" + i + "@x.org"), "u" + i);
+        assertEquals(n / 2, index.size());
+        for (int i = 0; i < n; i += 2) index.put(i, "v" + i + "@x.org");
+        assertEquals(n, index.size());
+        assertEquals(42, index.owner("v42@x.org"));
+    }
+
+    @Test
+    void reloadRebuildsFromTheStore(@TempDir Path dir) throws IOException {
+        try (EmbeddedStudentDAO dao = new EmbeddedStudentDAO(dir, false)) {
+            List<Student> rows = new ArrayList<>();
+            for (int i = 0; i < 100; i++) rows.add(new Student("N" + i, "u" + i + "@x.org", "CSE", 2.0));
+            dao.saveAll(rows);
+            EmailIndex index = new EmailIndex();
+            index.put(999, "stale@x.org");
+            assertFalse(index.isLoaded());
+            index.reload(dao);
+            assertTrue(index.isLoaded());
+            assertEquals(100, index.size());
+            assertEquals(-1, index.owner("stale@x.org"));
+            for (Student s : rows) assertEquals(s.getId(), index.owner(s.getEmail()));
+        }
+    }
+}
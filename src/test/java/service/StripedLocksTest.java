@@ -0,0 +1,64 @@
+package service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StripedLocksTest {
+    @Test
+    void sameKeyIsMutuallyExclusive() throws Exception {
+        StripedLocks locks = new StripedLocks(64);
+        int threads = 8, rounds = 2_000;
+        int[] counter = {0}; // plain int: only the lock keeps the increments from getting lost
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> done = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                done.add(pool.submit(() -> {
+                    for (int i = 0; i < rounds; i++) {
+                        try (StripedLocks.Held ignored = locks.lock("key")) { counter[0]++; }
+                    }
+                }));
+            }
+            for (Future<?> f : done) f.get(30, TimeUnit.SECONDS);
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(threads * rounds, counter[0]);
+    }
+
+    @Test
+    void multiKeyLocksInAnyArgumentOrderDoNotDeadlock() throws Exception {
+        StripedLocks locks = new StripedLocks(4); // few stripes, so most key pairs collide somewhere
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> forward = pool.submit(() -> {
+                for (int i = 0; i < 20_000; i++) try (StripedLocks.Held ignored = locks.lock("a", i, "b")) { }
+            });
+            Future<?> backward = pool.submit(() -> {
+                for (int i = 0; i < 20_000; i++) try (StripedLocks.Held ignored = locks.lock("b", i + 1, "a")) { }
+            });
+            forward.get(30, TimeUnit.SECONDS);
+            backward.get(30, TimeUnit.SECONDS);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void keysInOneStripeAreLockedOnceAndAllReleased() throws Exception {
+        StripedLocks locks = new StripedLocks(1);
+        try (StripedLocks.Held ignored = locks.lock("x", "y", "x")) { }
+        // every stripe was released: another thread gets them straight away
+        Future<?> other = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r);
+            t.setDaemon(true);
+            return t;
+        }).submit(() -> { try (StripedLocks.Held ignored = locks.lock("x")) { } });
+        other.get(5, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,178 @@
+package service;
+
+import model.Student;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StudentCacheTest {
+    private static final int SEGMENTS = 16;
+
+    private static Student student(int id, String name) {
+        return new Student(id, name, "u" + id + "@x.org", "CSE", 3.0, null);
+    }
+
+    private static Optional<Student> miss(int id) {
+        return Optional.empty();
+    }
+
+    private static boolean cached(StudentCache cache, int id) {
+        boolean[] loaded = {false};
+        cache.get(id, k -> { loaded[0] = true; return Optional.empty(); });
+        return !loaded[0];
+    }
+
+    // ids that share a segment with `first`: with one slot per segment, caching one evicts the other
+    private static List<Integer> sameSegment(int first, int count) {
+        List<Integer> out = new ArrayList<>(List.of(first));
+        for (int id = first + 1; out.size() < count; id++) {
+            StudentCache probe = new StudentCache(SEGMENTS, 60_000, 0, 0);
+            probe.put(student(first, "a"));
+            probe.put(student(id, "b"));
+            if (!cached(probe, first)) out.add(id);
+        }
+        return out;
+    }
+
+    @Test
+    void staysWithinMaxSize() {
+        StudentCache cache = new StudentCache(64, 60_000, 0, 0);
+        for (int i = 0; i < 1000; i++) cache.put(student(i, "n"));
+        assertTrue(cache.size() <= 64, "size " + cache.size());
+        assertEquals(1000 - cache.size(), cache.stats().evictions());
+    }
+
+    @Test
+    void evictsTheLeastRecentlyUsedEntry() {
+        List<Integer> ids = sameSegment(1, 3);
+        int a = ids.get(0), b = ids.get(1), c = ids.get(2);
+        StudentCache cache = new StudentCache(2 * SEGMENTS, 60_000, 0, 0); // two slots per segment
+        cache.put(student(a, "a"));
+        cache.put(student(b, "b"));
+        cache.get(a, StudentCacheTest::miss); // a is now more recent than b
+        cache.put(student(c, "c"));
+        assertTrue(cached(cache, a));
+        assertTrue(cached(cache, c));
+        assertFalse(cached(cache, b));
+    }
+
+    @Test
+    void expiredEntriesAreLoadedAgain() throws InterruptedException {
+        StudentCache cache = new StudentCache(100, 20, 0, 0);
+        cache.put(student(1, "old"));
+        Thread.sleep(50);
+        assertEquals("new", cache.get(1, id -> Optional.of(student(id, "new"))).orElseThrow().getName());
+    }
+
+    @Test
+    void concurrentMissesShareOneLoad() throws Exception {
+        StudentCache cache = new StudentCache(100, 60_000, 0, 0);
+        int callers = 8;
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<Optional<Student>>> results = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                results.add(pool.submit(() -> cache.get(7, id -> {
+                    loads.incrementAndGet();
+                    try { release.await(); } catch (InterruptedException e) { throw new IllegalStateException(e); }
+                    return Optional.of(student(id, "loaded"));
+                })));
+            }
+            while (cache.stats().misses() < callers) Thread.sleep(1); // everyone is waiting on the one load
+            release.countDown();
+            for (Future<Optional<Student>> r : results) assertEquals("loaded", r.get(5, TimeUnit.SECONDS).orElseThrow().getName());
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.stats().loads());
+    }
+
+    @Test
+    void failedLoadReachesEveryWaiterAndIsNotCached() throws Exception {
+        StudentCache cache = new StudentCache(100, 60_000, 0, 0);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            List<Future<Optional<Student>>> results = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                results.add(pool.submit(() -> cache.get(3, id -> {
+                    try { release.await(); } catch (InterruptedException e) { throw new IllegalStateException(e); }
+                    throw new IllegalStateException("store down");
+                })));
+            }
+            while (cache.stats().misses() < 2) Thread.sleep(1);
+            release.countDown();
+            for (Future<Optional<Student>> r : results) {
+                ExecutionException e = assertThrows(ExecutionException.class, () -> r.get(5, TimeUnit.SECONDS));
+                assertEquals("store down", e.getCause().getMessage());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals("ok", cache.get(3, id -> Optional.of(student(id, "ok"))).orElseThrow().getName());
+    }
+
+    @Test
+    void writeDuringALoadWinsOverTheLoadedRow() throws Exception {
+        StudentCache cache = new StudentCache(100, 60_000, 0, 0);
+        CountDownLatch loading = new CountDownLatch(1), release = new CountDownLatch(1);
+        Thread reader = new Thread(() -> cache.get(5, id -> {
+            loading.countDown();
+            try { release.await(); } catch (InterruptedException e) { throw new IllegalStateException(e); }
+            return Optional.of(student(id, "before write"));
+        }));
+        reader.start();
+        loading.await();
+        cache.put(student(5, "written"));
+        release.countDown();
+        reader.join();
+        assertEquals("written", cache.get(5, id -> Optional.empty()).orElseThrow().getName());
+    }
+
+    @Test
+    void putReplacesTheCachedRowWhateverItsVersion() {
+        StudentCache cache = new StudentCache(100, 60_000, 0, 0);
+        Student cached = student(1, "cached");
+        cached.setVersion(5);
+        cache.put(cached);
+        cache.put(student(1, "written")); // version 0: an update built from a stale object
+        assertEquals("written", cache.get(1, StudentCacheTest::miss).orElseThrow().getName());
+        Student older = student(1, "older");
+        older.setVersion(-1);
+        cache.putIfNewer(older);
+        assertEquals("written", cache.get(1, StudentCacheTest::miss).orElseThrow().getName());
+    }
+
+    @Test
+    void returnsPrivateCopies() {
+        StudentCache cache = new StudentCache(100, 60_000, 0, 0);
+        cache.put(student(1, "original"));
+        cache.get(1, StudentCacheTest::miss).orElseThrow().setName("mutated");
+        assertEquals("original", cache.get(1, StudentCacheTest::miss).orElseThrow().getName());
+    }
+
+    @Test
+    void getAllLoadsOnlyTheMissesInOneCall() {
+        StudentCache cache = new StudentCache(100, 60_000, 0, 0);
+        cache.put(student(1, "cached"));
+        List<List<Integer>> calls = new ArrayList<>();
+        Map<Integer, Student> got = cache.getAll(List.of(3, 1, 2, 3, 99), ids -> {
+            calls.add(ids);
+            return ids.stream().filter(id -> id != 99).map(id -> student(id, "loaded")).toList();
+        });
+        assertEquals(List.of(List.of(3, 2, 99)), calls);
+        assertEquals(List.of(3, 1, 2), List.copyOf(got.keySet()));
+        assertEquals("cached", got.get(1).getName());
+        assertTrue(cached(cache, 2));
+    }
+}
@@ -0,0 +1,115 @@
+package util;
+
+import model.Student;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CSVParserTest {
+    @TempDir Path dir;
+
+    private static final List<Student> ROWS = List.of(
+            new Student(1, "Ada Lovelace", "ada@x.org", "CSE", 3.9, null),
+            new Student(2, "Smith, John", "john@x.org", "EEE", 2.5, null),        // comma
+            new Student(3, "The \"Rock\"", "rock@x.org", "BBA", 0.0, null),       // quotes
+            new Student(4, "Line\nBreak", "lb@x.org", "Law, \"Intl\"", 4.0, null), // newline, comma and quotes
+            new Student(5, "Zo\u00eb \u00d1\u00fa\u00f1ez", "zoe@x.org", "M\u00fasica", 3.33, null),       // non-ASCII
+            new Student(6, "", "empty@x.org", "CSE", 1.05, null));               // empty field
+
+    @Test
+    void roundTripsQuotedFields() throws IOException {
+        File f = write(ROWS);
+        CSVParser.Result r = CSVParser.parse(f);
+        assertEquals(0, r.rejected());
+        assertSameRows(ROWS, r.students());
+    }
+
+    @Test
+    void streamingParseMatchesWholeFileParse() throws IOException {
+        File f = write(ROWS);
+        List<Student> streamed = new ArrayList<>();
+        List<Integer> sizes = new ArrayList<>();
+        long rejected = CSVParser.parse(f, 4, chunk -> {
+            sizes.add(chunk.size());
+            streamed.addAll(chunk);
+        });
+        assertEquals(0, rejected);
+        assertEquals(List.of(4, 2), sizes);
+        assertSameRows(ROWS, streamed);
+    }
+
+    @Test
+    void countsMalformedRowsAndSkipsBlankLines() throws IOException {
+        File f = csv("id,name,email,department,gpa\r\n"
+                + "1,A,a@x.org,CSE,3.50\r\n"
+                + "\r\n"
+                + "2,B,b@x.org,CSE\r\n"          // too few fields
+                + "3,C,c@x.org,CSE,abc\r\n"      // unparsable gpa
+                + "4,D,d@x.org,CSE,2,extra\r\n"); // extra columns are ignored
+        CSVParser.Result r = CSVParser.parse(f);
+        assertEquals(2, r.rejected());
+        assertEquals(List.of("A", "D"), r.students().stream().map(Student::getName).toList());
+        assertEquals("CSE", r.students().get(0).getDepartment()); // the \r is not part of the field
+        assertEquals(2.0, r.students().get(1).getGpa());
+    }
+
+    @Test
+    void lastRecordNeedsNoTrailingNewline() throws IOException {
+        File f = csv("id,name,email,department,gpa\n1,\"A, B\",a@x.org,CSE,3.25");
+        List<Student> rows = CSVParser.parse(f).students();
+        assertEquals(1, rows.size());
+        assertEquals("A, B", rows.get(0).getName());
+        assertEquals(3.25, rows.get(0).getGpa());
+    }
+
+    @Test
+    void emptyFileHasNoRows() throws IOException {
+        CSVParser.Result r = CSVParser.parse(csv(""));
+        assertTrue(r.students().isEmpty());
+        assertEquals(0, r.rejected());
+    }
+
+    @Test
+    void writerQuotesOnlyWhenNeeded() throws IOException {
+        File f = write(List.of(new Student(7, "Plain", "p@x.org", "A,B", 3.456, null)));
+        assertEquals("id,name,email,department,gpa\n7,Plain,p@x.org,\"A,B\",3.46\n",
+                Files.readString(f.toPath(), StandardCharsets.UTF_8));
+    }
+
+    private File write(List<Student> rows) throws IOException {
+        File f = dir.resolve("students.csv").toFile();
+        try (CSVWriter w = CSVWriter.open(f, false)) {
+            for (Student s : rows) w.write(s);
+            assertEquals(rows.size(), w.rows());
+        }
+        return f;
+    }
+
+    private File csv(String content) throws IOException {
+        Path p = dir.resolve("input.csv");
+        Files.writeString(p, content, StandardCharsets.UTF_8);
+        return p.toFile();
+    }
+
+    // the parser leaves ids to the database
+    private static void assertSameRows(List<Student> expected, List<Student> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Student e = expected.get(i), a = actual.get(i);
+            assertNull(a.getId());
+            assertEquals(e.getName(), a.getName());
+            assertEquals(e.getEmail(), a.getEmail());
+            assertEquals(e.getDepartment(), a.getDepartment());
+            assertEquals(e.getGpa(), a.getGpa(), 1e-9);
+        }
+    }
+}
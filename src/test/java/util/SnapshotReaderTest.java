@@ -0,0 +1,117 @@
+package util;
+
+import model.Student;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnapshotReaderTest {
+    @TempDir Path dir;
+
+    private static List<Student> rows(int n) {
+        List<Student> out = new ArrayList<>(n);
+        Instant t0 = Instant.parse("2024-01-01T00:00:00Z");
+        String[] depts = {"CSE", "EEE", "BBA", "M\u00fasica"};
+        for (int i = 1; i <= n; i++) {
+            Instant created = i % 5 == 0 ? null : t0.plusSeconds(i * 37L);
+            int id = i % 7 == 0 ? i * 1000 : i; // gaps, so ids are not all consecutive
+            out.add(new Student(id, "Name \"" + i + "\", \u00f1", "u" + i + "@x.org", depts[i % depts.length],
+                    (i * 7 % 401) / 100.0, created, i % 3));
+        }
+        return out;
+    }
+
+    @Test
+    void roundTripsAllColumnsWithAndWithoutDeflate() throws IOException {
+        List<Student> in = rows(1000);
+        for (boolean deflate : new boolean[] {true, false}) {
+            File f = write(in, deflate, 64); // several blocks, the last one partial
+            assertSameRows(in, SnapshotReader.read(f));
+        }
+    }
+
+    @Test
+    void streamingReadHandsOutBlocksInFileOrder() throws IOException {
+        List<Student> in = rows(250);
+        File f = write(in, true, 100);
+        List<Integer> sizes = new ArrayList<>();
+        List<Student> out = new ArrayList<>();
+        long n = SnapshotReader.read(f, block -> {
+            sizes.add(block.size());
+            out.addAll(block);
+        });
+        assertEquals(250, n);
+        assertEquals(List.of(100, 100, 50), sizes);
+        assertSameRows(in, out);
+    }
+
+    @Test
+    void emptySnapshotHasNoRows() throws IOException {
+        assertTrue(SnapshotReader.read(write(List.of(), true, 10)).isEmpty());
+    }
+
+    @Test
+    void corruptPayloadFailsTheChecksum() throws IOException {
+        for (boolean deflate : new boolean[] {true, false}) {
+            File f = write(rows(100), deflate, 1000);
+            try (RandomAccessFile raf = new RandomAccessFile(f, "rw")) {
+                long at = SnapshotWriter.HEADER_BYTES + SnapshotWriter.BLOCK_HEADER_BYTES + 5;
+                raf.seek(at);
+                int b = raf.read();
+                raf.seek(at);
+                raf.write(b ^ 0xFF);
+            }
+            IOException e = assertThrows(IOException.class, () -> SnapshotReader.read(f));
+            assertTrue(e.getMessage().contains("checksum"), e.getMessage());
+        }
+    }
+
+    @Test
+    void truncatedFileIsRejected() throws IOException {
+        File f = write(rows(100), true, 1000);
+        try (RandomAccessFile raf = new RandomAccessFile(f, "rw")) {
+            raf.setLength(raf.length() - 10);
+        }
+        assertThrows(IOException.class, () -> SnapshotReader.read(f));
+    }
+
+    @Test
+    void otherFilesAreRejected() throws IOException {
+        Path p = dir.resolve("students.csv");
+        Files.writeString(p, "id,name,email,department,gpa\n");
+        IOException e = assertThrows(IOException.class, () -> SnapshotReader.read(p.toFile()));
+        assertTrue(e.getMessage().contains("magic"), e.getMessage());
+    }
+
+    private File write(List<Student> rows, boolean deflate, int blockRows) throws IOException {
+        File f = dir.resolve("students-" + deflate + ".srms").toFile();
+        try (SnapshotWriter w = SnapshotWriter.open(f, deflate, blockRows)) {
+            rows.forEach(w);
+        }
+        return f;
+    }
+
+    private static void assertSameRows(List<Student> expected, List<Student> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Student e = expected.get(i), a = actual.get(i);
+            assertEquals(e.getId(), a.getId());
+            assertEquals(e.getName(), a.getName());
+            assertEquals(e.getEmail(), a.getEmail());
+            assertEquals(e.getDepartment(), a.getDepartment());
+            assertEquals(e.getGpa(), a.getGpa(), 1e-9);
+            assertEquals(e.getCreatedAt(), a.getCreatedAt());
+            assertEquals(e.getVersion(), a.getVersion());
+        }
+    }
+}